@@ -0,0 +1,82 @@
+// Load test for the wallet API, run with k6 (https://k6.io):
+//
+//   k6 run -e VUS=1000 -e DURATION=60s load-test/wallet-load.js
+//
+// VUS is the number of concurrent connections. WALLETS controls key skew: all virtual
+// users share that many wallets, so WALLETS=1 is the single hot wallet case.
+//
+// A separate scenario samples the Hikari pool once a second from /actuator/metrics
+// into pool_active / pool_pending, so pool utilization can be compared with latency:
+//
+//   k6 run -e VUS=200 -e WALLETS=4 -e READ_RATIO=0 load-test/wallet-load.js
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+import { Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const WALLETS = parseInt(__ENV.WALLETS || '100');
+const READ_RATIO = parseFloat(__ENV.READ_RATIO || '0.5');
+const DURATION = __ENV.DURATION || '60s';
+
+const poolActive = new Trend('pool_active');
+const poolPending = new Trend('pool_pending');
+
+export const options = {
+    scenarios: {
+        wallets: {
+            executor: 'constant-vus',
+            vus: parseInt(__ENV.VUS || '1000'),
+            duration: DURATION,
+        },
+        pool: {
+            executor: 'constant-vus',
+            vus: 1,
+            duration: DURATION,
+            exec: 'samplePool',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export function setup() {
+    const ids = [];
+    for (let i = 0; i < WALLETS; i++) {
+        const wallet = http.post(`${BASE_URL}/api/v1/wallet/new`).json();
+        ids.push(wallet.id);
+        http.patch(`${BASE_URL}/api/v1/wallet`, JSON.stringify({
+            walletId: wallet.id, operationType: 'DEPOSIT', amount: 1000000,
+        }), { headers: { 'Content-Type': 'application/json' } });
+    }
+    return { ids };
+}
+
+export default function (data) {
+    const walletId = data.ids[Math.floor(Math.random() * data.ids.length)];
+    if (Math.random() < READ_RATIO) {
+        const res = http.get(`${BASE_URL}/api/v1/wallets/${walletId}`, { tags: { op: 'read' } });
+        check(res, { 'read ok': r => r.status === 200 });
+        return;
+    }
+    const operationType = Math.random() < 0.5 ? 'DEPOSIT' : 'WITHDRAW';
+    const res = http.patch(`${BASE_URL}/api/v1/wallet`, JSON.stringify({
+        walletId, operationType, amount: 1,
+    }), { headers: { 'Content-Type': 'application/json' }, tags: { op: 'write' } });
+    check(res, { 'write ok': r => r.status === 200 });
+}
+
+function gauge(name) {
+    const res = http.get(`${BASE_URL}/actuator/metrics/${name}`, { tags: { op: 'metrics' } });
+    return res.status === 200 ? res.json().measurements[0].value : undefined;
+}
+
+export function samplePool() {
+    const active = gauge('hikaricp.connections.active');
+    const pending = gauge('hikaricp.connections.pending');
+    if (active !== undefined) {
+        poolActive.add(active);
+    }
+    if (pending !== undefined) {
+        poolPending.add(pending);
+    }
+    sleep(1);
+}
@@ -0,0 +1,88 @@
+package ru.kunikhin.ItroomTestTask.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Bounded cache of wallet balances. Entries carry the wallet {@code @Version},
+ * and a put only wins if it is newer than what is already cached, so a slow
+ * reader can never replace a balance written by a newer commit.
+ * <p>
+ * Off by default: writes made by other instances or the reactive module do not
+ * reach it, so a cached balance can be up to {@code ttl} old.
+ */
+@Component
+public class WalletBalanceCache {
+
+    private final Cache<UUID, CachedBalance> cache;
+
+    @Autowired
+    public WalletBalanceCache(@Value("${wallet.cache.enabled:false}") boolean enabled,
+                              @Value("${wallet.cache.max-size:100000}") long maxSize,
+                              @Value("${wallet.cache.ttl:10s}") Duration ttl,
+                              MeterRegistry meterRegistry) {
+        if (!enabled) {
+            this.cache = null;
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "wallet.balance");
+    }
+
+    private WalletBalanceCache() {
+        this.cache = null;
+    }
+
+    public static WalletBalanceCache disabled() {
+        return new WalletBalanceCache();
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public Optional<Wallet> get(UUID walletId) {
+        if (cache == null) {
+            return Optional.empty();
+        }
+        CachedBalance cached = cache.getIfPresent(walletId);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Wallet(walletId, cached.amount, cached.version, null, null));
+    }
+
+    public void put(Wallet wallet) {
+        if (cache == null || wallet.getId() == null || wallet.getVersion() == null) {
+            return;
+        }
+        CachedBalance candidate = new CachedBalance(wallet.getAmount(), wallet.getVersion());
+        cache.asMap().merge(wallet.getId(), candidate,
+                (current, fresh) -> fresh.version > current.version ? fresh : current);
+    }
+
+    private static final class CachedBalance {
+        private final BigDecimal amount;
+        private final long version;
+
+        private CachedBalance(BigDecimal amount, long version) {
+            this.amount = amount;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package ru.kunikhin.ItroomTestTask.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.repository.WalletIdRepository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of existing wallet ids, so lookups of ids that were never created
+ * are answered without a database round-trip. {@link #mightExist} never says no
+ * to a wallet that is in the filter; it says yes to an unknown id with roughly the
+ * configured false-positive probability, and those still go to the database.
+ * <p>
+ * Ids are streamed in once after startup; until that pass completes every id
+ * might exist. Wallets created by this instance are added as they are created,
+ * wallets created elsewhere (other instances, the reactive module) are picked up
+ * by {@link #refresh()} from {@code created_at}, re-reading an {@code overlap}
+ * window to cover clock skew and late commits. {@code created_at} is not commit
+ * order, so a wallet committed more than {@code overlap} after it was stamped is
+ * never picked up by a refresh. With {@code verify-misses} on (the default) a miss
+ * is therefore checked in the database and a wallet found there is added; only a
+ * single instance without the reactive module can safely trust misses and skip
+ * that query. Wallets are never deleted, so nothing ever has to be taken out of
+ * the filter.
+ * <p>
+ * Sized for {@code expected-wallets}; past that the false-positive rate climbs,
+ * which shows in {@code wallet.id.filter.fpp}.
+ */
+@Component
+public class WalletIdFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletIdFilter.class);
+
+    private final WalletIdRepository idRepository;
+    private final boolean enabled;
+    private final boolean verifyMisses;
+    private final int pageSize;
+    private final Duration overlap;
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final AtomicLong bitsSet = new AtomicLong();
+    private final Counter rejected;
+    private final Counter falsePositives;
+    private final Counter missed;
+    private volatile boolean loaded;
+    private volatile LocalDateTime latestCreatedAt;
+
+    @Autowired
+    public WalletIdFilter(WalletIdRepository idRepository,
+                          @Value("${wallet.id-filter.enabled:true}") boolean enabled,
+                          @Value("${wallet.id-filter.verify-misses:true}") boolean verifyMisses,
+                          @Value("${wallet.id-filter.expected-wallets:1000000}") long expectedWallets,
+                          @Value("${wallet.id-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+                          @Value("${wallet.id-filter.page-size:50000}") int pageSize,
+                          @Value("${wallet.id-filter.overlap:1m}") Duration overlap,
+                          MeterRegistry meterRegistry) {
+        if (expectedWallets < 1 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Invalid wallet id filter settings");
+        }
+        this.idRepository = idRepository;
+        this.enabled = enabled;
+        this.verifyMisses = verifyMisses;
+        this.pageSize = pageSize;
+        this.overlap = overlap;
+        if (!enabled) {
+            this.words = null;
+            this.bits = 0;
+            this.hashes = 0;
+            this.rejected = null;
+            this.falsePositives = null;
+            this.missed = null;
+            return;
+        }
+        // Standard sizing: m = -n ln p / (ln 2)^2 bits and k = m / n * ln 2 hashes.
+        long words = (long) Math.ceil(-expectedWallets * Math.log(falsePositiveProbability)
+                / (Math.log(2) * Math.log(2)) / Long.SIZE);
+        this.words = new AtomicLongArray(Math.toIntExact(Math.max(1, words)));
+        this.bits = (long) this.words.length() * Long.SIZE;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedWallets * Math.log(2)));
+
+        this.rejected = Counter.builder("wallet.id.filter.rejected")
+                .description("Lookups of wallet ids not in the filter")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("wallet.id.filter.false.positives")
+                .description("Unknown wallet ids the filter let through to the database")
+                .register(meterRegistry);
+        this.missed = Counter.builder("wallet.id.filter.missed")
+                .description("Existing wallets the filter did not know about, found by verifying a miss")
+                .register(meterRegistry);
+        Gauge.builder("wallet.id.filter.size", this, filter -> filter.words.length() * (double) Long.BYTES)
+                .description("Memory taken by the filter bits")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("wallet.id.filter.ids", this, WalletIdFilter::estimatedIds)
+                .description("Distinct wallet ids in the filter, estimated from the share of bits set")
+                .register(meterRegistry);
+        Gauge.builder("wallet.id.filter.fpp", this, WalletIdFilter::expectedFalsePositiveProbability)
+                .description("False-positive probability estimated from the share of bits set")
+                .register(meterRegistry);
+    }
+
+    private WalletIdFilter() {
+        this(null, false, true, 1, 0.5, 0, Duration.ZERO, null);
+    }
+
+    public static WalletIdFilter disabled() {
+        return new WalletIdFilter();
+    }
+
+    /**
+     * {@code false} only if the wallet certainly does not exist.
+     */
+    public boolean mightExist(UUID walletId) {
+        if (!loaded) {
+            return true;
+        }
+        long h1 = firstHash(walletId);
+        long h2 = secondHash(walletId);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                rejected.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(UUID walletId) {
+        if (!enabled) {
+            return;
+        }
+        long h1 = firstHash(walletId);
+        long h2 = secondHash(walletId);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0) {
+                long witness = words.compareAndExchange(index, word, word | mask);
+                if (witness == word) {
+                    bitsSet.incrementAndGet();
+                    break;
+                }
+                word = witness;
+            }
+        }
+    }
+
+    /**
+     * Whether a miss has to be confirmed in the database before the wallet is
+     * reported missing.
+     */
+    public boolean verifiesMisses() {
+        return verifyMisses;
+    }
+
+    /**
+     * Called when an id the filter did not know about turned out to exist.
+     */
+    public void recordMissed(UUID walletId) {
+        if (loaded) {
+            add(walletId);
+            missed.increment();
+        }
+    }
+
+    /**
+     * Called when an id the filter let through turned out not to exist.
+     */
+    public void recordFalsePositive() {
+        if (loaded) {
+            falsePositives.increment();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    double expectedFalsePositiveProbability() {
+        return Math.pow((double) bitsSet.get() / bits, hashes);
+    }
+
+    // Refreshes re-add the overlap window, so ids are estimated rather than counted.
+    double estimatedIds() {
+        return -(double) bits / hashes * Math.log1p(-(double) bitsSet.get() / bits);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLoading() {
+        if (enabled) {
+            // Off the scheduler: a large table takes a while and would hold up other tasks.
+            Thread.ofVirtual().name("wallet-id-filter-load").start(this::load);
+        }
+    }
+
+    void load() {
+        // Kept at the start of the pass rather than the newest row seen: wallets
+        // inserted behind the keyset cursor while it runs are left to the first refresh.
+        latestCreatedAt = LocalDateTime.now();
+        long started = System.nanoTime();
+        try {
+            UUID[] last = {null};
+            int[] count = new int[1];
+            do {
+                count[0] = 0;
+                idRepository.findPage(last[0], pageSize, rs -> {
+                    last[0] = rs.getObject("id", UUID.class);
+                    add(last[0]);
+                    count[0]++;
+                });
+            } while (count[0] == pageSize);
+            loaded = true;
+            log.info("Wallet id filter loaded about {} ids in {} ms ({} bytes, {} hashes)",
+                    Math.round(estimatedIds()), Duration.ofNanos(System.nanoTime() - started).toMillis(), bits / Byte.SIZE, hashes);
+        } catch (RuntimeException e) {
+            // Stays open: every id is looked up in the database as before.
+            log.error("Could not load wallet id filter, unknown ids will not be filtered", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.id-filter.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        idRepository.findCreatedSince(latestCreatedAt.minus(overlap), this::addRow);
+    }
+
+    private void addRow(ResultSet rs) throws SQLException {
+        add(rs.getObject("id", UUID.class));
+        LocalDateTime createdAt = rs.getObject("created_at", LocalDateTime.class);
+        if (createdAt != null && createdAt.isAfter(latestCreatedAt)) {
+            latestCreatedAt = createdAt;
+        }
+    }
+
+    // Double hashing: bit i is h1 + i * h2. Mixed first because the version and
+    // variant bits of a UUIDv4 are fixed.
+    private static long firstHash(UUID walletId) {
+        return mix(walletId.getMostSignificantBits() ^ Long.rotateLeft(walletId.getLeastSignificantBits(), 32));
+    }
+
+    private static long secondHash(UUID walletId) {
+        return mix(walletId.getLeastSignificantBits()) | 1;
+    }
+
+    // MurmurHash3 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.kunikhin.ItroomTestTask.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import ru.kunikhin.ItroomTestTask.datasource.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single auto-configured pool with a primary pool plus one pool per
+ * replica URL, behind a {@link ReplicaRoutingDataSource}. Replicas use the primary
+ * credentials unless {@code wallet.replicas.username/password} are set.
+ */
+@Configuration
+@ConditionalOnProperty(name = "wallet.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    // Zero when the replica has replayed everything it received, otherwise the age
+    // of the last replayed transaction; a server that is not a standby reports zero.
+    static final String POSTGRES_LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000
+            END
+            """;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource dataSource(HikariDataSource primaryDataSource,
+                                               DataSourceProperties properties,
+                                               @Value("${wallet.replicas.urls}") List<String> urls,
+                                               @Value("${wallet.replicas.username:}") String username,
+                                               @Value("${wallet.replicas.password:}") String password,
+                                               @Value("${wallet.replicas.pool-size:20}") int poolSize,
+                                               @Value("${wallet.replicas.max-staleness:1s}") Duration maxStaleness,
+                                               @Value("${wallet.replicas.lag-query:}") String lagQuery) {
+        List<DataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i).trim());
+            replica.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+            replica.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                lagQuery.isEmpty() ? POSTGRES_LAG_QUERY : lagQuery, maxStaleness);
+    }
+}
@@ -1,12 +1,22 @@
 package ru.kunikhin.ItroomTestTask.config;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.backoff.Sleeper;
+import org.springframework.retry.backoff.ThreadWaitSleeper;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
+import ru.kunikhin.ItroomTestTask.metrics.RetryMetricsListener;
+import ru.kunikhin.ItroomTestTask.service.WalletBackOffPolicy;
+import ru.kunikhin.ItroomTestTask.service.WalletConflictTracker;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class RetryConfig {
@@ -23,21 +33,41 @@ public class RetryConfig {
     @Value("${retry.max-interval-ms}")
     private long maxIntervalMs;
 
+    @Value("${retry.reference-conflicts-per-second:50}")
+    private int referenceConflictsPerSecond;
+
     @Bean
-    public RetryTemplate retryTemplate() {
+    public RetryTemplate retryTemplate(MeterRegistry meterRegistry, WalletConflictTracker conflictTracker) {
         RetryTemplate retryTemplate = new RetryTemplate();
 
-        SimpleRetryPolicy retryPolicy = new SimpleRetryPolicy();
-        retryPolicy.setMaxAttempts(maxAttempts);
+        // Version conflicts, lock timeouts and deadlocks. Anything else (insufficient
+        // funds, unknown wallet) fails the same way on every attempt.
+        SimpleRetryPolicy retryPolicy = new SimpleRetryPolicy(maxAttempts,
+                Map.of(ConcurrencyFailureException.class, true), true);
 
-        ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
-        backOffPolicy.setInitialInterval(initialIntervalMs);
-        backOffPolicy.setMultiplier(multiplier);
-        backOffPolicy.setMaxInterval(maxIntervalMs);
+        WalletBackOffPolicy backOffPolicy = new WalletBackOffPolicy(conflictTracker, initialIntervalMs, multiplier,
+                maxIntervalMs, referenceConflictsPerSecond, timedSleeper(meterRegistry));
 
         retryTemplate.setRetryPolicy(retryPolicy);
         retryTemplate.setBackOffPolicy(backOffPolicy);
+        retryTemplate.registerListener(new RetryMetricsListener(meterRegistry));
+        retryTemplate.registerListener(conflictTracker);
 
         return retryTemplate;
     }
-}
\ No newline at end of file
+
+    private Sleeper timedSleeper(MeterRegistry meterRegistry) {
+        Timer backoff = Timer.builder("wallet.retry.backoff")
+                .description("Time spent sleeping between retry attempts")
+                .register(meterRegistry);
+        Sleeper delegate = new ThreadWaitSleeper();
+        return backOffPeriod -> {
+            long start = System.nanoTime();
+            try {
+                delegate.sleep(backOffPeriod);
+            } finally {
+                backoff.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+}
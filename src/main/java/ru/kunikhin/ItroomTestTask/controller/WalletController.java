@@ -1,37 +1,207 @@
 package ru.kunikhin.ItroomTestTask.controller;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import jakarta.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.interceptor.WalletRateLimiter;
 import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
 import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationResultDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletTransferDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletTransferResultDto;
+import ru.kunikhin.ItroomTestTask.service.IdempotencyService;
+import ru.kunikhin.ItroomTestTask.service.WalletBalanceLookupService;
+import ru.kunikhin.ItroomTestTask.service.WalletBatchService;
+import ru.kunikhin.ItroomTestTask.service.WalletCreationService;
+import ru.kunikhin.ItroomTestTask.service.WalletExportService;
 import ru.kunikhin.ItroomTestTask.service.WalletService;
+import ru.kunikhin.ItroomTestTask.service.WalletTransferService;
+import ru.kunikhin.ItroomTestTask.util.WalletExportFormat;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationStatus;
+import ru.kunikhin.ItroomTestTask.subscription.WalletBalanceHub;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1")
 public class WalletController {
 
+    static final String WALLET_VERSION_HEADER = "X-Wallet-Version";
+
     private final WalletService walletService;
+    private final WalletBatchService walletBatchService;
+    private final WalletCreationService walletCreationService;
+    private final WalletTransferService walletTransferService;
+    private final WalletBalanceLookupService balanceLookupService;
+    private final WalletExportService exportService;
+    private final WalletBalanceHub balanceHub;
+    private final IdempotencyService idempotencyService;
+    private final WalletRateLimiter walletRateLimiter;
+    private final ObjectMapper objectMapper;
 
-    public WalletController(WalletService walletService) {
+    public WalletController(WalletService walletService,
+                            WalletBatchService walletBatchService,
+                            WalletCreationService walletCreationService,
+                            WalletTransferService walletTransferService,
+                            WalletBalanceLookupService balanceLookupService,
+                            WalletExportService exportService,
+                            WalletBalanceHub balanceHub,
+                            IdempotencyService idempotencyService,
+                            WalletRateLimiter walletRateLimiter,
+                            ObjectMapper objectMapper) {
         this.walletService = walletService;
+        this.walletBatchService = walletBatchService;
+        this.walletCreationService = walletCreationService;
+        this.walletTransferService = walletTransferService;
+        this.balanceLookupService = balanceLookupService;
+        this.exportService = exportService;
+        this.balanceHub = balanceHub;
+        this.idempotencyService = idempotencyService;
+        this.walletRateLimiter = walletRateLimiter;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * {@code X-Wallet-Version} carries the read-after-write token: the response tells
+     * which version was read, and a client that sends the version returned by its
+     * last operation never gets an older balance back.
+     */
     @GetMapping("/wallets/{walletId}")
-    public ResponseEntity<BigDecimal> getWalletBalance(@PathVariable UUID walletId) {
-        return ResponseEntity.ok(walletService.getWallet(walletId).getAmount());
+    public ResponseEntity<BigDecimal> getWalletBalance(@PathVariable UUID walletId,
+                                                       @RequestHeader(value = WALLET_VERSION_HEADER, required = false) Long minVersion) {
+        Wallet wallet = walletService.getWallet(walletId, minVersion);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (wallet.getVersion() != null) {
+            response.header(WALLET_VERSION_HEADER, wallet.getVersion().toString());
+        }
+        return response.body(wallet.getAmount());
+    }
+
+    /**
+     * Accepts wallet ids as a JSON array or NDJSON and streams one result per id as
+     * NDJSON, chunk by chunk while the ids are still being read. Problems found after
+     * the response has started, such as a malformed id, end the stream with an
+     * {@code INVALID} line.
+     */
+    @PostMapping(value = "/wallets/balances",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> findBalances(InputStream request) {
+        ObjectWriter writer = objectMapper.writerFor(WalletOperationResultDto.class);
+        StreamingResponseBody body = out -> {
+            try (MappingIterator<UUID> walletIds = objectMapper.readerFor(UUID.class).readValues(request)) {
+                balanceLookupService.findBalances(walletIds, results -> {
+                    try {
+                        for (WalletOperationResultDto result : results) {
+                            writeLine(out, writer, result);
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeJsonMappingException | JsonProcessingException e) {
+                writeLine(out, writer, WalletOperationResultDto.failure(null, WalletOperationStatus.INVALID, "Invalid JSON format"));
+            } catch (IllegalArgumentException e) {
+                writeLine(out, writer, WalletOperationResultDto.failure(null, WalletOperationStatus.INVALID, e.getMessage()));
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private static void writeLine(OutputStream out, ObjectWriter writer, WalletOperationResultDto result) throws IOException {
+        // writeValue(OutputStream, ...) would close the response stream
+        out.write(writer.writeValueAsBytes(result));
+        out.write('\n');
+    }
+
+    /**
+     * Streams all wallets in id order. {@code after} resumes an interrupted export
+     * from the last id received; the header line is only sent without it.
+     * {@code snapshot} reads all pages from one consistent snapshot. Clients
+     * sending {@code Accept-Encoding: gzip} get the export compressed.
+     */
+    @GetMapping("/wallets/export")
+    public ResponseEntity<StreamingResponseBody> exportWallets(@RequestParam(defaultValue = "CSV") WalletExportFormat format,
+                                                               @RequestParam(required = false) UUID after,
+                                                               @RequestParam(defaultValue = "false") boolean snapshot,
+                                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        StreamingResponseBody body = out -> {
+            OutputStream stream = gzip ? new GZIPOutputStream(out, 64 * 1024, true) : out;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024);
+            exportService.export(after, format, snapshot, writer, lastId -> { });
+            writer.flush();
+            if (gzip) {
+                ((GZIPOutputStream) stream).finish();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Pushes a {@code balance} event with the wallet, current balances first, then
+     * on every committed change. Updates arriving faster than they can be sent are
+     * coalesced to the newest balance per wallet.
+     */
+    @GetMapping(value = "/wallets/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam("walletId") List<UUID> walletIds) {
+        LinkedHashSet<UUID> distinct = new LinkedHashSet<>(walletIds);
+        if (distinct.size() > balanceHub.getMaxWallets()) {
+            throw new IllegalArgumentException("Subscribe to at most " + balanceHub.getMaxWallets() + " wallets");
+        }
+        return balanceHub.subscribe(distinct, ids -> {
+            Map<UUID, Wallet> wallets = balanceLookupService.findWallets(ids);
+            for (UUID walletId : ids) {
+                if (!wallets.containsKey(walletId)) {
+                    throw new WalletNotFoundException("Wallet not found with id: " + walletId);
+                }
+            }
+            return wallets.values();
+        });
     }
 
     @PostMapping("/wallet/new")
@@ -39,8 +209,48 @@ public class WalletController {
         return ResponseEntity.ok(walletService.createWallet());
     }
 
+    /**
+     * Streams the ids of the created wallets as NDJSON, one JSON string per line,
+     * flushing after every committed chunk.
+     */
+    @PostMapping(value = "/wallet/new/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> createWallets(@RequestParam int count) {
+        walletCreationService.validateCount(count);
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.US_ASCII);
+            try {
+                walletCreationService.createWallets(count, ids -> {
+                    try {
+                        for (UUID id : ids) {
+                            writer.write('"');
+                            writer.write(id.toString());
+                            writer.write("\"\n");
+                        }
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PatchMapping("/wallet")
-    public ResponseEntity<?> executeOperation(@Valid @RequestBody WalletOperationDto request) {
+    public ResponseEntity<?> executeOperation(@Valid @RequestBody WalletOperationDto request,
+                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            String response = idempotencyService.execute(idempotencyKey, request, () ->
+                    walletService.executeOperation(
+                        request.getWalletId(),
+                        request.getOperationType(),
+                        request.getAmount()
+                    )
+            );
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+        }
         return ResponseEntity.ok(
                 walletService.executeOperation(
                     request.getWalletId(),
@@ -49,4 +259,40 @@ public class WalletController {
                 )
         );
     }
+
+    @PostMapping("/wallet/transfer")
+    public ResponseEntity<WalletTransferResultDto> transfer(@Valid @RequestBody WalletTransferDto request) {
+        return ResponseEntity.ok(
+                walletTransferService.transfer(
+                    request.getFromWalletId(),
+                    request.getToWalletId(),
+                    request.getAmount()
+                )
+        );
+    }
+
+    @PostMapping(value = "/wallet/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<WalletOperationResultDto>> executeBatch(@RequestBody List<WalletOperationDto> request) {
+        return ResponseEntity.ok(walletBatchService.executeBatch(request));
+    }
+
+    @PostMapping(value = "/wallet/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<WalletOperationResultDto>> executeBatch(InputStream request) throws IOException {
+        try (MappingIterator<WalletOperationDto> items = objectMapper.readerFor(WalletOperationDto.class).readValues(request)) {
+            // Stops at the first item over the limit instead of reading the whole body.
+            int maxBatchSize = walletBatchService.getMaxBatchSize();
+            List<WalletOperationDto> operations = new ArrayList<>();
+            while (items.hasNextValue()) {
+                if (operations.size() == maxBatchSize) {
+                    throw new IllegalArgumentException("Batch size must not exceed " + maxBatchSize);
+                }
+                operations.add(items.nextValue());
+            }
+            // Read from the raw stream, so RateLimitRequestBodyAdvice never sees this body.
+            walletRateLimiter.acquireWrites(operations.stream().map(WalletOperationDto::getWalletId).toList());
+            return ResponseEntity.ok(walletBatchService.executeBatch(operations));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON format");
+        }
+    }
 }
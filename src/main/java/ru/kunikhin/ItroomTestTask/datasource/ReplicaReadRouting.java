@@ -0,0 +1,55 @@
+package ru.kunikhin.ItroomTestTask.datasource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Marks reads that may be served by a replica. Only code running inside
+ * {@link #read(Supplier)} on a connection opened there is routed by
+ * {@link ReplicaRoutingDataSource}; everything else, including every write, stays
+ * on the primary.
+ */
+@Component
+public class ReplicaReadRouting {
+
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private final boolean enabled;
+
+    @Autowired
+    public ReplicaReadRouting(@Value("${wallet.replicas.enabled:false}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static ReplicaReadRouting disabled() {
+        return new ReplicaReadRouting(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code read} with replica routing on, unless a transaction is already
+     * active: its connection is bound to the primary and must be reused.
+     */
+    public <T> T read(Supplier<T> read) {
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return read.get();
+        }
+        REPLICA_READ.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            REPLICA_READ.remove();
+        }
+    }
+
+    static boolean isReplicaRead() {
+        return REPLICA_READ.get() != null;
+    }
+}
@@ -0,0 +1,118 @@
+package ru.kunikhin.ItroomTestTask.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections opened inside {@link ReplicaReadRouting#read} to a replica whose
+ * replication lag is within {@code maxStaleness}, round-robin; everything else goes
+ * to the primary. Lag is measured by {@link #checkLag()} on a schedule, so a replica
+ * that falls behind or stops answering drops out until it catches up, and with no
+ * fresh replica reads fall back to the primary.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    static final String PRIMARY = "primary";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final long maxStalenessMs;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<String> freshReplicas = List.of();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, String lagQuery, Duration maxStaleness) {
+        this.lagQuery = lagQuery;
+        this.maxStalenessMs = maxStaleness.toMillis();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicas.get(i));
+            this.replicas.add(replica);
+            targets.put(replica.key, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkLag();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!ReplicaReadRouting.isReplicaRead()) {
+            return PRIMARY;
+        }
+        List<String> fresh = freshReplicas;
+        if (fresh.isEmpty()) {
+            return PRIMARY;
+        }
+        return fresh.get(Math.floorMod(next.getAndIncrement(), fresh.size()));
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.replicas.lag-check-interval-ms:1000}")
+    public void checkLag() {
+        List<String> fresh = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            Double lagMs = measureLag(replica);
+            if (lagMs != null && lagMs <= maxStalenessMs) {
+                fresh.add(replica.key);
+            } else if (freshReplicas.contains(replica.key)) {
+                log.warn("Replica {} is excluded from reads, lag {} ms", replica.key, lagMs);
+            }
+        }
+        freshReplicas = List.copyOf(fresh);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    List<String> getFreshReplicas() {
+        return freshReplicas;
+    }
+
+    private Double measureLag(Replica replica) {
+        try {
+            return replica.jdbcTemplate.queryForObject(lagQuery, Double.class);
+        } catch (RuntimeException e) {
+            log.debug("Lag check of replica {} failed", replica.key, e);
+            return null;
+        }
+    }
+
+    private static final class Replica {
+        private final String key;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+
+        private Replica(String key, DataSource dataSource) {
+            this.key = key;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.jdbcTemplate.setQueryTimeout(1);
+        }
+    }
+}
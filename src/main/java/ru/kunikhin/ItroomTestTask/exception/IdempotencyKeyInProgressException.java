@@ -0,0 +1,7 @@
+package ru.kunikhin.ItroomTestTask.exception;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException(String message) {
+        super(message);
+    }
+}
@@ -1,11 +1,14 @@
 package ru.kunikhin.ItroomTestTask.exception;
 
+/**
+ * A business rejection mapped to {@code 400}; the stack trace would never be looked at.
+ */
 public class InsufficientFundsException extends RuntimeException {
   public InsufficientFundsException(String message) {
-    super(message);
+    super(message, null, false, false);
   }
 
   public InsufficientFundsException(String message, Throwable cause) {
-    super(message, cause);
+    super(message, cause, false, false);
   }
-}
\ No newline at end of file
+}
@@ -1,11 +1,15 @@
 package ru.kunikhin.ItroomTestTask.exception;
 
+/**
+ * Expected outcome of a lookup rather than a bug, and thrown for every probe of an
+ * unknown id, so no stack trace is captured.
+ */
 public class WalletNotFoundException extends RuntimeException {
     public WalletNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 
     public WalletNotFoundException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, false, false);
     }
-}
\ No newline at end of file
+}
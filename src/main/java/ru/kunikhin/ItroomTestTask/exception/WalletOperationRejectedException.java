@@ -0,0 +1,11 @@
+package ru.kunikhin.ItroomTestTask.exception;
+
+public class WalletOperationRejectedException extends RuntimeException {
+    public WalletOperationRejectedException(String message) {
+        super(message);
+    }
+
+    public WalletOperationRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -8,8 +8,12 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.kunikhin.ItroomTestTask.exception.IdempotencyKeyConflictException;
+import ru.kunikhin.ItroomTestTask.exception.IdempotencyKeyInProgressException;
 import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.RateLimitExceededException;
 import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
 import ru.kunikhin.ItroomTestTask.model.dto.ApiError;
 
 import java.util.List;
@@ -109,4 +113,50 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
     }
 
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<ApiError> handleIdempotencyKeyConflictException(IdempotencyKeyConflictException ex, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+                HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                "Unprocessable Entity",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(apiError);
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<ApiError> handleIdempotencyKeyInProgressException(IdempotencyKeyInProgressException ex, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).header("Retry-After", "1").body(apiError);
+    }
+
+    @ExceptionHandler(WalletOperationRejectedException.class)
+    public ResponseEntity<ApiError> handleWalletOperationRejectedException(WalletOperationRejectedException ex, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service Unavailable",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(apiError);
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ApiError> handleRateLimitExceededException(RateLimitExceededException ex, HttpServletRequest request) {
+        ApiError apiError = new ApiError(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                "Too Many Requests",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(apiError);
+    }
+
 }
\ No newline at end of file
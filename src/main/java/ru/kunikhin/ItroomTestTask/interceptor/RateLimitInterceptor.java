@@ -2,78 +2,49 @@ package ru.kunikhin.ItroomTestTask.interceptor;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 
+/**
+ * Limits requests that carry the wallet id in the path or query string.
+ * Operations that carry it in the JSON body are limited by
+ * {@link RateLimitRequestBodyAdvice} once the body has been read.
+ */
 @Component
 public class RateLimitInterceptor implements HandlerInterceptor {
 
-    private final Map<String, RateLimitInfo> rateLimitMap = new ConcurrentHashMap<>();
+    private final WalletRateLimiter walletRateLimiter;
 
-    @Value("${ratelimiter.max-requests}")
-    private int maxRequests;
-    @Value("${ratelimiter.time-window-ms}")
-    private long timeWindow;
+    public RateLimitInterceptor(WalletRateLimiter walletRateLimiter) {
+        this.walletRateLimiter = walletRateLimiter;
+    }
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        RateLimitInfo rateLimitInfo = rateLimitMap.computeIfAbsent(
-                request.getParameter("walletId"),
-                k -> new RateLimitInfo()
-        );
-        long currentTime = System.currentTimeMillis();
-
-        synchronized (rateLimitInfo) {
-            if (currentTime - rateLimitInfo.getWindowStart() > timeWindow) {
-                rateLimitInfo.setWindowStart(currentTime);
-                rateLimitInfo.setRequestCount(1);
-                return true;
-            }
-
-            if (rateLimitInfo.getRequestCount() < maxRequests) {
-                rateLimitInfo.incrementRequestCount();
-                return true;
-            }
-
-            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.setHeader("Retry-After", "1");
-            return false;
+        String walletId = resolveWalletId(request);
+        if (walletId != null) {
+            walletRateLimiter.acquire(walletId, isWrite(request));
         }
+        return true;
     }
 
-    private static class RateLimitInfo {
-        private long windowStart;
-        private int requestCount;
-
-        public RateLimitInfo() {
-            this.windowStart = System.currentTimeMillis();
-            this.requestCount = 0;
-        }
-
-        public long getWindowStart() {
-            return windowStart;
-        }
-
-        public void setWindowStart(long windowStart) {
-            this.windowStart = windowStart;
-        }
-
-        public int getRequestCount() {
-            return requestCount;
-        }
-
-        public void setRequestCount(int requestCount) {
-            this.requestCount = requestCount;
+    @SuppressWarnings("unchecked")
+    private String resolveWalletId(HttpServletRequest request) {
+        Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (pathVariables != null && pathVariables.containsKey("walletId")) {
+            return pathVariables.get("walletId");
         }
+        return request.getParameter("walletId");
+    }
 
-        public void incrementRequestCount() {
-            this.requestCount++;
-        }
+    private boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package ru.kunikhin.ItroomTestTask.interceptor;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletTransferDto;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Charges the wallet's write budget for operations whose wallet id is only
+ * known after the JSON body has been deserialized. A transfer writes two wallets
+ * and is charged to both, a batch is charged once per operation.
+ */
+@ControllerAdvice
+public class RateLimitRequestBodyAdvice extends RequestBodyAdviceAdapter {
+
+    private final WalletRateLimiter walletRateLimiter;
+
+    public RateLimitRequestBodyAdvice(WalletRateLimiter walletRateLimiter) {
+        this.walletRateLimiter = walletRateLimiter;
+    }
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return WalletOperationDto.class.equals(targetType) || WalletTransferDto.class.equals(targetType)
+                || isBatch(targetType);
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter,
+                                Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+        if (body instanceof WalletTransferDto transfer) {
+            acquire(transfer.getFromWalletId());
+            acquire(transfer.getToWalletId());
+        } else if (body instanceof List<?> batch) {
+            walletRateLimiter.acquireWrites(batch.stream()
+                    .map(operation -> ((WalletOperationDto) operation).getWalletId())
+                    .toList());
+        } else {
+            acquire(((WalletOperationDto) body).getWalletId());
+        }
+        return body;
+    }
+
+    private static boolean isBatch(Type targetType) {
+        ResolvableType type = ResolvableType.forType(targetType);
+        return List.class.equals(type.resolve()) && WalletOperationDto.class.equals(type.resolveGeneric(0));
+    }
+
+    private void acquire(UUID walletId) {
+        if (walletId != null) {
+            walletRateLimiter.acquire(walletId.toString(), true);
+        }
+    }
+}
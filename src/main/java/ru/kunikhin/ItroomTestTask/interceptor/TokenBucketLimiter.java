@@ -0,0 +1,89 @@
+package ru.kunikhin.ItroomTestTask.interceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-key token buckets without locks. Each bucket is one {@link AtomicLong}
+ * holding the time at which it would be completely drained (the GCRA form of
+ * a token bucket): the token count and the refill timestamp are both encoded
+ * in that single value, so acquiring is one CAS on the happy path.
+ * <p>
+ * A bucket that has been full for longer than the idle timeout is
+ * indistinguishable from a new one and is dropped by {@link #evictIdle()}.
+ */
+public class TokenBucketLimiter {
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final long idleTimeoutNanos;
+    private final LongSupplier nanoClock;
+
+    public TokenBucketLimiter(int maxRequests, long timeWindowMs, long idleTimeoutMs) {
+        this(maxRequests, timeWindowMs, idleTimeoutMs, System::nanoTime);
+    }
+
+    TokenBucketLimiter(int maxRequests, long timeWindowMs, long idleTimeoutMs, LongSupplier nanoClock) {
+        if (maxRequests <= 0 || timeWindowMs <= 0) {
+            throw new IllegalArgumentException("Rate limit must allow at least one request per window");
+        }
+        this.emissionIntervalNanos = TimeUnit.MILLISECONDS.toNanos(timeWindowMs) / maxRequests;
+        this.burstNanos = emissionIntervalNanos * maxRequests;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Takes one token for the key.
+     *
+     * @return 0 if the request is allowed, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long drainedAt = bucket.get();
+            long next = Math.max(drainedAt, now) + emissionIntervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (bucket.compareAndSet(drainedAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire(String)} for a request that was
+     * not carried out after all. The bucket can never end up fuller than full, since
+     * a drain time in the past already reads as full.
+     */
+    public void release(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.addAndGet(-emissionIntervalNanos);
+        }
+    }
+
+    public int evictIdle() {
+        long threshold = nanoClock.getAsLong() - idleTimeoutNanos;
+        int before = buckets.size();
+        // A bucket removed while a request is still using it was full anyway; the token that
+        // request takes is forgotten, so at most one extra request per eviction gets through.
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() - threshold < 0);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.kunikhin.ItroomTestTask.interceptor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.exception.RateLimitExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-wallet request budgets, with reads and writes limited independently so
+ * balance polling cannot starve deposits and withdrawals.
+ */
+@Component
+public class WalletRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletRateLimiter.class);
+
+    private final TokenBucketLimiter readLimiter;
+    private final TokenBucketLimiter writeLimiter;
+
+    public WalletRateLimiter(@Value("${ratelimiter.read.max-requests:1000}") int readMaxRequests,
+                             @Value("${ratelimiter.read.time-window-ms:1000}") long readTimeWindowMs,
+                             @Value("${ratelimiter.write.max-requests:1000}") int writeMaxRequests,
+                             @Value("${ratelimiter.write.time-window-ms:1000}") long writeTimeWindowMs,
+                             @Value("${ratelimiter.idle-timeout-ms:60000}") long idleTimeoutMs,
+                             MeterRegistry meterRegistry) {
+        this.readLimiter = new TokenBucketLimiter(readMaxRequests, readTimeWindowMs, idleTimeoutMs);
+        this.writeLimiter = new TokenBucketLimiter(writeMaxRequests, writeTimeWindowMs, idleTimeoutMs);
+
+        Gauge.builder("ratelimiter.buckets", readLimiter, TokenBucketLimiter::size)
+                .tag("budget", "read")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.buckets", writeLimiter, TokenBucketLimiter::size)
+                .tag("budget", "write")
+                .register(meterRegistry);
+    }
+
+    public void acquire(String walletId, boolean write) {
+        long waitNanos = (write ? writeLimiter : readLimiter).tryAcquire(walletId);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            throw new RateLimitExceededException("Too many requests for wallet: " + walletId, retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Charges one write per wallet id, so a batch costs the same as sending its
+     * operations one by one. The first wallet over budget rejects the whole batch,
+     * and the tokens already taken for the wallets before it are given back.
+     */
+    public void acquireWrites(Iterable<UUID> walletIds) {
+        List<String> acquired = new ArrayList<>();
+        try {
+            for (UUID walletId : walletIds) {
+                if (walletId != null) {
+                    String key = walletId.toString();
+                    acquire(key, true);
+                    acquired.add(key);
+                }
+            }
+        } catch (RateLimitExceededException e) {
+            acquired.forEach(writeLimiter::release);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ratelimiter.eviction-interval-ms:30000}")
+    public void evictIdle() {
+        int evicted = readLimiter.evictIdle() + writeLimiter.evictIdle();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+    }
+}
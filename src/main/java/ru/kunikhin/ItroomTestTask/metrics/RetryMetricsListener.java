@@ -0,0 +1,60 @@
+package ru.kunikhin.ItroomTestTask.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+
+/**
+ * Counts what the wallet RetryTemplate actually does. A conflict is anything it
+ * retries: version conflicts, but also serialization failures and deadlocks. Callers may put the wallet id
+ * into the retry context under {@link #WALLET_ID} so conflicts can be traced to
+ * wallets in the logs without turning wallet ids into metric tags.
+ */
+public class RetryMetricsListener implements RetryListener {
+
+    public static final String WALLET_ID = "wallet.id";
+
+    private static final Logger log = LoggerFactory.getLogger(RetryMetricsListener.class);
+
+    private final Counter conflicts;
+    private final Counter exhausted;
+    private final DistributionSummary attemptsPerSuccess;
+
+    public RetryMetricsListener(MeterRegistry meterRegistry) {
+        this.conflicts = Counter.builder("wallet.retry.conflicts")
+                .description("Concurrency failures seen by the retry template")
+                .register(meterRegistry);
+        this.exhausted = Counter.builder("wallet.retry.exhausted")
+                .description("Operations that still conflicted after the last attempt")
+                .register(meterRegistry);
+        this.attemptsPerSuccess = DistributionSummary.builder("wallet.retry.attempts")
+                .description("Attempts needed by operations that succeeded")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof ConcurrencyFailureException) {
+            conflicts.increment();
+            log.debug("{} on wallet {} (attempt {})", throwable.getClass().getSimpleName(),
+                    context.getAttribute(WALLET_ID), context.getRetryCount());
+        }
+    }
+
+    @Override
+    public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable == null) {
+            attemptsPerSuccess.record(context.getRetryCount() + 1);
+        } else if (throwable instanceof ConcurrencyFailureException) {
+            exhausted.increment();
+            log.warn("Retries exhausted for wallet {} after {} attempts", context.getAttribute(WALLET_ID), context.getRetryCount());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.kunikhin.ItroomTestTask.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.util.function.Supplier;
+
+/**
+ * End-to-end timing of wallet operations, tagged by operation type and outcome
+ * (success or the simple name of the exception the caller received).
+ */
+@Component
+public class WalletOperationMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public WalletOperationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public static WalletOperationMetrics noop() {
+        return new WalletOperationMetrics(new CompositeMeterRegistry());
+    }
+
+    public <T> T record(WalletOperationType operationType, Supplier<T> operation) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return operation.get();
+        } catch (RuntimeException e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("wallet.operation")
+                    .description("Wallet operation latency including retries and backoff")
+                    .tag("type", String.valueOf(operationType))
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
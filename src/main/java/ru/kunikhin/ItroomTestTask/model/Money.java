@@ -0,0 +1,174 @@
+package ru.kunikhin.ItroomTestTask.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * Monetary amount held as a {@code long} count of 1/10000 units, matching the
+ * {@code NUMERIC(19,4)} balance column, so balance arithmetic allocates at most
+ * one small object and never a {@code BigInteger}.
+ * <p>
+ * The scale the value was written with (0..4) is carried along and combined the
+ * way {@link BigDecimal#add} does, so values converted back with
+ * {@link #toBigDecimal()} look exactly like they did before. Equality and
+ * ordering only consider the numeric value.
+ * <p>
+ * The range is {@link #MIN} to {@link #MAX}, about ±9.22e14, a little narrower
+ * than the column's ±1e15; changeset 008 adds check constraints so that the
+ * database can never hold a balance outside it.
+ */
+@Immutable
+@JsonSerialize(using = MoneyJsonSerializer.class)
+@JsonDeserialize(using = MoneyJsonDeserializer.class)
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 4;
+    public static final Money ZERO = new Money(0, 0);
+    public static final Money MIN = new Money(Long.MIN_VALUE, SCALE);
+    public static final Money MAX = new Money(Long.MAX_VALUE, SCALE);
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000};
+
+    private final long units;
+    private final int scale;
+
+    private Money(long units, int scale) {
+        this.units = units;
+        this.scale = scale;
+    }
+
+    public static Money ofUnits(long units) {
+        return new Money(units, SCALE);
+    }
+
+    public static Money of(BigDecimal value) {
+        if (value.scale() > SCALE) {
+            value = value.stripTrailingZeros();
+            if (value.scale() > SCALE) {
+                throw new IllegalArgumentException("Amount must have at most " + SCALE + " decimal places");
+            }
+        }
+        try {
+            return new Money(value.movePointRight(SCALE).longValueExact(), Math.max(value.scale(), 0));
+        } catch (ArithmeticException e) {
+            throw outOfRange(e);
+        }
+    }
+
+    /**
+     * Parses a plain decimal ({@code -?digits[.digits]}) without intermediate objects.
+     *
+     * @return the amount, or {@code null} if the text is not a plain decimal (for
+     *         example uses an exponent); callers fall back to {@link #of(BigDecimal)}
+     */
+    public static Money parse(char[] text, int offset, int length) {
+        try {
+            int end = offset + length;
+            int i = offset;
+            boolean negative = false;
+            if (i < end && (text[i] == '-' || text[i] == '+')) {
+                negative = text[i] == '-';
+                i++;
+            }
+            long units = 0;
+            int digits = 0;
+            int fractionDigits = -1;
+            for (; i < end; i++) {
+                char c = text[i];
+                if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                    continue;
+                }
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                digits++;
+                if (fractionDigits >= 0) {
+                    if (fractionDigits == SCALE) {
+                        if (c != '0') {
+                            throw new IllegalArgumentException("Amount must have at most " + SCALE + " decimal places");
+                        }
+                        continue;
+                    }
+                    fractionDigits++;
+                }
+                units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+            }
+            if (digits == 0) {
+                return null;
+            }
+            int scale = Math.max(fractionDigits, 0);
+            units = Math.multiplyExact(units, POWERS_OF_TEN[SCALE - scale]);
+            return new Money(negative ? -units : units, scale);
+        } catch (ArithmeticException e) {
+            throw outOfRange(e);
+        }
+    }
+
+    public Money plus(Money other) {
+        try {
+            return new Money(Math.addExact(units, other.units), Math.max(scale, other.scale));
+        } catch (ArithmeticException e) {
+            throw outOfRange(e);
+        }
+    }
+
+    public Money minus(Money other) {
+        try {
+            return new Money(Math.subtractExact(units, other.units), Math.max(scale, other.scale));
+        } catch (ArithmeticException e) {
+            throw outOfRange(e);
+        }
+    }
+
+    public Money negate() {
+        try {
+            return new Money(Math.negateExact(units), scale);
+        } catch (ArithmeticException e) {
+            throw outOfRange(e);
+        }
+    }
+
+    public boolean isPositive() {
+        return units > 0;
+    }
+
+    public long units() {
+        return units;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units / POWERS_OF_TEN[SCALE - scale], scale);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money money && units == money.units;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private static IllegalArgumentException outOfRange(ArithmeticException cause) {
+        return new IllegalArgumentException("Amount is out of range", cause);
+    }
+}
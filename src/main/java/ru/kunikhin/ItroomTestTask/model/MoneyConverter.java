@@ -0,0 +1,33 @@
+package ru.kunikhin.ItroomTestTask.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * Maps {@link Money} to the {@code NUMERIC(19,4)} balance column without loss in either direction.
+ * The column is constrained to the {@link Money} range; a value outside it is reported as corrupt
+ * stored data rather than as an invalid request amount.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money attribute) {
+        return attribute == null ? null : BigDecimal.valueOf(attribute.units(), Money.SCALE);
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal dbData) {
+        if (dbData == null) {
+            return null;
+        }
+        try {
+            return Money.of(dbData);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Stored balance " + dbData.toPlainString()
+                    + " is outside " + Money.MIN + ".." + Money.MAX, e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.kunikhin.ItroomTestTask.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Reads amounts straight from the parser's character buffer instead of
+ * materializing a {@code BigDecimal} first.
+ */
+public class MoneyJsonDeserializer extends JsonDeserializer<Money> {
+
+    @Override
+    public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+            return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+        }
+        try {
+            Money money = Money.parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            if (money != null) {
+                return money;
+            }
+            return token == JsonToken.VALUE_STRING
+                    ? Money.of(new BigDecimal(p.getText()))
+                    : Money.of(p.getDecimalValue());
+        } catch (IllegalArgumentException e) {
+            return (Money) ctxt.handleWeirdStringValue(Money.class, p.getText(), e.getMessage());
+        }
+    }
+}
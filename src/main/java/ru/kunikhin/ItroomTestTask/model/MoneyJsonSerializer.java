@@ -0,0 +1,18 @@
+package ru.kunikhin.ItroomTestTask.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+/**
+ * Writes amounts as JSON numbers, exactly as the equivalent {@code BigDecimal} would be written.
+ */
+public class MoneyJsonSerializer extends JsonSerializer<Money> {
+
+    @Override
+    public void serialize(Money value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeNumber(value.toBigDecimal());
+    }
+}
@@ -0,0 +1,26 @@
+package ru.kunikhin.ItroomTestTask.model;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotated {@link Money} must be greater than zero; {@code null} is valid.
+ */
+@Documented
+@Constraint(validatedBy = PositiveAmountValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PositiveAmount {
+
+    String message() default "Amount must be positive";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
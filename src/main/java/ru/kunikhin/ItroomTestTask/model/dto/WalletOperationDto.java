@@ -2,8 +2,9 @@ package ru.kunikhin.ItroomTestTask.model.dto;
 
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.PositiveAmount;
 import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
-import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
@@ -20,13 +21,17 @@ public class WalletOperationDto {
     private WalletOperationType operationType;
 
     @NotNull(message = "Amount is required")
-    @DecimalMin(value = "0.0", inclusive = false, message = "Amount must be positive")
-    private BigDecimal amount;
+    @PositiveAmount
+    private Money amount;
 
     public WalletOperationDto() {
     }
 
     public WalletOperationDto(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
+        this(walletId, operationType, amount == null ? null : Money.of(amount));
+    }
+
+    public WalletOperationDto(UUID walletId, WalletOperationType operationType, Money amount) {
         this.walletId = walletId;
         this.operationType = operationType;
         this.amount = amount;
@@ -48,11 +53,11 @@ public class WalletOperationDto {
         this.operationType = operationType;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package ru.kunikhin.ItroomTestTask.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationStatus;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WalletOperationResultDto {
+
+    private UUID walletId;
+    private WalletOperationStatus status;
+    private BigDecimal amount;
+    private String message;
+
+    public WalletOperationResultDto() {
+    }
+
+    public WalletOperationResultDto(UUID walletId, WalletOperationStatus status, BigDecimal amount, String message) {
+        this.walletId = walletId;
+        this.status = status;
+        this.amount = amount;
+        this.message = message;
+    }
+
+    public static WalletOperationResultDto success(UUID walletId, BigDecimal amount) {
+        return new WalletOperationResultDto(walletId, WalletOperationStatus.SUCCESS, amount, null);
+    }
+
+    public static WalletOperationResultDto failure(UUID walletId, WalletOperationStatus status, String message) {
+        return new WalletOperationResultDto(walletId, status, null, message);
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public void setWalletId(UUID walletId) {
+        this.walletId = walletId;
+    }
+
+    public WalletOperationStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(WalletOperationStatus status) {
+        this.status = status;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.kunikhin.ItroomTestTask.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotNull;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.PositiveAmount;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public class WalletTransferDto {
+
+    @JsonProperty("fromWalletId")
+    @NotNull(message = "Source wallet ID is required")
+    private UUID fromWalletId;
+
+    @JsonProperty("toWalletId")
+    @NotNull(message = "Target wallet ID is required")
+    private UUID toWalletId;
+
+    @NotNull(message = "Amount is required")
+    @PositiveAmount
+    private Money amount;
+
+    public WalletTransferDto() {
+    }
+
+    public WalletTransferDto(UUID fromWalletId, UUID toWalletId, BigDecimal amount) {
+        this.fromWalletId = fromWalletId;
+        this.toWalletId = toWalletId;
+        this.amount = amount == null ? null : Money.of(amount);
+    }
+
+    public UUID getFromWalletId() {
+        return fromWalletId;
+    }
+
+    public void setFromWalletId(UUID fromWalletId) {
+        this.fromWalletId = fromWalletId;
+    }
+
+    public UUID getToWalletId() {
+        return toWalletId;
+    }
+
+    public void setToWalletId(UUID toWalletId) {
+        this.toWalletId = toWalletId;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Money amount) {
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.kunikhin.ItroomTestTask.model.dto;
+
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+public class WalletTransferResultDto {
+
+    private Wallet from;
+    private Wallet to;
+
+    public WalletTransferResultDto() {
+    }
+
+    public WalletTransferResultDto(Wallet from, Wallet to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public Wallet getFrom() {
+        return from;
+    }
+
+    public void setFrom(Wallet from) {
+        this.from = from;
+    }
+
+    public Wallet getTo() {
+        return to;
+    }
+
+    public void setTo(Wallet to) {
+        this.to = to;
+    }
+}
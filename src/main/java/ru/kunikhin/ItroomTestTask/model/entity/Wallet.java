@@ -1,6 +1,8 @@
 package ru.kunikhin.ItroomTestTask.model.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -9,6 +11,8 @@ import jakarta.persistence.Table;
 import jakarta.persistence.Version;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.MoneyConverter;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -23,8 +27,9 @@ public class Wallet {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
+    @Convert(converter = MoneyConverter.class)
     @Column(nullable = false, precision = 19, scale = 4)
-    private BigDecimal amount;
+    private Money amount;
 
     @Version
     @Column(nullable = false)
@@ -38,12 +43,28 @@ public class Wallet {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    // Written only by WalletSlotRepository; non-zero means the balance is striped.
+    @Column(name = "slot_count", nullable = false, insertable = false, updatable = false)
+    private int slotCount;
+
     public Wallet() {
-        this.amount = BigDecimal.ZERO;
+        this.amount = Money.ZERO;
     }
 
     public Wallet(BigDecimal amount) {
+        this.amount = Money.of(amount);
+    }
+
+    public Wallet(UUID id, BigDecimal amount, Long version, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this(id, Money.of(amount), version, createdAt, updatedAt);
+    }
+
+    public Wallet(UUID id, Money amount, Long version, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
         this.amount = amount;
+        this.version = version;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
     }
 
     public UUID getId() {
@@ -55,11 +76,20 @@ public class Wallet {
     }
 
     public BigDecimal getAmount() {
-        return amount;
+        return amount.toBigDecimal();
     }
 
     public void setAmount(BigDecimal amount) {
-        this.amount = amount;
+        this.amount = Money.of(amount);
+    }
+
+    @JsonIgnore
+    public Money getBalance() {
+        return amount;
+    }
+
+    public void setBalance(Money balance) {
+        this.amount = balance;
     }
 
     public LocalDateTime getCreatedAt() {
@@ -78,6 +108,15 @@ public class Wallet {
         this.version = version;
     }
 
+    @JsonIgnore
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public void setSlotCount(int slotCount) {
+        this.slotCount = slotCount;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof Wallet wallet)) return false;
@@ -0,0 +1,102 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public class IdempotencyKeyRepository {
+
+    private static final String CLAIM_SQL = """
+            INSERT INTO idempotency_keys (idempotency_key, fingerprint, expires_at)
+            VALUES (:key, :fingerprint, :expiresAt)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String COMPLETE_SQL = """
+            UPDATE idempotency_keys SET response_body = :responseBody WHERE idempotency_key = :key
+            """;
+
+    private static final String RELEASE_SQL = """
+            DELETE FROM idempotency_keys WHERE idempotency_key = :key AND response_body IS NULL
+            """;
+
+    private static final String FIND_SQL = """
+            SELECT fingerprint, response_body FROM idempotency_keys WHERE idempotency_key = :key
+            """;
+
+    private static final String DELETE_EXPIRED_SQL = """
+            DELETE FROM idempotency_keys
+            WHERE idempotency_key IN (
+                SELECT idempotency_key FROM idempotency_keys WHERE expires_at < :now LIMIT :batchSize
+            )
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts the key if it is new. The row has no response until {@link #complete}
+     * is called, which tells a concurrent duplicate that the operation is still running.
+     */
+    public boolean claim(String key, String fingerprint, LocalDateTime expiresAt) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("fingerprint", fingerprint)
+                .addValue("expiresAt", Timestamp.valueOf(expiresAt));
+        return jdbcTemplate.update(CLAIM_SQL, params) == 1;
+    }
+
+    public void complete(String key, String responseBody) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("responseBody", responseBody);
+        jdbcTemplate.update(COMPLETE_SQL, params);
+    }
+
+    /**
+     * Removes a claim whose operation failed, so the request can be sent again.
+     */
+    public void release(String key) {
+        jdbcTemplate.update(RELEASE_SQL, new MapSqlParameterSource("key", key));
+    }
+
+    public Optional<StoredResponse> find(String key) {
+        List<StoredResponse> responses = jdbcTemplate.query(FIND_SQL, new MapSqlParameterSource("key", key),
+                (rs, rowNum) -> new StoredResponse(rs.getString("fingerprint"), rs.getString("response_body")));
+        return responses.stream().findFirst();
+    }
+
+    public int deleteExpired(LocalDateTime now, int batchSize) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("now", Timestamp.valueOf(now))
+                .addValue("batchSize", batchSize);
+        return jdbcTemplate.update(DELETE_EXPIRED_SQL, params);
+    }
+
+    public static class StoredResponse {
+        private final String fingerprint;
+        private final String responseBody;
+
+        public StoredResponse(String fingerprint, String responseBody) {
+            this.fingerprint = fingerprint;
+            this.responseBody = responseBody;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getResponseBody() {
+            return responseBody;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reads balances of many wallets with one {@code id = ANY(?)} query per chunk,
+ * straight into lightweight {@link Wallet} values: nothing is hydrated as an entity
+ * or tracked by a persistence context. The balance expression matches the single
+ * wallet read of the write strategy in use, slots and ledger tail included.
+ */
+@Repository
+public class WalletBalanceLookupRepository {
+
+    private static final String FIND_BALANCES_SQL = """
+            SELECT w.id, CASE WHEN w.slot_count > 0 THEN %s ELSE w.amount END AS amount, w.version
+            FROM wallets w
+            WHERE w.id = ANY(?)
+            """.formatted(WalletSlotRepository.SLOT_BALANCE);
+
+    private static final String FIND_LEDGER_BALANCES_SQL = """
+            SELECT w.id, %s AS amount, w.version
+            FROM wallets w
+            WHERE w.id = ANY(?)
+            """.formatted(WalletLedgerRepository.LEDGER_BALANCE);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletBalanceLookupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Map<UUID, Wallet> findBalances(Collection<UUID> walletIds, boolean ledger) {
+        Map<UUID, Wallet> balances = new HashMap<>(walletIds.size() * 2);
+        jdbcTemplate.query(ledger ? FIND_LEDGER_BALANCES_SQL : FIND_BALANCES_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", walletIds.toArray())),
+                rs -> {
+                    UUID walletId = rs.getObject("id", UUID.class);
+                    balances.put(walletId, new Wallet(walletId, rs.getBigDecimal("amount"), rs.getLong("version"), null, null));
+                });
+        return balances;
+    }
+}
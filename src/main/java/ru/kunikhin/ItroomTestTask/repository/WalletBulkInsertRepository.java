@@ -0,0 +1,45 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Inserts empty wallets with application-generated ids as one JDBC batch. With
+ * {@code reWriteBatchedInserts=true} the PostgreSQL driver folds the batch into
+ * multi-row {@code INSERT} statements, so a chunk costs a few round-trips.
+ */
+@Repository
+public class WalletBulkInsertRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO wallets (id, amount, version) VALUES (?, ?, 0)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletBulkInsertRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insert(List<UUID> walletIds) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setObject(1, walletIds.get(i));
+                ps.setBigDecimal(2, BigDecimal.ZERO);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return walletIds.size();
+            }
+        });
+    }
+}
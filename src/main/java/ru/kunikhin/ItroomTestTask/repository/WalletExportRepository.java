@@ -0,0 +1,60 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+/**
+ * Reads {@code wallets} in id order, one keyset page per call. Rows are handed to
+ * the callback as the driver fetches them; inside a transaction the PostgreSQL
+ * driver then uses a server-side cursor and holds only {@code fetch-size} rows.
+ */
+@Repository
+public class WalletExportRepository {
+
+    private static final String COLUMNS = """
+            SELECT w.id, %s AS amount, w.version, w.updated_at
+            FROM wallets w
+            """;
+
+    private static final String FIRST_PAGE = """
+            ORDER BY w.id
+            LIMIT ?
+            """;
+
+    private static final String NEXT_PAGE = """
+            WHERE w.id > ?
+            ORDER BY w.id
+            LIMIT ?
+            """;
+
+    private static final String ROW_COLUMNS = COLUMNS.formatted("""
+            CASE WHEN w.slot_count > 0 THEN %s ELSE w.amount END""".formatted(WalletSlotRepository.SLOT_BALANCE));
+    private static final String LEDGER_COLUMNS = COLUMNS.formatted(WalletLedgerRepository.LEDGER_BALANCE);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletExportRepository(DataSource dataSource,
+                                  @Value("${wallet.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    /**
+     * Streams up to {@code limit} wallets with ids greater than {@code afterId}, or
+     * from the first wallet if it is {@code null}. Must be called inside a
+     * transaction for the fetch size to take effect.
+     */
+    public void findPage(UUID afterId, int limit, boolean ledger, RowCallbackHandler rows) {
+        String columns = ledger ? LEDGER_COLUMNS : ROW_COLUMNS;
+        if (afterId == null) {
+            jdbcTemplate.query(columns + FIRST_PAGE, rows, limit);
+        } else {
+            jdbcTemplate.query(columns + NEXT_PAGE, rows, afterId, limit);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Wallet ids and creation times only, for building the set of known ids without
+ * loading whole rows.
+ */
+@Repository
+public class WalletIdRepository {
+
+    private static final String FIRST_PAGE = """
+            SELECT id, created_at FROM wallets
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String NEXT_PAGE = """
+            SELECT id, created_at FROM wallets
+            WHERE id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+    private static final String CREATED_SINCE = """
+            SELECT id, created_at FROM wallets
+            WHERE created_at > ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletIdRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Up to {@code limit} wallets with ids greater than {@code afterId}, or from the
+     * first wallet if it is {@code null}.
+     */
+    public void findPage(UUID afterId, int limit, RowCallbackHandler rows) {
+        if (afterId == null) {
+            jdbcTemplate.query(FIRST_PAGE, rows, limit);
+        } else {
+            jdbcTemplate.query(NEXT_PAGE, rows, afterId, limit);
+        }
+    }
+
+    public void findCreatedSince(LocalDateTime since, RowCallbackHandler rows) {
+        jdbcTemplate.query(CREATED_SINCE, rows, since);
+    }
+}
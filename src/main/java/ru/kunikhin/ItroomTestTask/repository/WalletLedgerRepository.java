@@ -0,0 +1,139 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Ledger in {@code wallet_operations}. The balance of a wallet is
+ * {@code wallets.amount} (the snapshot) plus every ledger row written by a
+ * transaction at or after {@code wallets.folded_tx_id}. Rows are only appended
+ * until compaction folds them into the snapshot and deletes them.
+ */
+@Repository
+public class WalletLedgerRepository {
+
+    static final String LEDGER_BALANCE = """
+            w.amount + COALESCE((
+                SELECT SUM(o.amount) FROM wallet_operations o
+                WHERE o.wallet_id = w.id AND o.tx_id >= w.folded_tx_id
+            ), 0)
+            """;
+
+    private static final String FIND_BALANCE_SQL = """
+            SELECT w.id, %s AS amount, w.version, w.created_at, w.updated_at
+            FROM wallets w
+            WHERE w.id = :walletId
+            """.formatted(LEDGER_BALANCE);
+
+    // Rows inserted by this statement are not visible to its own subqueries,
+    // hence the explicit "+ i.amount".
+    private static final String APPEND_SQL = """
+            WITH i AS (
+                INSERT INTO wallet_operations (wallet_id, operation_type, amount)
+                VALUES (:walletId, :operationType, :delta)
+                RETURNING wallet_id, amount
+            )
+            SELECT w.id, %s + i.amount AS amount, w.version, w.created_at, w.updated_at
+            FROM i
+            JOIN wallets w ON w.id = i.wallet_id
+            """.formatted(LEDGER_BALANCE);
+
+    private static final String LOCK_SQL = """
+            SELECT id FROM wallets WHERE id = :walletId FOR NO KEY UPDATE
+            """;
+
+    // Folds ledger rows of transactions older than the snapshot horizon: none of
+    // them can still be in flight, so no row below the new watermark can appear
+    // later. The folded_tx_id check makes a concurrent fold of the same wallet a no-op.
+    // Folded rows are deleted in the same statement, only for the wallets this fold
+    // updated, so wallet_operations holds just the unfolded tails and each run scans
+    // those rather than the whole history. %1$s is "wallets" or one of its partitions.
+    private static final String COMPACT_SQL = """
+            WITH horizon AS (
+                SELECT pg_snapshot_xmin(pg_current_snapshot()) AS xmin
+            ), tails AS (
+                SELECT w.id AS wallet_id, w.folded_tx_id AS folded_from, SUM(o.amount) AS delta
+                FROM wallet_operations o
+                JOIN %1$s w ON w.id = o.wallet_id
+                CROSS JOIN horizon h
+                WHERE o.tx_id >= w.folded_tx_id AND o.tx_id < h.xmin
+                GROUP BY w.id, w.folded_tx_id
+                LIMIT :batchSize
+            ), folded AS (
+                UPDATE %1$s w
+                SET amount = w.amount + t.delta,
+                    folded_tx_id = h.xmin,
+                    version = w.version + 1,
+                    updated_at = CURRENT_TIMESTAMP
+                FROM tails t CROSS JOIN horizon h
+                WHERE w.id = t.wallet_id AND w.folded_tx_id = t.folded_from
+                RETURNING w.id AS wallet_id, w.folded_tx_id
+            ), deleted AS (
+                DELETE FROM wallet_operations o
+                USING folded f
+                WHERE o.wallet_id = f.wallet_id AND o.tx_id < f.folded_tx_id
+            )
+            SELECT COUNT(*) FROM folded
+            """;
+
+    private static final RowMapper<Wallet> WALLET_ROW_MAPPER = (rs, rowNum) -> new Wallet(
+            rs.getObject("id", UUID.class),
+            rs.getBigDecimal("amount"),
+            rs.getLong("version"),
+            rs.getObject("created_at", LocalDateTime.class),
+            rs.getObject("updated_at", LocalDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public WalletLedgerRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<Wallet> findWithBalance(UUID walletId) {
+        List<Wallet> wallets = jdbcTemplate.query(FIND_BALANCE_SQL,
+                new MapSqlParameterSource("walletId", walletId), WALLET_ROW_MAPPER);
+        return wallets.stream().findFirst();
+    }
+
+    /**
+     * Takes the row lock that serializes withdrawals of one wallet. Deposits only
+     * need the foreign-key share lock, so they keep appending concurrently.
+     */
+    public boolean lockForWithdrawal(UUID walletId) {
+        return !jdbcTemplate.queryForList(LOCK_SQL, new MapSqlParameterSource("walletId", walletId), UUID.class)
+                .isEmpty();
+    }
+
+    public Wallet append(UUID walletId, WalletOperationType operationType, BigDecimal delta) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("walletId", walletId)
+                .addValue("operationType", operationType.name())
+                .addValue("delta", delta);
+        return jdbcTemplate.queryForObject(APPEND_SQL, params, WALLET_ROW_MAPPER);
+    }
+
+    public int compact(int batchSize) {
+        return compact("wallets", batchSize);
+    }
+
+    /**
+     * Folds only wallets stored in {@code table}, a partition of {@code wallets}, so
+     * one batch touches a single partition and its indexes.
+     */
+    public int compact(String table, int batchSize) {
+        Integer folded = jdbcTemplate.queryForObject(COMPACT_SQL.formatted(WalletPartitionRepository.quote(table)),
+                new MapSqlParameterSource("batchSize", batchSize), Integer.class);
+        return folded == null ? 0 : folded;
+    }
+}
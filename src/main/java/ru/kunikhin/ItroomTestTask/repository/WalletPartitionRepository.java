@@ -0,0 +1,69 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Catalog queries over the hash partitions of {@code wallets}. Partition names are
+ * read from {@code pg_inherits}, so the list stays correct whatever modulus the
+ * migration was run with; an unpartitioned table has no partitions.
+ */
+@Repository
+public class WalletPartitionRepository {
+
+    private static final String FIND_PARTITIONS_SQL = """
+            SELECT c.relname
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'wallets'::regclass
+            ORDER BY c.relname
+            """;
+
+    private static final String FIND_VACUUM_CANDIDATE_SQL = """
+            SELECT s.relname
+            FROM pg_stat_user_tables s
+            JOIN pg_inherits i ON i.inhrelid = s.relid
+            WHERE i.inhparent = 'wallets'::regclass
+              AND s.n_dead_tup >= :minDeadTuples
+              AND s.n_dead_tup > :deadRatio * GREATEST(s.n_live_tup, 1)
+            ORDER BY s.n_dead_tup DESC
+            LIMIT 1
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public WalletPartitionRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList(FIND_PARTITIONS_SQL, new MapSqlParameterSource(), String.class);
+    }
+
+    /**
+     * The partition with the most dead tuples, provided it has at least
+     * {@code minDeadTuples} of them and more than {@code deadRatio} per live tuple.
+     */
+    public Optional<String> findVacuumCandidate(long minDeadTuples, double deadRatio) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("minDeadTuples", minDeadTuples)
+                .addValue("deadRatio", deadRatio);
+        return jdbcTemplate.queryForList(FIND_VACUUM_CANDIDATE_SQL, params, String.class).stream().findFirst();
+    }
+
+    /**
+     * VACUUM cannot run inside a transaction block, so this must be called without
+     * an active transaction (the pool hands out auto-commit connections).
+     */
+    public void vacuumAnalyze(String partition) {
+        jdbcTemplate.getJdbcOperations().execute("VACUUM (ANALYZE) " + quote(partition));
+    }
+
+    static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
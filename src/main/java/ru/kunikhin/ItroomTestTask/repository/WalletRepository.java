@@ -7,5 +7,5 @@ import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
 import java.util.UUID;
 
 @Repository
-public interface WalletRepository extends CrudRepository<Wallet, UUID> {
+public interface WalletRepository extends CrudRepository<Wallet, UUID>, WalletRepositoryCustom {
 }
@@ -0,0 +1,42 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface WalletRepositoryCustom {
+
+    /**
+     * Adds {@code delta} to the wallet balance in one conditional UPDATE, refusing
+     * to let the balance go negative. Distinguishes a missing wallet from
+     * insufficient funds within the same statement, so no prior SELECT is needed.
+     */
+    WalletUpdateResult applyDelta(UUID walletId, BigDecimal delta);
+
+    /**
+     * Writes a new balance only if the row still has the version {@code wallet} was read
+     * with, the same check Hibernate makes for {@code @Version}, but issued right away
+     * instead of at flush time so the caller controls the order in which rows get locked.
+     *
+     * @return the row as written, or empty if the wallet is missing or was changed concurrently
+     */
+    Optional<Wallet> updateIfVersion(Wallet wallet, BigDecimal amount);
+
+    /**
+     * Reads the wallet row with plain JDBC. Unlike {@code findById} the result never
+     * comes from, or goes into, the persistence context, so a row read on a replica
+     * cannot later be served in place of the primary's.
+     */
+    Optional<Wallet> findCommitted(UUID walletId);
+
+    /**
+     * Reads the wallet and locks its row until the transaction ends. A row locked by
+     * another transaction is waited for at most {@code lockTimeout}; {@link Duration#ZERO}
+     * does not wait at all ({@code NOWAIT}). Either way a lock that cannot be taken
+     * surfaces as a {@code PessimisticLockingFailureException}.
+     */
+    Optional<Wallet> findByIdForUpdate(UUID walletId, Duration lockTimeout);
+}
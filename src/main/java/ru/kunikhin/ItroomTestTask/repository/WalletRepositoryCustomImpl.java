@@ -0,0 +1,131 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.UUID;
+
+public class WalletRepositoryCustomImpl implements WalletRepositoryCustom {
+
+    // The "target" CTE reads the statement snapshot, so it tells a missing row
+    // apart from a failed funds check without a second round-trip.
+    private static final String APPLY_DELTA_SQL = """
+            WITH target AS (
+                SELECT id FROM wallets WHERE id = :walletId
+            ), updated AS (
+                UPDATE wallets
+                SET amount = amount + :delta, version = version + 1, updated_at = CURRENT_TIMESTAMP
+                WHERE id = :walletId AND amount + :delta >= 0
+                RETURNING id, amount, version, created_at, updated_at
+            )
+            SELECT EXISTS (SELECT 1 FROM target) AS found, u.id, u.amount, u.version, u.created_at, u.updated_at
+            FROM (SELECT 1) AS one
+            LEFT JOIN updated u ON TRUE
+            """;
+
+    private static final String UPDATE_IF_VERSION_SQL = """
+            UPDATE wallets
+            SET amount = :amount, version = version + 1, updated_at = :updatedAt
+            WHERE id = :walletId AND version = :version
+            """;
+
+    private static final String FIND_SQL = """
+            SELECT id, amount, version, created_at, updated_at, slot_count
+            FROM wallets
+            WHERE id = :walletId
+            """;
+
+    private static final String FIND_FOR_UPDATE_SQL = """
+            SELECT id, amount, version, created_at, updated_at, slot_count
+            FROM wallets
+            WHERE id = :walletId
+            FOR UPDATE""";
+
+    // Transaction-local, so the pooled connection goes back with the server default.
+    private static final String SET_LOCK_TIMEOUT_SQL = "SELECT set_config('lock_timeout', :timeout, true)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public WalletRepositoryCustomImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public WalletUpdateResult applyDelta(UUID walletId, BigDecimal delta) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("walletId", walletId)
+                .addValue("delta", delta);
+
+        return jdbcTemplate.queryForObject(APPLY_DELTA_SQL, params, (rs, rowNum) -> {
+            if (!rs.getBoolean("found")) {
+                return WalletUpdateResult.notFound();
+            }
+            if (rs.getObject("id") == null) {
+                return WalletUpdateResult.insufficientFunds();
+            }
+            return WalletUpdateResult.updated(new Wallet(
+                    rs.getObject("id", UUID.class),
+                    rs.getBigDecimal("amount"),
+                    rs.getLong("version"),
+                    rs.getObject("created_at", LocalDateTime.class),
+                    rs.getObject("updated_at", LocalDateTime.class)
+            ));
+        });
+    }
+
+    @Override
+    public Optional<Wallet> updateIfVersion(Wallet wallet, BigDecimal amount) {
+        // Set here rather than by the database, so the returned row carries the value
+        // that was written; JVM time, like @UpdateTimestamp on the entity path.
+        LocalDateTime updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("walletId", wallet.getId())
+                .addValue("amount", amount)
+                .addValue("version", wallet.getVersion())
+                .addValue("updatedAt", Timestamp.valueOf(updatedAt));
+        if (jdbcTemplate.update(UPDATE_IF_VERSION_SQL, params) != 1) {
+            return Optional.empty();
+        }
+        return Optional.of(new Wallet(wallet.getId(), amount, wallet.getVersion() + 1, wallet.getCreatedAt(), updatedAt));
+    }
+
+    @Override
+    public Optional<Wallet> findCommitted(UUID walletId) {
+        return jdbcTemplate.query(FIND_SQL, new MapSqlParameterSource("walletId", walletId), WalletRepositoryCustomImpl::mapWallet)
+                .stream().findFirst();
+    }
+
+    @Override
+    public Optional<Wallet> findByIdForUpdate(UUID walletId, Duration lockTimeout) {
+        String sql = FIND_FOR_UPDATE_SQL;
+        if (lockTimeout.isZero()) {
+            sql += " NOWAIT";
+        } else {
+            jdbcTemplate.queryForObject(SET_LOCK_TIMEOUT_SQL,
+                    new MapSqlParameterSource("timeout", lockTimeout.toMillis() + "ms"), String.class);
+        }
+        return jdbcTemplate.query(sql, new MapSqlParameterSource("walletId", walletId), WalletRepositoryCustomImpl::mapWallet)
+                .stream().findFirst();
+    }
+
+    private static Wallet mapWallet(ResultSet rs, int rowNum) throws SQLException {
+        Wallet wallet = new Wallet(
+                rs.getObject("id", UUID.class),
+                rs.getBigDecimal("amount"),
+                rs.getLong("version"),
+                rs.getObject("created_at", LocalDateTime.class),
+                rs.getObject("updated_at", LocalDateTime.class)
+        );
+        wallet.setSlotCount(rs.getInt("slot_count"));
+        return wallet;
+    }
+}
@@ -0,0 +1,189 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Balance slots of striped wallets in {@code wallet_slots}. The balance of a striped
+ * wallet is {@code wallets.amount} plus the sum of its slots; slot updates never
+ * touch the {@code wallets} row, so they do not conflict with each other. All
+ * methods must be called inside a transaction.
+ */
+@Repository
+public class WalletSlotRepository {
+
+    static final String SLOT_BALANCE = """
+            w.amount + COALESCE((SELECT SUM(s.amount) FROM wallet_slots s WHERE s.wallet_id = w.id), 0)
+            """;
+
+    private static final String FIND_BALANCE_SQL = """
+            SELECT w.id, %s AS amount, w.version, w.created_at, w.updated_at
+            FROM wallets w
+            WHERE w.id = :walletId
+            """.formatted(SLOT_BALANCE);
+
+    // Bumping the version makes in-flight optimistic updates of the row fail and
+    // re-read it, so they see slot_count and switch to the slots.
+    private static final String MARK_STRIPED_SQL = """
+            UPDATE wallets SET slot_count = :slots, version = version + 1
+            WHERE id = :walletId AND slot_count = 0
+            """;
+
+    private static final String INSERT_SLOT_SQL = """
+            INSERT INTO wallet_slots (wallet_id, slot, amount) VALUES (:walletId, :slot, 0)
+            """;
+
+    private static final String FIND_STRIPED_SQL = """
+            SELECT id, slot_count FROM wallets WHERE slot_count > 0
+            """;
+
+    private static final String DEPOSIT_SQL = """
+            UPDATE wallet_slots SET amount = amount + :amount
+            WHERE wallet_id = :walletId AND slot = :slot
+            """;
+
+    // Takes any funded slot that nobody else holds, so concurrent withdrawals
+    // spread over the slots instead of queueing on one of them.
+    private static final String LOCK_FUNDED_SLOT_SQL = """
+            SELECT slot FROM wallet_slots
+            WHERE wallet_id = :walletId AND amount >= :amount
+            ORDER BY random()
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String WITHDRAW_SQL = """
+            UPDATE wallet_slots SET amount = amount - :amount
+            WHERE wallet_id = :walletId AND slot = :slot
+            """;
+
+    private static final String LOCK_WALLET_SQL = """
+            SELECT amount + COALESCE((SELECT SUM(amount) FROM wallet_slots WHERE wallet_id = :walletId), 0)
+            FROM wallets WHERE id = :walletId
+            FOR UPDATE
+            """;
+
+    private static final String LOCK_SLOTS_SQL = """
+            SELECT slot FROM wallet_slots WHERE wallet_id = :walletId ORDER BY slot FOR UPDATE
+            """;
+
+    private static final String CLEAR_SLOTS_SQL = """
+            UPDATE wallet_slots SET amount = 0 WHERE wallet_id = :walletId
+            """;
+
+    private static final String SET_AMOUNT_SQL = """
+            UPDATE wallets SET amount = :amount, version = version + 1, updated_at = CURRENT_TIMESTAMP
+            WHERE id = :walletId
+            """;
+
+    private static final RowMapper<Wallet> WALLET_ROW_MAPPER = (rs, rowNum) -> new Wallet(
+            rs.getObject("id", UUID.class),
+            rs.getBigDecimal("amount"),
+            rs.getLong("version"),
+            rs.getObject("created_at", LocalDateTime.class),
+            rs.getObject("updated_at", LocalDateTime.class)
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public WalletSlotRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<Wallet> findWithBalance(UUID walletId) {
+        List<Wallet> wallets = jdbcTemplate.query(FIND_BALANCE_SQL,
+                new MapSqlParameterSource("walletId", walletId), WALLET_ROW_MAPPER);
+        return wallets.stream().findFirst();
+    }
+
+    public Map<UUID, Integer> findStriped() {
+        Map<UUID, Integer> slotCounts = new HashMap<>();
+        jdbcTemplate.query(FIND_STRIPED_SQL, rs -> {
+            slotCounts.put(rs.getObject("id", UUID.class), rs.getInt("slot_count"));
+        });
+        return slotCounts;
+    }
+
+    /**
+     * Creates {@code slots} empty slots; the current balance stays in {@code wallets.amount}.
+     * Returns false if the wallet does not exist or is already striped.
+     */
+    public boolean stripe(UUID walletId, int slots) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("walletId", walletId)
+                .addValue("slots", slots);
+        if (jdbcTemplate.update(MARK_STRIPED_SQL, params) == 0) {
+            return false;
+        }
+        SqlParameterSource[] batch = new SqlParameterSource[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            batch[slot] = new MapSqlParameterSource()
+                    .addValue("walletId", walletId)
+                    .addValue("slot", slot);
+        }
+        jdbcTemplate.batchUpdate(INSERT_SLOT_SQL, batch);
+        return true;
+    }
+
+    public boolean deposit(UUID walletId, int slot, BigDecimal amount) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("walletId", walletId)
+                .addValue("slot", slot)
+                .addValue("amount", amount);
+        return jdbcTemplate.update(DEPOSIT_SQL, params) == 1;
+    }
+
+    /**
+     * Withdraws from a single slot that holds enough on its own; false if none
+     * currently does, even when the total balance would.
+     */
+    public boolean withdrawFromSlot(UUID walletId, BigDecimal amount) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("walletId", walletId)
+                .addValue("amount", amount);
+        List<Integer> slot = jdbcTemplate.queryForList(LOCK_FUNDED_SLOT_SQL, params, Integer.class);
+        if (slot.isEmpty()) {
+            return false;
+        }
+        return jdbcTemplate.update(WITHDRAW_SQL, params.addValue("slot", slot.get(0))) == 1;
+    }
+
+    /**
+     * Locks the wallet row and then every slot, waiting for in-flight slot updates,
+     * and returns the total balance. Empty if the wallet does not exist.
+     */
+    public Optional<BigDecimal> lockForConsolidation(UUID walletId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("walletId", walletId);
+        List<BigDecimal> total = jdbcTemplate.queryForList(LOCK_WALLET_SQL, params, BigDecimal.class);
+        if (total.isEmpty()) {
+            return Optional.empty();
+        }
+        jdbcTemplate.queryForList(LOCK_SLOTS_SQL, params, Integer.class);
+        // Re-read: slot updates that committed while we waited for the locks count too.
+        return Optional.of(jdbcTemplate.queryForObject(LOCK_WALLET_SQL, params, BigDecimal.class));
+    }
+
+    /**
+     * Moves the whole balance back into {@code wallets.amount}, leaving every slot
+     * empty. The caller must hold the locks from {@link #lockForConsolidation}.
+     */
+    public void consolidate(UUID walletId, BigDecimal amount) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("walletId", walletId)
+                .addValue("amount", amount);
+        jdbcTemplate.update(CLEAR_SLOTS_SQL, params);
+        jdbcTemplate.update(SET_AMOUNT_SQL, params);
+    }
+}
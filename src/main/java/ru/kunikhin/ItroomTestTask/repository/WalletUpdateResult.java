@@ -0,0 +1,44 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+/**
+ * Outcome of a single-statement balance update: either the updated wallet
+ * or the reason the row was left untouched.
+ */
+public class WalletUpdateResult {
+
+    public enum Status {
+        UPDATED,
+        NOT_FOUND,
+        INSUFFICIENT_FUNDS
+    }
+
+    private final Status status;
+    private final Wallet wallet;
+
+    private WalletUpdateResult(Status status, Wallet wallet) {
+        this.status = status;
+        this.wallet = wallet;
+    }
+
+    public static WalletUpdateResult updated(Wallet wallet) {
+        return new WalletUpdateResult(Status.UPDATED, wallet);
+    }
+
+    public static WalletUpdateResult notFound() {
+        return new WalletUpdateResult(Status.NOT_FOUND, null);
+    }
+
+    public static WalletUpdateResult insufficientFunds() {
+        return new WalletUpdateResult(Status.INSUFFICIENT_FUNDS, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Wallet getWallet() {
+        return wallet;
+    }
+}
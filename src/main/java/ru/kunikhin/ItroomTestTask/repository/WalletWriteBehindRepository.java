@@ -0,0 +1,74 @@
+package ru.kunikhin.ItroomTestTask.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.UUID;
+
+/**
+ * Applies drained write-behind deltas to {@code wallets} together with the node's
+ * log checkpoint. Must be called inside a transaction.
+ */
+@Repository
+public class WalletWriteBehindRepository {
+
+    private static final String FIND_CHECKPOINT_SQL = """
+            SELECT lsn FROM wallet_wal_checkpoints WHERE node_id = :nodeId
+            """;
+
+    private static final String INSERT_CHECKPOINT_SQL = """
+            INSERT INTO wallet_wal_checkpoints (node_id, lsn) VALUES (:nodeId, 0)
+            """;
+
+    private static final String APPLY_SQL = """
+            UPDATE wallets
+            SET amount = amount + :delta, version = version + :operations, updated_at = CURRENT_TIMESTAMP
+            WHERE id = :walletId
+            """;
+
+    private static final String UPDATE_CHECKPOINT_SQL = """
+            UPDATE wallet_wal_checkpoints SET lsn = :lsn, updated_at = CURRENT_TIMESTAMP
+            WHERE node_id = :nodeId AND lsn < :lsn
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public WalletWriteBehindRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long findCheckpoint(String nodeId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("nodeId", nodeId);
+        List<Long> lsn = jdbcTemplate.queryForList(FIND_CHECKPOINT_SQL, params, Long.class);
+        if (!lsn.isEmpty()) {
+            return lsn.get(0);
+        }
+        jdbcTemplate.update(INSERT_CHECKPOINT_SQL, params);
+        return 0;
+    }
+
+    /**
+     * {@code deltas} maps wallet ids to {@code [delta in Money units, operation count]};
+     * the sorted order keeps concurrent flushes from deadlocking on the rows.
+     */
+    public void apply(SortedMap<UUID, long[]> deltas, String nodeId, long lsn) {
+        SqlParameterSource[] batch = new SqlParameterSource[deltas.size()];
+        int i = 0;
+        for (Map.Entry<UUID, long[]> delta : deltas.entrySet()) {
+            batch[i++] = new MapSqlParameterSource()
+                    .addValue("walletId", delta.getKey())
+                    .addValue("delta", BigDecimal.valueOf(delta.getValue()[0], 4))
+                    .addValue("operations", delta.getValue()[1]);
+        }
+        jdbcTemplate.batchUpdate(APPLY_SQL, batch);
+        jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, new MapSqlParameterSource()
+                .addValue("nodeId", nodeId)
+                .addValue("lsn", lsn));
+    }
+}
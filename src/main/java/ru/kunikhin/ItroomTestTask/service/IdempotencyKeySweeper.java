@@ -0,0 +1,48 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.repository.IdempotencyKeyRepository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Removes expired idempotency keys in bounded batches, so expiry never costs
+ * anything on the request path.
+ */
+@Component
+public class IdempotencyKeySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeySweeper.class);
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionOperations transactionOperations;
+    private final int batchSize;
+
+    public IdempotencyKeySweeper(IdempotencyKeyRepository idempotencyKeyRepository,
+                                 TransactionOperations transactionOperations,
+                                 @Value("${wallet.idempotency.sweep.batch-size:5000}") int batchSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionOperations = transactionOperations;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.idempotency.sweep.interval-ms:60000}")
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted;
+        int total = 0;
+        do {
+            deleted = transactionOperations.execute(status -> idempotencyKeyRepository.deleteExpired(now, batchSize));
+            total += deleted;
+        } while (deleted == batchSize);
+
+        if (total > 0) {
+            log.debug("Removed {} expired idempotency keys", total);
+        }
+    }
+}
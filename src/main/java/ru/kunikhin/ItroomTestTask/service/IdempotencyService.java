@@ -0,0 +1,122 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.exception.IdempotencyKeyConflictException;
+import ru.kunikhin.ItroomTestTask.exception.IdempotencyKeyInProgressException;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.repository.IdempotencyKeyRepository;
+import ru.kunikhin.ItroomTestTask.repository.IdempotencyKeyRepository.StoredResponse;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * Makes wallet operations replay-safe. Recent responses are answered from memory;
+ * older ones come from {@code idempotency_keys}.
+ * <p>
+ * The key is claimed and the response recorded in two short transactions of their
+ * own, and the operation runs between them without a surrounding transaction: every
+ * execution mode commits the wallet write itself, some of them on another thread,
+ * and optimistic retries need a fresh transaction per attempt. A duplicate that
+ * arrives while the operation is running is told to retry. A failed operation
+ * releases the key; if the instance dies before recording the response, the key
+ * stays claimed until it expires, because whether the write committed is unknown.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionOperations transactionOperations;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Cache<String, StoredResponse> recentResponses;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              TransactionOperations transactionOperations,
+                              ObjectMapper objectMapper,
+                              @Value("${wallet.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${wallet.idempotency.memory-size:100000}") long memorySize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionOperations = transactionOperations;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.recentResponses = Caffeine.newBuilder()
+                .maximumSize(memorySize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Runs the operation once per key and returns its JSON response; repeated
+     * calls with the same key and request return the stored response.
+     */
+    public String execute(String key, WalletOperationDto request, Supplier<?> operation) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters long");
+        }
+        String fingerprint = fingerprint(request);
+
+        StoredResponse stored = recentResponses.getIfPresent(key);
+        if (stored == null) {
+            Boolean claimed = transactionOperations.execute(status ->
+                    idempotencyKeyRepository.claim(key, fingerprint, LocalDateTime.now().plus(ttl)));
+            stored = Boolean.TRUE.equals(claimed)
+                    ? run(key, fingerprint, operation)
+                    : findStored(key, fingerprint);
+            recentResponses.put(key, stored);
+        }
+
+        checkFingerprint(stored, fingerprint);
+        return stored.getResponseBody();
+    }
+
+    private StoredResponse run(String key, String fingerprint, Supplier<?> operation) {
+        String responseBody;
+        try {
+            responseBody = toJson(operation.get());
+        } catch (RuntimeException e) {
+            transactionOperations.executeWithoutResult(status -> idempotencyKeyRepository.release(key));
+            throw e;
+        }
+        transactionOperations.executeWithoutResult(status -> idempotencyKeyRepository.complete(key, responseBody));
+        return new StoredResponse(fingerprint, responseBody);
+    }
+
+    private StoredResponse findStored(String key, String fingerprint) {
+        StoredResponse stored = idempotencyKeyRepository.find(key)
+                .orElseThrow(() -> new IdempotencyKeyConflictException("Idempotency key has expired: " + key));
+        checkFingerprint(stored, fingerprint);
+        if (stored.getResponseBody() == null) {
+            throw new IdempotencyKeyInProgressException("A request with this idempotency key is still in progress");
+        }
+        return stored;
+    }
+
+    private static void checkFingerprint(StoredResponse stored, String fingerprint) {
+        if (!stored.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyConflictException("Idempotency key was already used for a different request");
+        }
+    }
+
+    private String fingerprint(WalletOperationDto request) {
+        return request.getWalletId() + ":" + request.getOperationType() + ":"
+                + request.getAmount().toBigDecimal().stripTrailingZeros().toPlainString();
+    }
+
+    private String toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response", e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.BackOffContext;
+import org.springframework.retry.backoff.BackOffInterruptedException;
+import org.springframework.retry.backoff.BackOffPolicy;
+import org.springframework.retry.backoff.Sleeper;
+import org.springframework.retry.backoff.ThreadWaitSleeper;
+import ru.kunikhin.ItroomTestTask.metrics.RetryMetricsListener;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Exponential backoff with full jitter: attempt {@code n} sleeps a uniformly random
+ * time in {@code [0, min(maxInterval, base * multiplier^(n-1))]}, so writers that
+ * collided once do not collide again on the same schedule.
+ * <p>
+ * The base grows with the wallet's recent conflict rate from
+ * {@link WalletConflictTracker}: {@code initialInterval * (1 + conflicts / referenceRate)}.
+ * A wallet nobody else writes retries almost at once, a hot one spreads its retries
+ * over a wider window from the first attempt. The wallet id is taken from the retry
+ * context attribute {@link RetryMetricsListener#WALLET_ID}; without it the base
+ * stays at {@code initialInterval}.
+ * <p>
+ * A retry whose context sets {@link #NO_BACKOFF} retries at once. Shard workers do:
+ * a sleep there would stall every other wallet queued behind the retrying one.
+ */
+public class WalletBackOffPolicy implements BackOffPolicy {
+
+    public static final String NO_BACKOFF = "wallet.backoff.disabled";
+
+    private final WalletConflictTracker conflictTracker;
+    private final long initialInterval;
+    private final double multiplier;
+    private final long maxInterval;
+    private final int referenceRate;
+    private final Sleeper sleeper;
+    private final DoubleSupplier random;
+
+    public WalletBackOffPolicy(WalletConflictTracker conflictTracker, long initialInterval, double multiplier,
+                               long maxInterval, int referenceRate, Sleeper sleeper) {
+        this(conflictTracker, initialInterval, multiplier, maxInterval, referenceRate, sleeper,
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    WalletBackOffPolicy(WalletConflictTracker conflictTracker, long initialInterval, double multiplier,
+                        long maxInterval, int referenceRate, Sleeper sleeper, DoubleSupplier random) {
+        if (initialInterval < 1 || multiplier < 1 || maxInterval < initialInterval || referenceRate < 1) {
+            throw new IllegalArgumentException("Invalid backoff settings");
+        }
+        this.conflictTracker = conflictTracker;
+        this.initialInterval = initialInterval;
+        this.multiplier = multiplier;
+        this.maxInterval = maxInterval;
+        this.referenceRate = referenceRate;
+        this.sleeper = sleeper == null ? new ThreadWaitSleeper() : sleeper;
+        this.random = random;
+    }
+
+    @Override
+    public BackOffContext start(RetryContext context) {
+        return new AttemptContext(context);
+    }
+
+    @Override
+    public void backOff(BackOffContext backOffContext) throws BackOffInterruptedException {
+        AttemptContext attempt = (AttemptContext) backOffContext;
+        if (attempt.retryContext.hasAttribute(NO_BACKOFF)) {
+            return;
+        }
+        long delay = delay(attempt.retryContext.getAttribute(RetryMetricsListener.WALLET_ID), attempt.next());
+        if (delay == 0) {
+            return;
+        }
+        try {
+            sleeper.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BackOffInterruptedException("Thread interrupted while sleeping", e);
+        }
+    }
+
+    long delay(Object walletId, int attempt) {
+        return Math.round(random.getAsDouble() * ceiling(walletId, attempt));
+    }
+
+    long ceiling(Object walletId, int attempt) {
+        double ceiling = base(walletId) * Math.pow(multiplier, attempt - 1);
+        return (long) Math.min(maxInterval, ceiling);
+    }
+
+    private double base(Object walletId) {
+        if (!(walletId instanceof UUID id) || conflictTracker == null) {
+            return initialInterval;
+        }
+        return initialInterval * (1 + (double) conflictTracker.conflictsPerSecond(id) / referenceRate);
+    }
+
+    private static final class AttemptContext implements BackOffContext {
+        private final RetryContext retryContext;
+        private int attempts;
+
+        private AttemptContext(RetryContext retryContext) {
+            this.retryContext = retryContext;
+        }
+
+        private int next() {
+            return ++attempts;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.kunikhin.ItroomTestTask.datasource.ReplicaReadRouting;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationResultDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletBalanceLookupRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationStatus;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Looks up balances of many wallets chunk by chunk: ids are pulled from the
+ * iterator, resolved with one query per chunk and handed to the caller before the
+ * next chunk is read, so memory does not grow with the number of ids. Unknown
+ * wallets are reported with {@code NOT_FOUND} in place.
+ */
+@Service
+public class WalletBalanceLookupService {
+
+    private final WalletBalanceLookupRepository lookupRepository;
+    private final ReplicaReadRouting replicaReads;
+    private final WalletWriteBehindService writeBehindService;
+    private final WalletWriteStrategy writeStrategy;
+    private final WalletExecutionMode executionMode;
+    private final int chunkSize;
+    private final int maxIds;
+
+    public WalletBalanceLookupService(WalletBalanceLookupRepository lookupRepository, int chunkSize, int maxIds) {
+        this(lookupRepository, ReplicaReadRouting.disabled(), null, WalletWriteStrategy.OPTIMISTIC,
+                WalletExecutionMode.DIRECT, chunkSize, maxIds);
+    }
+
+    @Autowired
+    public WalletBalanceLookupService(WalletBalanceLookupRepository lookupRepository,
+                                      ReplicaReadRouting replicaReads,
+                                      WalletWriteBehindService writeBehindService,
+                                      @Value("${wallet.write-strategy:OPTIMISTIC}") WalletWriteStrategy writeStrategy,
+                                      @Value("${wallet.execution-mode:DIRECT}") WalletExecutionMode executionMode,
+                                      @Value("${wallet.bulk-lookup.chunk-size:1000}") int chunkSize,
+                                      @Value("${wallet.bulk-lookup.max-ids:1000000}") int maxIds) {
+        this.lookupRepository = lookupRepository;
+        this.replicaReads = replicaReads;
+        this.writeBehindService = writeBehindService;
+        this.writeStrategy = writeStrategy;
+        this.executionMode = executionMode;
+        this.chunkSize = chunkSize;
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Results come in the order of {@code walletIds}, one per id. Exceeding
+     * {@code wallet.bulk-lookup.max-ids} fails with {@link IllegalArgumentException}
+     * after the chunks before the limit have been delivered.
+     */
+    public void findBalances(Iterator<UUID> walletIds, Consumer<List<WalletOperationResultDto>> results) {
+        int total = 0;
+        List<UUID> chunk = new ArrayList<>(chunkSize);
+        while (walletIds.hasNext()) {
+            UUID walletId = walletIds.next();
+            if (walletId == null) {
+                throw new IllegalArgumentException("Wallet ID is required");
+            }
+            if (++total > maxIds) {
+                throw new IllegalArgumentException("Lookup must not exceed " + maxIds + " wallets");
+            }
+            chunk.add(walletId);
+            if (chunk.size() == chunkSize) {
+                results.accept(resolve(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.accept(resolve(chunk));
+        }
+    }
+
+    /**
+     * Current balances of {@code walletIds}, read in chunks like {@link #findBalances};
+     * unknown wallets are left out.
+     */
+    public Map<UUID, Wallet> findWallets(Collection<UUID> walletIds) {
+        Map<UUID, Wallet> wallets = new HashMap<>(walletIds.size() * 2);
+        List<UUID> ids = new ArrayList<>(walletIds);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            wallets.putAll(load(ids.subList(from, Math.min(from + chunkSize, ids.size()))));
+        }
+        return wallets;
+    }
+
+    private List<WalletOperationResultDto> resolve(List<UUID> chunk) {
+        Map<UUID, Wallet> balances = load(chunk);
+        List<WalletOperationResultDto> results = new ArrayList<>(chunk.size());
+        for (UUID walletId : chunk) {
+            Wallet wallet = balances.get(walletId);
+            if (wallet == null) {
+                results.add(WalletOperationResultDto.failure(walletId, WalletOperationStatus.NOT_FOUND,
+                        "Wallet not found with id: " + walletId));
+                continue;
+            }
+            results.add(WalletOperationResultDto.success(walletId, wallet.getAmount()));
+        }
+        return results;
+    }
+
+    private Map<UUID, Wallet> load(List<UUID> chunk) {
+        boolean ledger = writeStrategy == WalletWriteStrategy.LEDGER;
+        Map<UUID, Wallet> balances = replicaReads.read(() -> lookupRepository.findBalances(chunk, ledger));
+        if (executionMode == WalletExecutionMode.WRITE_BEHIND) {
+            balances.replaceAll((walletId, wallet) -> writeBehindService.latest(wallet));
+        }
+        return balances;
+    }
+}
@@ -0,0 +1,336 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationResultDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletUpdateResult;
+import ru.kunikhin.ItroomTestTask.subscription.WalletBalanceHub;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationStatus;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/**
+ * Executes many operations in one transaction. Items are grouped by wallet and each
+ * group is written the way a single operation on that wallet would be: optimistic
+ * wallets are read once and written once, with the dirty rows flushed together using
+ * the configured {@code hibernate.jdbc.batch_size}; pessimistic and {@code NOWAIT}
+ * wallets are locked first, in id order, and written once; {@code ATOMIC} and striped
+ * wallets take one statement per item. In write-behind mode and under the
+ * {@code LEDGER} strategy the items go one by one through the same path as single
+ * operations instead.
+ */
+@Service
+public class WalletBatchService {
+
+    private final WalletRepository walletRepository;
+    private final RetryTemplate retryTemplate;
+    private final TransactionOperations transactionOperations;
+    private final WalletBalanceCache balanceCache;
+    private final WalletWriteBehindService writeBehindService;
+    private final WalletBalanceHub balanceHub;
+    private final WalletLedgerService ledgerService;
+    private final WalletWriteStrategyResolver writeStrategies;
+    private final WalletStripingService stripingService;
+    private final Duration lockTimeout;
+    private final int maxBatchSize;
+
+    public WalletBatchService(WalletRepository walletRepository,
+                              RetryTemplate retryTemplate,
+                              TransactionOperations transactionOperations,
+                              WalletBalanceCache balanceCache,
+                              int maxBatchSize) {
+        this(walletRepository, retryTemplate, transactionOperations, balanceCache, null, WalletBalanceHub.disabled(),
+                null, WalletWriteStrategyResolver.fixed(WalletWriteStrategy.OPTIMISTIC), WalletStripingService.disabled(),
+                Duration.ofSeconds(1), maxBatchSize);
+    }
+
+    @Autowired
+    public WalletBatchService(WalletRepository walletRepository,
+                              RetryTemplate retryTemplate,
+                              TransactionOperations transactionOperations,
+                              WalletBalanceCache balanceCache,
+                              WalletWriteBehindService writeBehindService,
+                              WalletBalanceHub balanceHub,
+                              WalletLedgerService ledgerService,
+                              WalletWriteStrategyResolver writeStrategies,
+                              WalletStripingService stripingService,
+                              @Value("${wallet.lock-timeout:1s}") Duration lockTimeout,
+                              @Value("${wallet.batch.max-size:1000}") int maxBatchSize) {
+        this.walletRepository = walletRepository;
+        this.retryTemplate = retryTemplate;
+        this.transactionOperations = transactionOperations;
+        this.balanceCache = balanceCache;
+        this.writeBehindService = writeBehindService;
+        this.balanceHub = balanceHub;
+        this.ledgerService = ledgerService;
+        this.writeStrategies = writeStrategies;
+        this.stripingService = stripingService;
+        this.lockTimeout = lockTimeout;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public List<WalletOperationResultDto> executeBatch(List<WalletOperationDto> operations) {
+        if (operations.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size must not exceed " + maxBatchSize);
+        }
+
+        WalletOperationResultDto[] results = new WalletOperationResultDto[operations.size()];
+        Map<UUID, List<Integer>> itemsByWallet = new LinkedHashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            WalletOperationDto operation = operations.get(i);
+            String violation = validate(operation);
+            if (violation != null) {
+                UUID walletId = operation == null ? null : operation.getWalletId();
+                results[i] = WalletOperationResultDto.failure(walletId, WalletOperationStatus.INVALID, violation);
+                continue;
+            }
+            itemsByWallet.computeIfAbsent(operation.getWalletId(), id -> new ArrayList<>()).add(i);
+        }
+
+        if (writeBehindService != null && writeBehindService.isEnabled()) {
+            applyWriteBehind(operations, itemsByWallet, results);
+        } else if (writeStrategies.getDefaultStrategy() == WalletWriteStrategy.LEDGER) {
+            applyLedger(operations, itemsByWallet, results);
+        } else if (!itemsByWallet.isEmpty()) {
+            List<Wallet> written = retryTemplate.execute(context -> {
+                try {
+                    return transactionOperations.execute(status -> applyGroups(operations, itemsByWallet, results));
+                } catch (PessimisticLockingFailureException | QueryTimeoutException e) {
+                    // Like a single locked operation: not retried, the client comes back later.
+                    throw new WalletOperationRejectedException("Wallet is locked by another operation", e);
+                }
+            });
+            for (Wallet wallet : written) {
+                if (!stripingService.isStriped(wallet.getId())) {
+                    balanceCache.put(wallet);
+                }
+                balanceHub.publish(wallet);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private List<Wallet> applyGroups(List<WalletOperationDto> operations,
+                             Map<UUID, List<Integer>> itemsByWallet,
+                             WalletOperationResultDto[] results) {
+        List<UUID> optimistic = new ArrayList<>();
+        List<UUID> locking = new ArrayList<>();
+        for (UUID walletId : itemsByWallet.keySet()) {
+            WalletWriteStrategy strategy = writeStrategies.resolve(walletId);
+            if (stripingService.isStriped(walletId) || strategy == WalletWriteStrategy.ATOMIC) {
+                continue;
+            }
+            if (isLocking(strategy)) {
+                locking.add(walletId);
+            } else {
+                optimistic.add(walletId);
+            }
+        }
+
+        Map<UUID, Wallet> wallets = new HashMap<>();
+        // In id order, so batches locking the same wallets cannot deadlock each other.
+        locking.sort(null);
+        for (UUID walletId : locking) {
+            Duration timeout = writeStrategies.resolve(walletId) == WalletWriteStrategy.NOWAIT ? Duration.ZERO : lockTimeout;
+            walletRepository.findByIdForUpdate(walletId, timeout).ifPresent(wallet -> wallets.put(walletId, wallet));
+        }
+        if (!optimistic.isEmpty()) {
+            walletRepository.findAllById(optimistic).forEach(wallet -> wallets.put(wallet.getId(), wallet));
+        }
+
+        List<Wallet> changed = new ArrayList<>();
+        List<Wallet> written = new ArrayList<>();
+        for (Map.Entry<UUID, List<Integer>> group : itemsByWallet.entrySet()) {
+            UUID walletId = group.getKey();
+            if (stripingService.isStriped(walletId)) {
+                addIfPresent(written, applyItems(walletId, group.getValue(), operations, results, this::applyStriped));
+                continue;
+            }
+            if (writeStrategies.resolve(walletId) == WalletWriteStrategy.ATOMIC) {
+                addIfPresent(written, applyItems(walletId, group.getValue(), operations, results, this::applyAtomic));
+                continue;
+            }
+            Wallet wallet = wallets.get(walletId);
+            if (wallet == null) {
+                for (int index : group.getValue()) {
+                    results[index] = WalletOperationResultDto.failure(walletId, WalletOperationStatus.NOT_FOUND,
+                            "Wallet not found with id: " + walletId);
+                }
+                continue;
+            }
+            // Striped by another instance: wallets.amount alone is not the balance.
+            if (stripingService.recognise(wallet)) {
+                addIfPresent(written, applyItems(walletId, group.getValue(), operations, results, this::applyStriped));
+                continue;
+            }
+
+            Money balance = wallet.getBalance();
+            for (int index : group.getValue()) {
+                WalletOperationDto operation = operations.get(index);
+                if (operation.getOperationType() == WalletOperationType.WITHDRAW) {
+                    if (balance.compareTo(operation.getAmount()) < 0) {
+                        results[index] = WalletOperationResultDto.failure(walletId,
+                                WalletOperationStatus.INSUFFICIENT_FUNDS, "Insufficient funds");
+                        continue;
+                    }
+                    balance = balance.minus(operation.getAmount());
+                } else {
+                    balance = balance.plus(operation.getAmount());
+                }
+                results[index] = WalletOperationResultDto.success(walletId, balance.toBigDecimal());
+            }
+
+            if (balance.compareTo(wallet.getBalance()) == 0) {
+                continue;
+            }
+            if (isLocking(writeStrategies.resolve(walletId))) {
+                written.add(walletRepository.updateIfVersion(wallet, balance.toBigDecimal())
+                        .orElseThrow(() -> new IllegalStateException("Wallet " + walletId + " changed under its row lock")));
+            } else {
+                wallet.setBalance(balance);
+                changed.add(wallet);
+            }
+        }
+        walletRepository.saveAll(changed);
+        written.addAll(changed);
+        return written;
+    }
+
+    private Wallet applyStriped(UUID walletId, WalletOperationDto operation) {
+        return stripingService.execute(walletId, operation.getOperationType(), operation.getAmount().toBigDecimal());
+    }
+
+    // applyDelta reports a missing wallet or insufficient funds as a status instead of
+    // failing the statement, which would abort the batch transaction. Nothing has been
+    // written when this method throws, so applyItems records the exception as the
+    // item's result and the batch carries on.
+    private Wallet applyAtomic(UUID walletId, WalletOperationDto operation) {
+        Money delta = operation.getOperationType() == WalletOperationType.WITHDRAW
+                ? operation.getAmount().negate()
+                : operation.getAmount();
+        WalletUpdateResult result = walletRepository.applyDelta(walletId, delta.toBigDecimal());
+        switch (result.getStatus()) {
+            case NOT_FOUND:
+                throw new WalletNotFoundException("Wallet not found with id: " + walletId);
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException("Insufficient funds");
+            default:
+                return result.getWallet();
+        }
+    }
+
+    private static boolean isLocking(WalletWriteStrategy strategy) {
+        return strategy == WalletWriteStrategy.PESSIMISTIC || strategy == WalletWriteStrategy.NOWAIT;
+    }
+
+    private static void addIfPresent(List<Wallet> written, Wallet wallet) {
+        if (wallet != null) {
+            written.add(wallet);
+        }
+    }
+
+    // Writing the rows directly would bypass the in-memory balances the write-behind
+    // funds check relies on, so each item goes through the log instead.
+    private void applyWriteBehind(List<WalletOperationDto> operations,
+                                  Map<UUID, List<Integer>> itemsByWallet,
+                                  WalletOperationResultDto[] results) {
+        applyEach(operations, itemsByWallet, results, (walletId, operation) ->
+                writeBehindService.execute(walletId, operation.getOperationType(), operation.getAmount()));
+    }
+
+    // wallets.amount is only the snapshot, so funds are checked against snapshot plus
+    // ledger tail and every item is appended. One transaction per item: a failed
+    // append must not abort the others.
+    private void applyLedger(List<WalletOperationDto> operations,
+                             Map<UUID, List<Integer>> itemsByWallet,
+                             WalletOperationResultDto[] results) {
+        applyEach(operations, itemsByWallet, results, (walletId, operation) ->
+                transactionOperations.execute(status ->
+                        ledgerService.append(walletId, operation.getOperationType(), operation.getAmount().toBigDecimal())));
+    }
+
+    private void applyEach(List<WalletOperationDto> operations,
+                           Map<UUID, List<Integer>> itemsByWallet,
+                           WalletOperationResultDto[] results,
+                           BiFunction<UUID, WalletOperationDto, Wallet> apply) {
+        for (Map.Entry<UUID, List<Integer>> group : itemsByWallet.entrySet()) {
+            UUID walletId = group.getKey();
+            for (int index : group.getValue()) {
+                Wallet wallet = applyItems(walletId, List.of(index), operations, results, apply);
+                if (wallet != null) {
+                    balanceHub.publish(wallet);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the items one at a time, recording each outcome, and returns the wallet
+     * after the last successful one, or {@code null} if none succeeded.
+     */
+    private Wallet applyItems(UUID walletId,
+                              List<Integer> indexes,
+                              List<WalletOperationDto> operations,
+                              WalletOperationResultDto[] results,
+                              BiFunction<UUID, WalletOperationDto, Wallet> apply) {
+        Wallet last = null;
+        for (int index : indexes) {
+            try {
+                last = apply.apply(walletId, operations.get(index));
+                results[index] = WalletOperationResultDto.success(walletId, last.getAmount());
+            } catch (WalletNotFoundException e) {
+                results[index] = WalletOperationResultDto.failure(walletId, WalletOperationStatus.NOT_FOUND, e.getMessage());
+            } catch (InsufficientFundsException e) {
+                results[index] = WalletOperationResultDto.failure(walletId,
+                        WalletOperationStatus.INSUFFICIENT_FUNDS, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                results[index] = WalletOperationResultDto.failure(walletId, WalletOperationStatus.INVALID, e.getMessage());
+            }
+        }
+        return last;
+    }
+
+    private String validate(WalletOperationDto operation) {
+        if (operation == null || operation.getWalletId() == null) {
+            return "Wallet ID is required";
+        }
+        if (operation.getOperationType() != WalletOperationType.DEPOSIT
+                && operation.getOperationType() != WalletOperationType.WITHDRAW) {
+            return "Operation type must be DEPOSIT or WITHDRAW";
+        }
+        if (operation.getAmount() == null) {
+            return "Amount is required";
+        }
+        if (!operation.getAmount().isPositive()) {
+            return "Amount must be positive";
+        }
+        return null;
+    }
+}
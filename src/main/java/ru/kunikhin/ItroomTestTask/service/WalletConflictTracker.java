@@ -0,0 +1,117 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.metrics.RetryMetricsListener;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts optimistic locking conflicts per wallet in fixed one-second windows.
+ * A wallet that reaches {@code wallet.striping.conflicts-per-second} within one
+ * window is reported once by {@link #takeHot(UUID)}. Only wallets that actually
+ * conflict get a counter, and idle ones expire.
+ * <p>
+ * {@link #conflictsPerSecond(UUID)} exposes the same counters to the retry backoff.
+ */
+@Component
+public class WalletConflictTracker implements RetryListener {
+
+    private static final long WINDOW_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private final int threshold;
+    private final LongSupplier clock;
+    private final Cache<UUID, ConflictWindow> windows;
+    private final Set<UUID> hot = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public WalletConflictTracker(@Value("${wallet.striping.conflicts-per-second:50}") int threshold) {
+        this(threshold, System::nanoTime);
+    }
+
+    WalletConflictTracker(int threshold, LongSupplier clock) {
+        this.threshold = threshold;
+        this.clock = clock;
+        this.windows = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .build();
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof OptimisticLockingFailureException
+                && context.getAttribute(RetryMetricsListener.WALLET_ID) instanceof UUID walletId) {
+            recordConflict(walletId);
+        }
+    }
+
+    public void recordConflict(UUID walletId) {
+        long now = clock.getAsLong();
+        ConflictWindow window = windows.get(walletId, id -> new ConflictWindow(now));
+        if (window.increment(now) == threshold) {
+            hot.add(walletId);
+        }
+    }
+
+    /**
+     * True once per threshold crossing of {@code walletId}.
+     */
+    public boolean takeHot(UUID walletId) {
+        return !hot.isEmpty() && hot.remove(walletId);
+    }
+
+    /**
+     * Conflicts of {@code walletId} over the last second: the larger of the running
+     * window and the one before it, so the rate does not drop to zero on every rollover.
+     */
+    public int conflictsPerSecond(UUID walletId) {
+        ConflictWindow window = windows.getIfPresent(walletId);
+        return window == null ? 0 : window.rate(clock.getAsLong());
+    }
+
+    private static final class ConflictWindow {
+        private volatile long start;
+        private volatile int previous;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private ConflictWindow(long start) {
+            this.start = start;
+        }
+
+        private int increment(long now) {
+            if (now - start >= WINDOW_NANOS) {
+                synchronized (this) {
+                    if (now - start >= WINDOW_NANOS) {
+                        previous = now - start < 2 * WINDOW_NANOS ? count.get() : 0;
+                        start = now;
+                        count.set(0);
+                    }
+                }
+            }
+            return count.incrementAndGet();
+        }
+
+        private int rate(long now) {
+            long age = now - start;
+            if (age >= 2 * WINDOW_NANOS) {
+                return 0;
+            }
+            if (age >= WINDOW_NANOS) {
+                return count.get();
+            }
+            return Math.max(previous, count.get());
+        }
+    }
+}
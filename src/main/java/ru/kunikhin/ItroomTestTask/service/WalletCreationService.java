@@ -0,0 +1,73 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletIdFilter;
+import ru.kunikhin.ItroomTestTask.repository.WalletBulkInsertRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Creates wallets in bulk. Ids are generated here rather than by Hibernate, so a
+ * chunk of wallets is a single batch insert instead of one {@code save} per wallet.
+ * Every chunk commits in its own transaction before its ids are handed to the
+ * caller: ids that reached the caller always exist, even if a later chunk fails.
+ */
+@Service
+public class WalletCreationService {
+
+    private final WalletBulkInsertRepository bulkInsertRepository;
+    private final TransactionOperations transactionOperations;
+    private final WalletIdFilter idFilter;
+    private final int maxCount;
+    private final int chunkSize;
+
+    public WalletCreationService(WalletBulkInsertRepository bulkInsertRepository,
+                                 TransactionOperations transactionOperations,
+                                 int maxCount,
+                                 int chunkSize) {
+        this(bulkInsertRepository, transactionOperations, WalletIdFilter.disabled(), maxCount, chunkSize);
+    }
+
+    @Autowired
+    public WalletCreationService(WalletBulkInsertRepository bulkInsertRepository,
+                                 TransactionOperations transactionOperations,
+                                 WalletIdFilter idFilter,
+                                 @Value("${wallet.bulk-create.max-count:1000000}") int maxCount,
+                                 @Value("${wallet.bulk-create.chunk-size:5000}") int chunkSize) {
+        this.bulkInsertRepository = bulkInsertRepository;
+        this.transactionOperations = transactionOperations;
+        this.idFilter = idFilter;
+        this.maxCount = maxCount;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Checked before the response starts streaming, so an invalid count still gets
+     * a regular {@code 400}.
+     */
+    public void validateCount(int count) {
+        if (count < 1 || count > maxCount) {
+            throw new IllegalArgumentException("Count must be between 1 and " + maxCount);
+        }
+    }
+
+    public void createWallets(int count, Consumer<List<UUID>> createdIds) {
+        validateCount(count);
+        for (int created = 0; created < count; created += chunkSize) {
+            int size = Math.min(chunkSize, count - created);
+            List<UUID> chunk = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                chunk.add(UUID.randomUUID());
+            }
+            transactionOperations.executeWithoutResult(status -> bulkInsertRepository.insert(chunk));
+            chunk.forEach(idFilter::add);
+            createdIds.accept(chunk);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.util.WalletExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Command-line export: started with {@code --wallet.export.file=...}, writes all
+ * wallets to the file and shuts the application down. A {@code .gz} file is
+ * compressed. Each finished page is logged with its last id; passing that id as
+ * {@code --wallet.export.after} resumes a failed export by appending to the same
+ * file (a resumed {@code .gz} file gets a second gzip member, which gzip readers
+ * decompress as one stream). Unless {@code --wallet.export.snapshot=false}, the
+ * file is one consistent snapshot of the wallets; a resumed export starts a new one.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.export.file")
+public class WalletExportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletExportRunner.class);
+
+    private final WalletExportService exportService;
+    private final ConfigurableApplicationContext context;
+    private final Path file;
+    private final WalletExportFormat format;
+    private final UUID afterId;
+    private final boolean snapshot;
+
+    public WalletExportRunner(WalletExportService exportService,
+                              ConfigurableApplicationContext context,
+                              @Value("${wallet.export.file}") Path file,
+                              @Value("${wallet.export.format:CSV}") WalletExportFormat format,
+                              @Value("${wallet.export.after:#{null}}") UUID afterId,
+                              @Value("${wallet.export.snapshot:true}") boolean snapshot) {
+        this.exportService = exportService;
+        this.context = context;
+        this.file = file;
+        this.format = format;
+        this.afterId = afterId;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        log.info("Exporting wallets as {} to {}{}", format, file, afterId == null ? "" : " after " + afterId);
+        long exported;
+        try (Writer out = open()) {
+            exported = exportService.export(afterId, format, snapshot, out,
+                    lastId -> log.info("Exported wallets up to id {}", lastId));
+        }
+        log.info("Exported {} wallets to {}", exported, file);
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private Writer open() throws IOException {
+        OutputStream stream = afterId == null
+                ? Files.newOutputStream(file)
+                : Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            stream = new GZIPOutputStream(stream, 64 * 1024);
+        }
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024);
+    }
+}
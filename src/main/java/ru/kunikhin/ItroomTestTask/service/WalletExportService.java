@@ -0,0 +1,186 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletExportRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+import ru.kunikhin.ItroomTestTask.util.WalletExportFormat;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Exports every wallet in id order, written straight from the result set: no
+ * entities, no persistence context, and heap use independent of the row count.
+ * <p>
+ * The table is read in keyset pages of {@code wallet.export.page-size} rows, each
+ * in its own short read-only transaction, so a long export does not hold back
+ * vacuum for its whole duration. The last id of a page is a resume point: an
+ * export started after it continues exactly where the previous one stopped.
+ * <p>
+ * Pages read at different times are not one snapshot: money moved by a transfer
+ * between two pages can show up on both wallets or on neither. A snapshot export
+ * reads every page in one read-only {@code REPEATABLE READ} transaction instead, so
+ * the balances add up, at the cost of holding back vacuum until it finishes. In
+ * {@code WRITE_BEHIND} mode it exports the last flushed checkpoint rather than the
+ * in-memory balances.
+ */
+@Service
+public class WalletExportService {
+
+    private final WalletExportRepository exportRepository;
+    private final TransactionOperations transactionOperations;
+    private final TransactionOperations snapshotOperations;
+    private final WalletWriteBehindService writeBehindService;
+    private final WalletWriteStrategy writeStrategy;
+    private final WalletExecutionMode executionMode;
+    private final int pageSize;
+
+    public WalletExportService(WalletExportRepository exportRepository,
+                               TransactionOperations transactionOperations,
+                               int pageSize) {
+        this(exportRepository, transactionOperations, transactionOperations, null, WalletWriteStrategy.OPTIMISTIC,
+                WalletExecutionMode.DIRECT, pageSize);
+    }
+
+    @Autowired
+    public WalletExportService(WalletExportRepository exportRepository,
+                               TransactionOperations transactionOperations,
+                               PlatformTransactionManager transactionManager,
+                               WalletWriteBehindService writeBehindService,
+                               @Value("${wallet.write-strategy:OPTIMISTIC}") WalletWriteStrategy writeStrategy,
+                               @Value("${wallet.execution-mode:DIRECT}") WalletExecutionMode executionMode,
+                               @Value("${wallet.export.page-size:100000}") int pageSize) {
+        this(exportRepository, transactionOperations, snapshotTemplate(transactionManager), writeBehindService,
+                writeStrategy, executionMode, pageSize);
+    }
+
+    WalletExportService(WalletExportRepository exportRepository,
+                        TransactionOperations transactionOperations,
+                        TransactionOperations snapshotOperations,
+                        WalletWriteBehindService writeBehindService,
+                        WalletWriteStrategy writeStrategy,
+                        WalletExecutionMode executionMode,
+                        int pageSize) {
+        this.exportRepository = exportRepository;
+        this.transactionOperations = transactionOperations;
+        this.snapshotOperations = snapshotOperations;
+        this.writeBehindService = writeBehindService;
+        this.writeStrategy = writeStrategy;
+        this.executionMode = executionMode;
+        this.pageSize = pageSize;
+    }
+
+    private static TransactionOperations snapshotTemplate(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    public long export(UUID afterId, WalletExportFormat format, Writer out, Consumer<UUID> pageExported) throws IOException {
+        return export(afterId, format, false, out, pageExported);
+    }
+
+    /**
+     * Writes the wallets with ids greater than {@code afterId} (all of them if it is
+     * {@code null}; only then with a header) and flushes {@code out} after every
+     * page, reporting the page's last id to {@code pageExported}. With
+     * {@code snapshot} all pages come from one consistent snapshot; a resumed export
+     * is a new snapshot.
+     *
+     * @return the number of exported wallets
+     */
+    public long export(UUID afterId, WalletExportFormat format, boolean snapshot, Writer out,
+                       Consumer<UUID> pageExported) throws IOException {
+        if (afterId == null) {
+            format.writeHeader(out);
+        }
+        long total;
+        try {
+            total = snapshot
+                    // The page transactions join this one.
+                    ? snapshotOperations.execute(status -> exportPages(afterId, format, true, out, pageExported))
+                    : exportPages(afterId, format, false, out, pageExported);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+        return total;
+    }
+
+    private long exportPages(UUID afterId, WalletExportFormat format, boolean snapshot, Writer out,
+                             Consumer<UUID> pageExported) {
+        boolean ledger = writeStrategy == WalletWriteStrategy.LEDGER;
+        // In-memory balances are newer than any snapshot, so they are only mixed into paged exports.
+        boolean writeBehind = executionMode == WalletExecutionMode.WRITE_BEHIND && !snapshot;
+        PageWriter page = new PageWriter(format, out, writeBehind);
+        long total = 0;
+        UUID lastId = afterId;
+        try {
+            do {
+                page.reset();
+                UUID after = lastId;
+                transactionOperations.executeWithoutResult(status ->
+                        exportRepository.findPage(after, pageSize, ledger, rs -> {
+                            try {
+                                page.write(rs.getObject("id", UUID.class), rs.getBigDecimal("amount"),
+                                        rs.getLong("version"), rs.getObject("updated_at", LocalDateTime.class));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }));
+                if (page.rows > 0) {
+                    out.flush();
+                    total += page.rows;
+                    lastId = page.lastId;
+                    pageExported.accept(lastId);
+                }
+            } while (page.rows == pageSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return total;
+    }
+
+    private final class PageWriter {
+        private final WalletExportFormat format;
+        private final Writer out;
+        private final boolean writeBehind;
+        private int rows;
+        private UUID lastId;
+
+        private PageWriter(WalletExportFormat format, Writer out, boolean writeBehind) {
+            this.format = format;
+            this.out = out;
+            this.writeBehind = writeBehind;
+        }
+
+        private void reset() {
+            rows = 0;
+        }
+
+        private void write(UUID id, BigDecimal amount, long version, LocalDateTime updatedAt) throws IOException {
+            if (writeBehind) {
+                Wallet latest = writeBehindService.latest(new Wallet(id, amount, version, updatedAt, updatedAt));
+                amount = latest.getAmount();
+                version = latest.getVersion();
+            }
+            format.writeRow(out, id, amount, version, updatedAt);
+            rows++;
+            lastId = id;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.repository.WalletLedgerRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletPartitionRepository;
+
+import java.util.List;
+
+/**
+ * Periodically folds ledger tails into {@code wallets.amount}, keeping the tail
+ * summed on every ledger read short. A partitioned {@code wallets} table is
+ * compacted one partition at a time. Runs only with the {@code LEDGER} write
+ * strategy; other strategies never append to the ledger.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.write-strategy", havingValue = "LEDGER")
+@ConditionalOnProperty(name = "wallet.ledger.compaction.enabled", havingValue = "true", matchIfMissing = true)
+public class WalletLedgerCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletLedgerCompactor.class);
+
+    private final WalletLedgerRepository ledgerRepository;
+    private final WalletPartitionRepository partitionRepository;
+    private final TransactionOperations transactionOperations;
+    private final int batchSize;
+
+    public WalletLedgerCompactor(WalletLedgerRepository ledgerRepository,
+                                 WalletPartitionRepository partitionRepository,
+                                 TransactionOperations transactionOperations,
+                                 @Value("${wallet.ledger.compaction.batch-size:1000}") int batchSize) {
+        this.ledgerRepository = ledgerRepository;
+        this.partitionRepository = partitionRepository;
+        this.transactionOperations = transactionOperations;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.ledger.compaction.interval-ms:5000}")
+    public void compact() {
+        List<String> partitions = partitionRepository.findPartitions();
+        int total = 0;
+        if (partitions.isEmpty()) {
+            total = compact("wallets");
+        } else {
+            for (String partition : partitions) {
+                total += compact(partition);
+            }
+        }
+
+        if (total > 0) {
+            log.debug("Folded ledger tails of {} wallets", total);
+        }
+    }
+
+    private int compact(String table) {
+        int folded;
+        int total = 0;
+        do {
+            folded = transactionOperations.execute(status -> ledgerRepository.compact(table, batchSize));
+            total += folded;
+        } while (folded == batchSize);
+        return total;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletLedgerRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Ledger write strategy: operations are appended to {@code wallet_operations}
+ * instead of rewriting {@code wallets.amount}. Must be called inside a transaction.
+ */
+@Service
+public class WalletLedgerService {
+
+    private final WalletLedgerRepository ledgerRepository;
+
+    public WalletLedgerService(WalletLedgerRepository ledgerRepository) {
+        this.ledgerRepository = ledgerRepository;
+    }
+
+    public Wallet getWallet(UUID walletId) {
+        return ledgerRepository.findWithBalance(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+    }
+
+    public Wallet append(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        switch (operationType) {
+            case DEPOSIT:
+                try {
+                    return ledgerRepository.append(walletId, operationType, amount);
+                } catch (DataIntegrityViolationException e) {
+                    throw new WalletNotFoundException("Wallet not found with id: " + walletId, e);
+                }
+            case WITHDRAW:
+                if (!ledgerRepository.lockForWithdrawal(walletId)) {
+                    throw new WalletNotFoundException("Wallet not found with id: " + walletId);
+                }
+                // Read after taking the lock: in READ COMMITTED this statement sees every
+                // withdrawal committed by the previous lock holder.
+                if (getWallet(walletId).getAmount().compareTo(amount) < 0) {
+                    throw new InsufficientFundsException("Insufficient funds");
+                }
+                return ledgerRepository.append(walletId, operationType, amount.negate());
+            default:
+                throw new IllegalArgumentException("Unknown operation type: " + operationType);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.metrics.RetryMetricsListener;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Group commit for operations on the same wallet. Callers enqueue their operation
+ * and whoever wins the per-wallet drain flag becomes the leader: it applies the
+ * queued operations in order and commits them in a single transaction, then
+ * completes every caller with the balance right after its own operation.
+ * <p>
+ * The group is an optimistic read-modify-write of {@code wallets.amount}, so only
+ * wallets written with the {@code OPTIMISTIC} strategy are sent here. A wallet found
+ * striped by another instance is not grouped: its balance is spread over slots, and
+ * each operation goes through {@link WalletStripingService} on its own.
+ */
+@Component
+public class WalletOperationCombiner {
+
+    private final Map<UUID, OperationQueue> queues = new ConcurrentHashMap<>();
+
+    private final WalletRepository walletRepository;
+    private final RetryTemplate retryTemplate;
+    private final TransactionOperations transactionOperations;
+    private final WalletBalanceCache balanceCache;
+    private final WalletStripingService stripingService;
+    private final int maxBatchSize;
+
+    public WalletOperationCombiner(WalletRepository walletRepository,
+                                   RetryTemplate retryTemplate,
+                                   TransactionOperations transactionOperations,
+                                   WalletBalanceCache balanceCache,
+                                   WalletStripingService stripingService,
+                                   @Value("${wallet.combiner.max-batch-size:256}") int maxBatchSize) {
+        this.walletRepository = walletRepository;
+        this.retryTemplate = retryTemplate;
+        this.transactionOperations = transactionOperations;
+        this.balanceCache = balanceCache;
+        this.stripingService = stripingService;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public Wallet execute(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
+        try {
+            return submit(walletId, operationType, amount).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public CompletableFuture<Wallet> submit(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (operationType != WalletOperationType.DEPOSIT && operationType != WalletOperationType.WITHDRAW) {
+            throw new IllegalArgumentException("Unknown operation type: " + operationType);
+        }
+
+        PendingOperation operation = new PendingOperation(operationType, amount);
+        OperationQueue queue = queues.computeIfAbsent(walletId, id -> new OperationQueue());
+        queue.operations.add(operation);
+        drain(walletId, queue);
+        return operation.result;
+    }
+
+    private void drain(UUID walletId, OperationQueue queue) {
+        // Re-check after releasing the flag: an operation enqueued while the
+        // previous leader was finishing must not be left without a leader.
+        while (!queue.operations.isEmpty() && queue.draining.compareAndSet(false, true)) {
+            try {
+                List<PendingOperation> batch = new ArrayList<>();
+                PendingOperation next;
+                while (batch.size() < maxBatchSize && (next = queue.operations.poll()) != null) {
+                    batch.add(next);
+                }
+                applyGroup(walletId, batch);
+            } finally {
+                queue.draining.set(false);
+            }
+        }
+        if (queue.operations.isEmpty()) {
+            queues.remove(walletId, queue);
+        }
+    }
+
+    private void applyGroup(UUID walletId, List<PendingOperation> batch) {
+        if (stripingService.isStriped(walletId)) {
+            applyStriped(walletId, batch);
+            return;
+        }
+        Wallet saved;
+        try {
+            saved = retryTemplate.execute(context -> {
+                context.setAttribute(RetryMetricsListener.WALLET_ID, walletId);
+                return transactionOperations.execute(status -> {
+                    Wallet wallet = walletRepository.findById(walletId)
+                            .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+                    // wallets.amount is only part of a striped balance.
+                    if (stripingService.recognise(wallet)) {
+                        return null;
+                    }
+
+                    BigDecimal balance = wallet.getAmount();
+                    boolean changed = false;
+                    for (PendingOperation operation : batch) {
+                        if (operation.operationType == WalletOperationType.WITHDRAW) {
+                            if (balance.compareTo(operation.amount) < 0) {
+                                operation.rejected = true;
+                                continue;
+                            }
+                            balance = balance.subtract(operation.amount);
+                        } else {
+                            balance = balance.add(operation.amount);
+                        }
+                        operation.rejected = false;
+                        operation.balanceAfter = balance;
+                        changed = true;
+                    }
+
+                    if (!changed) {
+                        return wallet;
+                    }
+                    wallet.setAmount(balance);
+                    return walletRepository.save(wallet);
+                });
+            });
+        } catch (RuntimeException e) {
+            batch.forEach(operation -> operation.result.completeExceptionally(e));
+            return;
+        }
+        if (saved == null) {
+            applyStriped(walletId, batch);
+            return;
+        }
+        // Callers get intermediate balances, but only the group's final state is cached.
+        balanceCache.put(saved);
+
+        for (PendingOperation operation : batch) {
+            if (operation.rejected) {
+                operation.result.completeExceptionally(new InsufficientFundsException("Insufficient funds"));
+            } else {
+                operation.result.complete(new Wallet(
+                        saved.getId(),
+                        operation.balanceAfter,
+                        saved.getVersion(),
+                        saved.getCreatedAt(),
+                        saved.getUpdatedAt()
+                ));
+            }
+        }
+    }
+
+    private void applyStriped(UUID walletId, List<PendingOperation> batch) {
+        for (PendingOperation operation : batch) {
+            try {
+                operation.result.complete(transactionOperations.execute(status ->
+                        stripingService.execute(walletId, operation.operationType, operation.amount)));
+            } catch (RuntimeException e) {
+                operation.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static class OperationQueue {
+        private final Queue<PendingOperation> operations = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+    }
+
+    private static class PendingOperation {
+        private final WalletOperationType operationType;
+        private final BigDecimal amount;
+        private final CompletableFuture<Wallet> result = new CompletableFuture<>();
+        private boolean rejected;
+        private BigDecimal balanceAfter;
+
+        PendingOperation(WalletOperationType operationType, BigDecimal amount) {
+            this.operationType = operationType;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.repository.WalletPartitionRepository;
+
+/**
+ * Vacuums the {@code wallets} partition with the most dead tuples, at most one per
+ * run. Autovacuum already works per partition; this catches partitions that hot
+ * wallets churn faster than its thresholds react, without ever vacuuming the whole table.
+ */
+@Component
+@ConditionalOnProperty(name = "wallet.partitions.maintenance.enabled", havingValue = "true", matchIfMissing = true)
+public class WalletPartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletPartitionMaintenance.class);
+
+    private final WalletPartitionRepository partitionRepository;
+    private final long minDeadTuples;
+    private final double deadRatio;
+
+    public WalletPartitionMaintenance(WalletPartitionRepository partitionRepository,
+                                      @Value("${wallet.partitions.maintenance.min-dead-tuples:10000}") long minDeadTuples,
+                                      @Value("${wallet.partitions.maintenance.dead-ratio:0.05}") double deadRatio) {
+        this.partitionRepository = partitionRepository;
+        this.minDeadTuples = minDeadTuples;
+        this.deadRatio = deadRatio;
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.partitions.maintenance.interval-ms:60000}")
+    public void vacuum() {
+        partitionRepository.findVacuumCandidate(minDeadTuples, deadRatio).ifPresent(partition -> {
+            long started = System.nanoTime();
+            partitionRepository.vacuumAnalyze(partition);
+            log.info("Vacuumed wallet partition {} in {} ms", partition, (System.nanoTime() - started) / 1_000_000);
+        });
+    }
+}
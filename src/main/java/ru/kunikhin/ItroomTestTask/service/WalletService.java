@@ -1,15 +1,33 @@
 package ru.kunikhin.ItroomTestTask.service;
 
 import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.cache.WalletIdFilter;
+import ru.kunikhin.ItroomTestTask.datasource.ReplicaReadRouting;
 import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
 import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.metrics.RetryMetricsListener;
+import ru.kunikhin.ItroomTestTask.metrics.WalletOperationMetrics;
+import ru.kunikhin.ItroomTestTask.model.Money;
 import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
 import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletUpdateResult;
+import ru.kunikhin.ItroomTestTask.subscription.WalletBalanceHub;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
 import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
 import java.util.UUID;
 
 
@@ -17,45 +35,247 @@ import java.util.UUID;
 public class WalletService {
     private final WalletRepository walletRepository;
     private final RetryTemplate retryTemplate;
+    private final TransactionOperations transactionOperations;
+    private final WalletOperationCombiner combiner;
+    private final WalletShardExecutor shardExecutor;
+    private final WalletBalanceCache balanceCache;
+    private final WalletLedgerService ledgerService;
+    private final WalletOperationMetrics operationMetrics;
+    private final ReplicaReadRouting replicaReads;
+    private final WalletStripingService stripingService;
+    private final WalletWriteBehindService writeBehindService;
+    private final WalletBalanceHub balanceHub;
+    private final WalletIdFilter idFilter;
+    private final WalletWriteStrategyResolver writeStrategies;
+    private final Duration lockTimeout;
+    private final WalletExecutionMode executionMode;
 
     public WalletService(WalletRepository walletRepository, RetryTemplate retryTemplate) {
+        this(walletRepository, retryTemplate, WalletWriteStrategy.OPTIMISTIC);
+    }
+
+    public WalletService(WalletRepository walletRepository, RetryTemplate retryTemplate, WalletWriteStrategy writeStrategy) {
+        this(walletRepository, retryTemplate, TransactionOperations.withoutTransaction(), null, null,
+                WalletBalanceCache.disabled(), null, WalletOperationMetrics.noop(), ReplicaReadRouting.disabled(), WalletStripingService.disabled(),
+                null, WalletBalanceHub.disabled(), WalletIdFilter.disabled(), WalletWriteStrategyResolver.fixed(writeStrategy),
+                Duration.ofSeconds(1),
+                WalletExecutionMode.DIRECT);
+    }
+
+    @Autowired
+    public WalletService(WalletRepository walletRepository,
+                         RetryTemplate retryTemplate,
+                         TransactionOperations transactionOperations,
+                         WalletOperationCombiner combiner,
+                         WalletShardExecutor shardExecutor,
+                         WalletBalanceCache balanceCache,
+                         WalletLedgerService ledgerService,
+                         WalletOperationMetrics operationMetrics,
+                         ReplicaReadRouting replicaReads,
+                         WalletStripingService stripingService,
+                         WalletWriteBehindService writeBehindService,
+                         WalletBalanceHub balanceHub,
+                         WalletIdFilter idFilter,
+                         WalletWriteStrategyResolver writeStrategies,
+                         @Value("${wallet.lock-timeout:1s}") Duration lockTimeout,
+                         @Value("${wallet.execution-mode:DIRECT}") WalletExecutionMode executionMode) {
+        // The group commit and the write-behind flush rewrite wallets.amount directly.
+        if (writeStrategies.getDefaultStrategy() == WalletWriteStrategy.LEDGER
+                && (executionMode == WalletExecutionMode.COMBINING || executionMode == WalletExecutionMode.WRITE_BEHIND)) {
+            throw new IllegalArgumentException("LEDGER write strategy cannot be used in " + executionMode + " execution mode");
+        }
         this.walletRepository = walletRepository;
         this.retryTemplate = retryTemplate;
+        this.transactionOperations = transactionOperations;
+        this.combiner = combiner;
+        this.shardExecutor = shardExecutor;
+        this.balanceCache = balanceCache;
+        this.ledgerService = ledgerService;
+        this.operationMetrics = operationMetrics;
+        this.replicaReads = replicaReads;
+        this.stripingService = stripingService;
+        this.writeBehindService = writeBehindService;
+        this.balanceHub = balanceHub;
+        this.idFilter = idFilter;
+        this.writeStrategies = writeStrategies;
+        this.lockTimeout = lockTimeout;
+        this.executionMode = executionMode;
     }
 
     public Wallet getWallet(UUID walletId) {
-        return walletRepository.findById(walletId)
-                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+        return getWallet(walletId, null);
+    }
+
+    /**
+     * Returns a balance at least as new as {@code minVersion}, the read-after-write
+     * token a client got back from its last operation. Cached and replica results
+     * older than that are not returned; the wallet is read from the primary instead.
+     */
+    public Wallet getWallet(UUID walletId, Long minVersion) {
+        boolean known = idFilter.mightExist(walletId);
+        if (!known && !idFilter.verifiesMisses()) {
+            throw new WalletNotFoundException("Wallet not found with id: " + walletId);
+        }
+        try {
+            Wallet wallet = findCurrentWallet(walletId, minVersion);
+            if (!known) {
+                idFilter.recordMissed(walletId);
+            }
+            return wallet;
+        } catch (WalletNotFoundException e) {
+            if (known) {
+                idFilter.recordFalsePositive();
+            }
+            throw e;
+        }
+    }
+
+    private Wallet findCurrentWallet(UUID walletId, Long minVersion) {
+        // The in-memory balance is the newest there is; the row may not have caught up.
+        if (executionMode == WalletExecutionMode.WRITE_BEHIND) {
+            return writeBehindService.getWallet(walletId);
+        }
+        // Ledger appends do not bump the wallet version, so the cache guard cannot
+        // order them; ledger balances are always read from the primary.
+        if (writeStrategies.getDefaultStrategy() == WalletWriteStrategy.LEDGER) {
+            return ledgerService.getWallet(walletId);
+        }
+        // Slot updates do not bump the wallet version either.
+        if (stripingService.isStriped(walletId)) {
+            return stripingService.getWallet(walletId);
+        }
+        Optional<Wallet> cached = balanceCache.get(walletId);
+        if (cached.isPresent() && isAtLeast(cached.get(), minVersion)) {
+            return cached.get();
+        }
+        Wallet wallet = findWalletOnReplica(walletId, minVersion);
+        if (stripingService.recognise(wallet)) {
+            return stripingService.getWallet(walletId);
+        }
+        balanceCache.put(wallet);
+        return wallet;
     }
 
     @Transactional
     public Wallet createWallet() {
-        return walletRepository.save(new Wallet());
+        Wallet wallet = walletRepository.save(new Wallet());
+        // Before the id reaches the client; a rollback only leaves a false positive.
+        idFilter.add(wallet.getId());
+        return wallet;
     }
 
-    @Transactional
-    public Wallet executeOperation(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
-        return retryTemplate.execute(context ->
-                doExecuteOperation(walletId, operationType, amount)
-        );
+    /**
+     * Not {@code @Transactional} on purpose: in combining and sharded modes the caller
+     * only waits for another thread and must not hold a connection while doing so.
+     */
+    public Wallet executeOperation(UUID walletId, WalletOperationType operationType, Money amount) {
+        Wallet wallet = operationMetrics.record(operationType, () -> dispatch(walletId, operationType, amount));
+        balanceHub.publish(wallet);
+        return wallet;
+    }
+
+    private Wallet dispatch(UUID walletId, WalletOperationType operationType, Money amount) {
+        switch (executionMode) {
+            case COMBINING:
+                // Striped wallets and per-wallet strategy overrides keep their own write path.
+                if (writeStrategies.resolve(walletId) == WalletWriteStrategy.OPTIMISTIC && !stripingService.isStriped(walletId)) {
+                    return combiner.execute(walletId, operationType, amount.toBigDecimal());
+                }
+                return executeDirect(walletId, operationType, amount);
+            case SHARDED:
+                return shardExecutor.execute(walletId, () -> executeDirect(walletId, operationType, amount));
+            case WRITE_BEHIND:
+                return writeBehindService.execute(walletId, operationType, amount);
+            default:
+                return executeDirect(walletId, operationType, amount);
+        }
+    }
+
+    private Wallet executeDirect(UUID walletId, WalletOperationType operationType, Money amount) {
+        WalletWriteStrategy writeStrategy = writeStrategies.resolve(walletId);
+        if (writeStrategy == WalletWriteStrategy.LEDGER) {
+            return transactionOperations.execute(status -> ledgerService.append(walletId, operationType, amount.toBigDecimal()));
+        }
+        if (stripingService.isStriped(walletId)) {
+            return transactionOperations.execute(status -> stripingService.execute(walletId, operationType, amount.toBigDecimal()));
+        }
+        try {
+            Wallet wallet;
+            if (writeStrategy == WalletWriteStrategy.ATOMIC) {
+                wallet = transactionOperations.execute(status -> doExecuteAtomicOperation(walletId, operationType, amount));
+            } else if (writeStrategy == WalletWriteStrategy.PESSIMISTIC) {
+                wallet = executeLocked(walletId, operationType, amount, lockTimeout);
+            } else if (writeStrategy == WalletWriteStrategy.NOWAIT) {
+                wallet = executeLocked(walletId, operationType, amount, Duration.ZERO);
+            } else {
+                // Each attempt runs in its own transaction: a fresh persistence context
+                // re-reads the version, a conflict raised at commit reaches the retry,
+                // and no connection is held while backing off. A shard worker retries
+                // without sleeping, the wallets queued behind it would wait as well.
+                wallet = retryTemplate.execute(context -> {
+                    context.setAttribute(RetryMetricsListener.WALLET_ID, walletId);
+                    if (executionMode == WalletExecutionMode.SHARDED) {
+                        context.setAttribute(WalletBackOffPolicy.NO_BACKOFF, true);
+                    }
+                    return transactionOperations.execute(status -> doExecuteOperation(walletId, operationType, amount));
+                });
+            }
+            // Only committed balances go to the cache, never ones that may still roll back.
+            if (!stripingService.isStriped(walletId)) {
+                balanceCache.put(wallet);
+            }
+            return wallet;
+        } finally {
+            // Also after exhausted retries: those are the wallets that need it most.
+            stripingService.promoteIfHot(walletId);
+        }
+    }
+
+    // A replica that misses the wallet or lags behind the token may just not have
+    // replayed the write yet, so both cases are answered by the primary. Both reads
+    // bypass the persistence context: with open-in-view the request's EntityManager
+    // would otherwise hand the replica's row back as the primary's.
+    private Wallet findWalletOnReplica(UUID walletId, Long minVersion) {
+        if (!replicaReads.isEnabled()) {
+            return findWallet(walletId);
+        }
+        Optional<Wallet> replica = replicaReads.read(() -> walletRepository.findCommitted(walletId));
+        if (replica.isPresent() && isAtLeast(replica.get(), minVersion)) {
+            return replica.get();
+        }
+        return walletRepository.findCommitted(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+    }
+
+    private static boolean isAtLeast(Wallet wallet, Long minVersion) {
+        return minVersion == null || (wallet.getVersion() != null && wallet.getVersion() >= minVersion);
     }
 
-    private Wallet doExecuteOperation(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
-        Wallet wallet = getWallet(walletId);
+    private Wallet findWallet(UUID walletId) {
+        return walletRepository.findById(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+    }
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    private Wallet doExecuteOperation(UUID walletId, WalletOperationType operationType, Money amount) {
+        Wallet wallet = findWallet(walletId);
+        // Striped by another instance, or while this operation was retrying.
+        if (stripingService.recognise(wallet)) {
+            return stripingService.execute(walletId, operationType, amount.toBigDecimal());
+        }
+
+        if (!amount.isPositive()) {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
         switch (operationType) {
             case DEPOSIT:
-                wallet.setAmount(wallet.getAmount().add(amount));
+                wallet.setBalance(wallet.getBalance().plus(amount));
                 break;
             case WITHDRAW:
-                if (wallet.getAmount().compareTo(amount) < 0) {
+                if (wallet.getBalance().compareTo(amount) < 0) {
                     throw new InsufficientFundsException("Insufficient funds");
                 }
-                wallet.setAmount(wallet.getAmount().subtract(amount));
+                wallet.setBalance(wallet.getBalance().minus(amount));
                 break;
             default:
                 throw new IllegalArgumentException("Unknown operation type: " + operationType);
@@ -64,4 +284,83 @@ public class WalletService {
         return walletRepository.save(wallet);
     }
 
+    /**
+     * Takes the row lock before reading, so concurrent writers queue on the lock
+     * instead of failing the version check. Not retried: a lock that was not granted
+     * within {@code lockTimeout} means the wallet is saturated, and the client is
+     * told to come back later rather than kept waiting in line.
+     */
+    private Wallet executeLocked(UUID walletId, WalletOperationType operationType, Money amount, Duration lockTimeout) {
+        try {
+            return transactionOperations.execute(status -> doExecuteLockedOperation(walletId, operationType, amount, lockTimeout));
+        } catch (PessimisticLockingFailureException | QueryTimeoutException e) {
+            // H2 reports a lock wait timeout as a query timeout.
+            throw new WalletOperationRejectedException("Wallet " + walletId + " is locked by another operation", e);
+        }
+    }
+
+    private Wallet doExecuteLockedOperation(UUID walletId, WalletOperationType operationType, Money amount, Duration lockTimeout) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        Wallet wallet = walletRepository.findByIdForUpdate(walletId, lockTimeout)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+        if (stripingService.recognise(wallet)) {
+            return stripingService.execute(walletId, operationType, amount.toBigDecimal());
+        }
+
+        Money balance;
+        switch (operationType) {
+            case DEPOSIT:
+                balance = wallet.getBalance().plus(amount);
+                break;
+            case WITHDRAW:
+                if (wallet.getBalance().compareTo(amount) < 0) {
+                    throw new InsufficientFundsException("Insufficient funds");
+                }
+                balance = wallet.getBalance().minus(amount);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation type: " + operationType);
+        }
+
+        // Bumps the version for read-after-write tokens. Should never miss under the row
+        // lock; if it does, the balance was not written and must not be reported.
+        return walletRepository.updateIfVersion(wallet, balance.toBigDecimal())
+                .orElseThrow(() -> new IllegalStateException("Wallet " + walletId + " changed under its row lock"));
+    }
+
+    /**
+     * Applies the operation as a single conditional UPDATE, so concurrent writers
+     * serialize on the row lock instead of failing the version check and retrying.
+     */
+    private Wallet doExecuteAtomicOperation(UUID walletId, WalletOperationType operationType, Money amount) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        Money delta;
+        switch (operationType) {
+            case DEPOSIT:
+                delta = amount;
+                break;
+            case WITHDRAW:
+                delta = amount.negate();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation type: " + operationType);
+        }
+
+        WalletUpdateResult result = walletRepository.applyDelta(walletId, delta.toBigDecimal());
+        switch (result.getStatus()) {
+            case NOT_FOUND:
+                throw new WalletNotFoundException("Wallet not found with id: " + walletId);
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException("Insufficient funds");
+            default:
+                return result.getWallet();
+        }
+    }
+
 }
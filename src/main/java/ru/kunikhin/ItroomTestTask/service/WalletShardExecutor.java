@@ -0,0 +1,147 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Routes wallet mutations by wallet id to a fixed set of single-threaded shards.
+ * Every wallet is owned by exactly one shard thread, so operations on the same
+ * wallet never conflict with each other inside this instance.
+ */
+@Component
+public class WalletShardExecutor {
+
+    private final ThreadPoolExecutor[] shards;
+    private final Duration timeout;
+    private final Timer queueWaitTimer;
+    private final Timer executionTimer;
+
+    public WalletShardExecutor(@Value("${wallet.execution-mode:DIRECT}") WalletExecutionMode executionMode,
+                               @Value("${wallet.shards.count:16}") int shardCount,
+                               @Value("${wallet.shards.queue-capacity:1000}") int queueCapacity,
+                               @Value("${wallet.shards.timeout:5s}") Duration timeout,
+                               MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.queueWaitTimer = Timer.builder("wallet.shard.queue.wait")
+                .description("Time an operation waits in its shard queue")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.executionTimer = Timer.builder("wallet.shard.execution")
+                .description("Time a shard worker spends executing an operation")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        int count = executionMode == WalletExecutionMode.SHARDED ? shardCount : 0;
+        this.shards = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            String name = "wallet-shard-" + i;
+            ThreadPoolExecutor shard = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> new Thread(runnable, name));
+            Gauge.builder("wallet.shard.queue.depth", shard, executor -> executor.getQueue().size())
+                    .description("Operations waiting in the shard queue")
+                    .tag("shard", String.valueOf(i))
+                    .register(meterRegistry);
+            shards[i] = shard;
+        }
+    }
+
+    public <T> T execute(UUID walletId, Supplier<T> operation) {
+        ThreadPoolExecutor shard = shards[Math.floorMod(walletId.hashCode(), shards.length)];
+        long enqueuedAt = System.nanoTime();
+
+        // Whoever sets this first decides: the worker runs the operation, the caller
+        // withdraws it. FutureTask.cancel cannot tell the two apart, it succeeds on a
+        // task that is already running.
+        AtomicBoolean started = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = shard.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return null;
+                }
+                queueWaitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return executionTimer.record(operation);
+            });
+        } catch (RejectedExecutionException e) {
+            throw new WalletOperationRejectedException("Wallet shard queue is full", e);
+        }
+
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                throw new WalletOperationRejectedException("Wallet operation timed out in shard queue", e);
+            }
+            // Already running: a retry would apply it twice, so wait for the real outcome.
+            return awaitRunning(future);
+        } catch (InterruptedException e) {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                Thread.currentThread().interrupt();
+                throw new WalletOperationRejectedException("Interrupted while waiting for wallet operation", e);
+            }
+            try {
+                return awaitRunning(future);
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static <T> T awaitRunning(Future<T> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        return new IllegalStateException(e.getCause());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor shard : shards) {
+            shard.shutdown();
+        }
+        for (ThreadPoolExecutor shard : shards) {
+            shard.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+}
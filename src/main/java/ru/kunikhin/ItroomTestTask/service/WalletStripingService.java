@@ -0,0 +1,146 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletSlotRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Striped mode for hot wallets: the balance is spread over {@code wallet_slots}
+ * rows. Deposits go to a random slot, withdrawals to any slot that covers them on
+ * its own, and only when none does a consolidating transaction locks the wallet
+ * and folds every slot back into {@code wallets.amount}.
+ *
+ * <p>Wallets are promoted by {@link #promoteIfHot(UUID)} once
+ * {@link WalletConflictTracker} sees them conflict too often. The set of striped
+ * wallets is cached here and refreshed from the database, and a wallet loaded
+ * with a non-zero slot count is recognised straight away.
+ */
+@Service
+public class WalletStripingService {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletStripingService.class);
+
+    private final WalletSlotRepository slotRepository;
+    private final WalletConflictTracker conflictTracker;
+    private final TransactionOperations transactionOperations;
+    private final int slots;
+    private final Map<UUID, Integer> slotCounts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WalletStripingService(WalletSlotRepository slotRepository,
+                                 WalletConflictTracker conflictTracker,
+                                 TransactionOperations transactionOperations,
+                                 @Value("${wallet.striping.slots:16}") int slots) {
+        this.slotRepository = slotRepository;
+        this.conflictTracker = conflictTracker;
+        this.transactionOperations = transactionOperations;
+        this.slots = slots;
+    }
+
+    private WalletStripingService() {
+        this(null, null, null, 0);
+    }
+
+    public static WalletStripingService disabled() {
+        return new WalletStripingService();
+    }
+
+    public boolean isStriped(UUID walletId) {
+        return !slotCounts.isEmpty() && slotCounts.containsKey(walletId);
+    }
+
+    /**
+     * Records that {@code wallet} was read with slots, returning whether it is striped.
+     */
+    public boolean recognise(Wallet wallet) {
+        if (wallet.getSlotCount() == 0) {
+            return false;
+        }
+        slotCounts.put(wallet.getId(), wallet.getSlotCount());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.striping.refresh-interval-ms:5000}")
+    public void refresh() {
+        slotCounts.putAll(slotRepository.findStriped());
+    }
+
+    public Wallet getWallet(UUID walletId) {
+        return slotRepository.findWithBalance(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+    }
+
+    /**
+     * Must be called inside a transaction.
+     */
+    public Wallet execute(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        switch (operationType) {
+            case DEPOSIT:
+                if (!slotRepository.deposit(walletId, ThreadLocalRandom.current().nextInt(slotCount(walletId)), amount)) {
+                    throw new WalletNotFoundException("Wallet not found with id: " + walletId);
+                }
+                return getWallet(walletId);
+            case WITHDRAW:
+                if (!slotRepository.withdrawFromSlot(walletId, amount)) {
+                    consolidateAndWithdraw(walletId, amount);
+                }
+                return getWallet(walletId);
+            default:
+                throw new IllegalArgumentException("Unknown operation type: " + operationType);
+        }
+    }
+
+    /**
+     * Stripes {@code walletId} in its own transaction if the conflict tracker
+     * flagged it since the last call.
+     */
+    public void promoteIfHot(UUID walletId) {
+        if (conflictTracker == null || !conflictTracker.takeHot(walletId)) {
+            return;
+        }
+        try {
+            Boolean promoted = transactionOperations.execute(status -> slotRepository.stripe(walletId, slots));
+            if (Boolean.TRUE.equals(promoted)) {
+                slotCounts.put(walletId, slots);
+                log.info("Wallet {} switched to striped mode with {} slots", walletId, slots);
+            }
+        } catch (RuntimeException e) {
+            // The operation that triggered this has already completed; the next
+            // threshold crossing will try again.
+            log.warn("Could not stripe wallet {}", walletId, e);
+        }
+    }
+
+    private void consolidateAndWithdraw(UUID walletId, BigDecimal amount) {
+        BigDecimal total = slotRepository.lockForConsolidation(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+        if (total.compareTo(amount) < 0) {
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+        slotRepository.consolidate(walletId, total.subtract(amount));
+    }
+
+    // A wallet striped under an older wallet.striping.slots keeps its own count.
+    private int slotCount(UUID walletId) {
+        return slotCounts.getOrDefault(walletId, 1);
+    }
+}
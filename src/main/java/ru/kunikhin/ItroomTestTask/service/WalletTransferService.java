@@ -0,0 +1,268 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.metrics.RetryMetricsListener;
+import ru.kunikhin.ItroomTestTask.metrics.WalletOperationMetrics;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletTransferResultDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletUpdateResult;
+import ru.kunikhin.ItroomTestTask.subscription.WalletBalanceHub;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Moves money between two wallets in one transaction. Both rows are always written
+ * in ascending id order, whichever side is debited, so two opposite transfers wait
+ * for each other's row lock instead of deadlocking.
+ * <p>
+ * The strategy is resolved per side. Two optimistic wallets are read, checked and
+ * written with version checks and retried as a whole; if either side is
+ * {@code PESSIMISTIC} or {@code NOWAIT}, both rows are locked up front with that
+ * side's lock timeout and a lock that is not granted is answered with 503; anything
+ * else applies each side as a single conditional UPDATE.
+ * <p>
+ * Transfers bypass the combiner and the shard workers: those order operations per
+ * wallet, while a transfer spans two. Row-level concurrency control is enough for
+ * correctness in every mode except {@code WRITE_BEHIND}, where the rows lag behind
+ * the in-memory balances and transfers are refused.
+ */
+@Service
+public class WalletTransferService {
+
+    private final WalletRepository walletRepository;
+    private final RetryTemplate retryTemplate;
+    private final TransactionOperations transactionOperations;
+    private final WalletBalanceCache balanceCache;
+    private final WalletLedgerService ledgerService;
+    private final WalletOperationMetrics operationMetrics;
+    private final WalletStripingService stripingService;
+    private final WalletBalanceHub balanceHub;
+    private final WalletWriteStrategyResolver writeStrategies;
+    private final Duration lockTimeout;
+    private final WalletExecutionMode executionMode;
+
+    public WalletTransferService(WalletRepository walletRepository,
+                                 RetryTemplate retryTemplate,
+                                 TransactionOperations transactionOperations,
+                                 WalletWriteStrategy writeStrategy) {
+        this(walletRepository, retryTemplate, transactionOperations, WalletBalanceCache.disabled(), null,
+                WalletOperationMetrics.noop(), WalletStripingService.disabled(), WalletBalanceHub.disabled(),
+                WalletWriteStrategyResolver.fixed(writeStrategy), Duration.ofSeconds(1), WalletExecutionMode.DIRECT);
+    }
+
+    @Autowired
+    public WalletTransferService(WalletRepository walletRepository,
+                                 RetryTemplate retryTemplate,
+                                 TransactionOperations transactionOperations,
+                                 WalletBalanceCache balanceCache,
+                                 WalletLedgerService ledgerService,
+                                 WalletOperationMetrics operationMetrics,
+                                 WalletStripingService stripingService,
+                                 WalletBalanceHub balanceHub,
+                                 WalletWriteStrategyResolver writeStrategies,
+                                 @Value("${wallet.lock-timeout:1s}") Duration lockTimeout,
+                                 @Value("${wallet.execution-mode:DIRECT}") WalletExecutionMode executionMode) {
+        this.walletRepository = walletRepository;
+        this.retryTemplate = retryTemplate;
+        this.transactionOperations = transactionOperations;
+        this.balanceCache = balanceCache;
+        this.ledgerService = ledgerService;
+        this.operationMetrics = operationMetrics;
+        this.stripingService = stripingService;
+        this.balanceHub = balanceHub;
+        this.writeStrategies = writeStrategies;
+        this.lockTimeout = lockTimeout;
+        this.executionMode = executionMode;
+    }
+
+    public WalletTransferResultDto transfer(UUID fromWalletId, UUID toWalletId, Money amount) {
+        if (fromWalletId.equals(toWalletId)) {
+            throw new IllegalArgumentException("Source and target wallets must differ");
+        }
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (executionMode == WalletExecutionMode.WRITE_BEHIND) {
+            throw new IllegalArgumentException("Transfers are not supported in WRITE_BEHIND execution mode");
+        }
+        WalletTransferResultDto result = operationMetrics.record(WalletOperationType.TRANSFER, () -> {
+            try {
+                return doTransfer(fromWalletId, toWalletId, amount);
+            } finally {
+                stripingService.promoteIfHot(fromWalletId);
+                stripingService.promoteIfHot(toWalletId);
+            }
+        });
+        balanceHub.publish(result.getFrom());
+        balanceHub.publish(result.getTo());
+        return result;
+    }
+
+    private WalletTransferResultDto doTransfer(UUID fromWalletId, UUID toWalletId, Money amount) {
+        WalletWriteStrategy fromStrategy = writeStrategies.resolve(fromWalletId);
+        WalletWriteStrategy toStrategy = writeStrategies.resolve(toWalletId);
+        if (isLocking(fromStrategy) || isLocking(toStrategy)) {
+            WalletTransferResultDto result;
+            try {
+                result = transactionOperations.execute(status -> transferPessimistic(
+                        fromWalletId, toWalletId, amount, lockTimeout(fromStrategy), lockTimeout(toStrategy)));
+            } catch (PessimisticLockingFailureException | QueryTimeoutException e) {
+                // Same contract as a single locked operation: not retried, 503.
+                throw new WalletOperationRejectedException("Wallet is locked by another operation", e);
+            }
+            cache(result);
+            return result;
+        }
+        if (fromStrategy == WalletWriteStrategy.OPTIMISTIC && toStrategy == WalletWriteStrategy.OPTIMISTIC
+                && !stripingService.isStriped(fromWalletId) && !stripingService.isStriped(toWalletId)) {
+            // Retried as a whole: a version conflict needs a fresh read of both rows.
+            WalletTransferResultDto result = retryTemplate.execute(context -> {
+                context.setAttribute(RetryMetricsListener.WALLET_ID, fromWalletId);
+                return transactionOperations.execute(status -> transferOptimistic(fromWalletId, toWalletId, amount));
+            });
+            cache(result);
+            return result;
+        }
+        WalletTransferResultDto result = transactionOperations.execute(status -> transferLocking(fromWalletId, toWalletId, amount));
+        // Ledger balances are never cached; see WalletService#getWallet.
+        if (writeStrategies.getDefaultStrategy() != WalletWriteStrategy.LEDGER) {
+            cache(result);
+        }
+        return result;
+    }
+
+    private WalletTransferResultDto transferOptimistic(UUID fromWalletId, UUID toWalletId, Money amount) {
+        boolean debitFirst = fromWalletId.compareTo(toWalletId) < 0;
+        Wallet first = findWallet(debitFirst ? fromWalletId : toWalletId);
+        Wallet second = findWallet(debitFirst ? toWalletId : fromWalletId);
+        // Striped by another instance: slot updates do not go through the version check.
+        boolean firstStriped = stripingService.recognise(first);
+        boolean secondStriped = stripingService.recognise(second);
+        if (firstStriped || secondStriped) {
+            return transferLocking(fromWalletId, toWalletId, amount);
+        }
+
+        Wallet from = debitFirst ? first : second;
+        if (from.getBalance().compareTo(amount) < 0) {
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+        Wallet firstUpdated = write(first, debitFirst ? amount.negate() : amount);
+        Wallet secondUpdated = write(second, debitFirst ? amount : amount.negate());
+        return debitFirst
+                ? new WalletTransferResultDto(firstUpdated, secondUpdated)
+                : new WalletTransferResultDto(secondUpdated, firstUpdated);
+    }
+
+    private WalletTransferResultDto transferPessimistic(UUID fromWalletId, UUID toWalletId, Money amount,
+                                                        Duration fromTimeout, Duration toTimeout) {
+        boolean debitFirst = fromWalletId.compareTo(toWalletId) < 0;
+        Wallet first = lock(debitFirst ? fromWalletId : toWalletId, debitFirst ? fromTimeout : toTimeout);
+        Wallet second = lock(debitFirst ? toWalletId : fromWalletId, debitFirst ? toTimeout : fromTimeout);
+        // Slots are not covered by the row lock; the rows stay locked either way.
+        boolean firstStriped = stripingService.recognise(first);
+        boolean secondStriped = stripingService.recognise(second);
+        if (firstStriped || secondStriped) {
+            return transferLocking(fromWalletId, toWalletId, amount);
+        }
+
+        Wallet from = debitFirst ? first : second;
+        if (from.getBalance().compareTo(amount) < 0) {
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+        Wallet firstUpdated = writeLocked(first, debitFirst ? amount.negate() : amount);
+        Wallet secondUpdated = writeLocked(second, debitFirst ? amount : amount.negate());
+        return debitFirst
+                ? new WalletTransferResultDto(firstUpdated, secondUpdated)
+                : new WalletTransferResultDto(secondUpdated, firstUpdated);
+    }
+
+    private Wallet lock(UUID walletId, Duration timeout) {
+        return walletRepository.findByIdForUpdate(walletId, timeout)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+    }
+
+    private Wallet writeLocked(Wallet wallet, Money delta) {
+        return walletRepository.updateIfVersion(wallet, wallet.getBalance().plus(delta).toBigDecimal())
+                .orElseThrow(() -> new IllegalStateException("Wallet " + wallet.getId() + " changed under its row lock"));
+    }
+
+    private static boolean isLocking(WalletWriteStrategy strategy) {
+        return strategy == WalletWriteStrategy.PESSIMISTIC || strategy == WalletWriteStrategy.NOWAIT;
+    }
+
+    // The other side of a transfer with one locking wallet is locked with the default wait.
+    private Duration lockTimeout(WalletWriteStrategy strategy) {
+        return strategy == WalletWriteStrategy.NOWAIT ? Duration.ZERO : lockTimeout;
+    }
+
+    // The managed entity stays untouched, otherwise the flush at commit would write
+    // the row a second time against the already bumped version.
+    private Wallet write(Wallet wallet, Money delta) {
+        Money balance = wallet.getBalance().plus(delta);
+        return walletRepository.updateIfVersion(wallet, balance.toBigDecimal())
+                .orElseThrow(() -> new OptimisticLockingFailureException("Wallet " + wallet.getId() + " was updated concurrently"));
+    }
+
+    private WalletTransferResultDto transferLocking(UUID fromWalletId, UUID toWalletId, Money amount) {
+        if (fromWalletId.compareTo(toWalletId) < 0) {
+            Wallet from = apply(fromWalletId, WalletOperationType.WITHDRAW, amount);
+            return new WalletTransferResultDto(from, apply(toWalletId, WalletOperationType.DEPOSIT, amount));
+        }
+        Wallet to = apply(toWalletId, WalletOperationType.DEPOSIT, amount);
+        return new WalletTransferResultDto(apply(fromWalletId, WalletOperationType.WITHDRAW, amount), to);
+    }
+
+    /**
+     * One side of a transfer with the single-wallet primitive that locks the row
+     * right away; a failure on either side rolls back the whole transfer.
+     */
+    private Wallet apply(UUID walletId, WalletOperationType operationType, Money amount) {
+        if (writeStrategies.getDefaultStrategy() == WalletWriteStrategy.LEDGER) {
+            return ledgerService.append(walletId, operationType, amount.toBigDecimal());
+        }
+        if (stripingService.isStriped(walletId)) {
+            return stripingService.execute(walletId, operationType, amount.toBigDecimal());
+        }
+        Money delta = operationType == WalletOperationType.WITHDRAW ? amount.negate() : amount;
+        WalletUpdateResult result = walletRepository.applyDelta(walletId, delta.toBigDecimal());
+        switch (result.getStatus()) {
+            case NOT_FOUND:
+                throw new WalletNotFoundException("Wallet not found with id: " + walletId);
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException("Insufficient funds");
+            default:
+                return result.getWallet();
+        }
+    }
+
+    private Wallet findWallet(UUID walletId) {
+        return walletRepository.findById(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+    }
+
+    private void cache(WalletTransferResultDto result) {
+        if (!stripingService.isStriped(result.getFrom().getId())) {
+            balanceCache.put(result.getFrom());
+        }
+        if (!stripingService.isStriped(result.getTo().getId())) {
+            balanceCache.put(result.getTo());
+        }
+    }
+}
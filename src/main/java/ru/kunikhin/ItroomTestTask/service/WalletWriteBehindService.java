@@ -0,0 +1,371 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletWriteBehindRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+import ru.kunikhin.ItroomTestTask.wal.WalRecord;
+import ru.kunikhin.ItroomTestTask.wal.WalletWriteAheadLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind execution: an operation is acknowledged once it is in the local
+ * write-ahead log, and balances are kept in memory. Funds are checked against the
+ * in-memory balance, which already includes every acknowledged operation, so a
+ * withdrawal can never overdraw. A flusher periodically drains the accumulated
+ * deltas into {@code wallets} in one transaction that also advances this node's
+ * checkpoint; on startup, log records above the checkpoint are applied first.
+ *
+ * <p>A wallet that had nothing to flush for a whole flush interval is dropped from
+ * memory once its deltas are in the database, and loaded again on its next
+ * operation. The in-memory balances are only correct while this instance is the sole
+ * writer of the wallets it serves. Inert unless {@code wallet.execution-mode} is
+ * {@code WRITE_BEHIND}.
+ */
+@Service
+public class WalletWriteBehindService {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletWriteBehindService.class);
+
+    private final boolean enabled;
+    private final WalletRepository walletRepository;
+    private final WalletWriteBehindRepository writeBehindRepository;
+    private final TransactionOperations transactionOperations;
+    private final WalletWriteAheadLog writeAheadLog;
+    private final String nodeId;
+    private final long flushIntervalMs;
+
+    private final Map<UUID, Balance> balances = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    // Appends hold the read lock; the flusher takes the write lock to cut a
+    // consistent snapshot of the deltas up to one LSN.
+    private final ReadWriteLock cutLock = new ReentrantReadWriteLock();
+    private volatile long flushedLsn;
+    // Deltas of a flush whose commit failed with an unknown outcome, settled
+    // against the checkpoint before anything else is flushed.
+    private SortedMap<UUID, long[]> inDoubt;
+    private long inDoubtLsn;
+    private ScheduledExecutorService flusher;
+
+    public WalletWriteBehindService(@Value("${wallet.execution-mode:DIRECT}") WalletExecutionMode executionMode,
+                                    WalletRepository walletRepository,
+                                    WalletWriteBehindRepository writeBehindRepository,
+                                    TransactionOperations transactionOperations,
+                                    @Value("${wallet.write-behind.directory:./data/wal}") Path directory,
+                                    @Value("${wallet.write-behind.segment-size-mb:64}") int segmentSizeMb,
+                                    @Value("${wallet.write-behind.node-id:local}") String nodeId,
+                                    @Value("${wallet.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                    MeterRegistry meterRegistry) {
+        this.enabled = executionMode == WalletExecutionMode.WRITE_BEHIND;
+        this.walletRepository = walletRepository;
+        this.writeBehindRepository = writeBehindRepository;
+        this.transactionOperations = transactionOperations;
+        this.writeAheadLog = enabled ? new WalletWriteAheadLog(directory, segmentSizeMb * 1024 * 1024) : null;
+        this.nodeId = nodeId;
+        this.flushIntervalMs = flushIntervalMs;
+        if (enabled) {
+            Gauge.builder("wallet.write-behind.unflushed", this, service -> service.writeAheadLog.getAppendedLsn() - service.flushedLsn)
+                    .description("Acknowledged operations not yet written to the wallets table")
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        long checkpoint = transactionOperations.execute(status -> writeBehindRepository.findCheckpoint(nodeId));
+        SortedMap<UUID, long[]> unflushed = new TreeMap<>();
+        long lastLsn = checkpoint;
+        for (WalRecord record : writeAheadLog.recover()) {
+            if (record.getLsn() > checkpoint) {
+                long[] delta = unflushed.computeIfAbsent(record.getWalletId(), id -> new long[2]);
+                delta[0] += record.getDelta();
+                delta[1]++;
+                lastLsn = record.getLsn();
+            }
+        }
+        if (!unflushed.isEmpty()) {
+            long recoveredLsn = lastLsn;
+            transactionOperations.executeWithoutResult(status ->
+                    writeBehindRepository.apply(unflushed, nodeId, recoveredLsn));
+            log.info("Replayed write-ahead log up to LSN {} for {} wallets", recoveredLsn, unflushed.size());
+        }
+        flushedLsn = lastLsn;
+        writeAheadLog.open(lastLsn + 1);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "wallet-write-behind-flusher"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        flushQuietly();
+        writeAheadLog.close();
+    }
+
+    public Wallet getWallet(UUID walletId) {
+        Balance balance = balances.get(walletId);
+        if (balance == null) {
+            return findWallet(walletId);
+        }
+        synchronized (balance) {
+            return balance.toWallet(walletId);
+        }
+    }
+
+    /**
+     * The in-memory balance if this instance holds one, otherwise {@code stored},
+     * which is then up to date: only wallets loaded here have unflushed operations.
+     */
+    public Wallet latest(Wallet stored) {
+        Balance balance = balances.get(stored.getId());
+        if (balance == null) {
+            return stored;
+        }
+        synchronized (balance) {
+            return balance.toWallet(stored.getId());
+        }
+    }
+
+    /**
+     * Returns once the operation is durable in the local log.
+     */
+    public Wallet execute(UUID walletId, WalletOperationType operationType, Money amount) {
+        if (!amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        long delta;
+        switch (operationType) {
+            case DEPOSIT:
+                delta = amount.units();
+                break;
+            case WITHDRAW:
+                delta = -amount.units();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation type: " + operationType);
+        }
+
+        long lsn;
+        Wallet wallet;
+        while (true) {
+            Balance balance = balance(walletId);
+            cutLock.readLock().lock();
+            try {
+                synchronized (balance) {
+                    if (balance.evicted) {
+                        continue;
+                    }
+                    long units = Math.addExact(balance.units, delta);
+                    if (units < 0) {
+                        throw new InsufficientFundsException("Insufficient funds");
+                    }
+                    lsn = writeAheadLog.append(walletId, delta);
+                    balance.units = units;
+                    balance.version++;
+                    balance.pendingUnits += delta;
+                    balance.pendingOperations++;
+                    wallet = balance.toWallet(walletId);
+                }
+                dirty.add(walletId);
+                break;
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Amount is out of range", e);
+            } finally {
+                cutLock.readLock().unlock();
+            }
+        }
+        writeAheadLog.awaitDurable(lsn);
+        return wallet;
+    }
+
+    /**
+     * Writes every delta acknowledged so far to the database.
+     */
+    public synchronized void flush() {
+        settleInDoubt();
+        SortedMap<UUID, long[]> deltas = new TreeMap<>();
+        long cut;
+        cutLock.writeLock().lock();
+        try {
+            cut = writeAheadLog.getAppendedLsn();
+            for (UUID walletId : dirty) {
+                Balance balance = balances.get(walletId);
+                synchronized (balance) {
+                    deltas.put(walletId, new long[]{balance.pendingUnits, balance.pendingOperations});
+                    balance.pendingUnits = 0;
+                    balance.pendingOperations = 0;
+                }
+            }
+            dirty.clear();
+        } finally {
+            cutLock.writeLock().unlock();
+        }
+        if (cut == flushedLsn) {
+            return;
+        }
+
+        // Never let the database get ahead of what a restart could replay.
+        writeAheadLog.awaitDurable(cut);
+        try {
+            transactionOperations.executeWithoutResult(status -> writeBehindRepository.apply(deltas, nodeId, cut));
+        } catch (RuntimeException e) {
+            // The commit may have gone through even though it reported an error;
+            // putting the deltas back then would apply them twice.
+            inDoubt = deltas;
+            inDoubtLsn = cut;
+            try {
+                if (settleInDoubt()) {
+                    log.warn("Write-behind flush up to LSN {} reported an error but was committed", cut, e);
+                    return;
+                }
+            } catch (RuntimeException settleFailure) {
+                e.addSuppressed(settleFailure);
+            }
+            throw e;
+        }
+        flushed(deltas, cut);
+    }
+
+    /**
+     * Reads the checkpoint to find out whether the in-doubt flush was committed;
+     * if it was not, its deltas are pending again. Leaves them in doubt if the
+     * checkpoint cannot be read either.
+     */
+    private boolean settleInDoubt() {
+        if (inDoubt == null) {
+            return false;
+        }
+        long checkpoint = transactionOperations.execute(status -> writeBehindRepository.findCheckpoint(nodeId));
+        SortedMap<UUID, long[]> deltas = inDoubt;
+        inDoubt = null;
+        if (checkpoint >= inDoubtLsn) {
+            flushed(deltas, inDoubtLsn);
+            return true;
+        }
+        restore(deltas);
+        return false;
+    }
+
+    private void flushed(SortedMap<UUID, long[]> deltas, long lsn) {
+        flushedLsn = lsn;
+        writeAheadLog.release(lsn);
+        evictIdle(deltas.keySet());
+    }
+
+    // Everything acknowledged up to the cut is in the database now, so a wallet
+    // with nothing pending can be read back from its row. Wallets written in this
+    // round stay for another interval rather than being reloaded on the next write.
+    private void evictIdle(Set<UUID> flushed) {
+        for (Map.Entry<UUID, Balance> entry : balances.entrySet()) {
+            if (flushed.contains(entry.getKey())) {
+                continue;
+            }
+            Balance balance = entry.getValue();
+            synchronized (balance) {
+                if (balance.pendingOperations == 0) {
+                    balance.evicted = true;
+                    balances.remove(entry.getKey(), balance);
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind flush failed, will retry", e);
+        }
+    }
+
+    private void restore(Map<UUID, long[]> deltas) {
+        cutLock.readLock().lock();
+        try {
+            for (Map.Entry<UUID, long[]> delta : deltas.entrySet()) {
+                Balance balance = balances.get(delta.getKey());
+                synchronized (balance) {
+                    balance.pendingUnits += delta.getValue()[0];
+                    balance.pendingOperations += delta.getValue()[1];
+                }
+                dirty.add(delta.getKey());
+            }
+        } finally {
+            cutLock.readLock().unlock();
+        }
+    }
+
+    // A wallet is loaded once and then owned by the in-memory table: every later
+    // change goes through it, so the database row can only lag behind it.
+    private Balance balance(UUID walletId) {
+        Balance balance = balances.get(walletId);
+        if (balance != null) {
+            return balance;
+        }
+        Wallet wallet = findWallet(walletId);
+        Balance loaded = new Balance(wallet.getBalance().units(), wallet.getVersion() == null ? 0 : wallet.getVersion());
+        Balance existing = balances.putIfAbsent(walletId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private Wallet findWallet(UUID walletId) {
+        return walletRepository.findById(walletId)
+                .orElseThrow(() -> new WalletNotFoundException("Wallet not found with id: " + walletId));
+    }
+
+    private static final class Balance {
+        private long units;
+        private long version;
+        private long pendingUnits;
+        private long pendingOperations;
+        // Set once the entry is dropped from the table; an operation that got hold
+        // of it before that loads the wallet again.
+        private boolean evicted;
+
+        private Balance(long units, long version) {
+            this.units = units;
+            this.version = version;
+        }
+
+        private Wallet toWallet(UUID walletId) {
+            return new Wallet(walletId, Money.ofUnits(units), version, null, null);
+        }
+    }
+}
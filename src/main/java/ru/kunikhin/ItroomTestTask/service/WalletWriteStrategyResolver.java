@@ -0,0 +1,76 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Write strategy per wallet: {@code wallet.write-strategy} for all of them, except
+ * the ones listed in {@code wallet.write-strategy-overrides} as comma-separated
+ * {@code walletId:STRATEGY} pairs, e.g. to lock a few known hot wallets pessimistically
+ * while the rest stay optimistic.
+ * <p>
+ * Overrides are limited to the strategies that work on the {@code wallets} row
+ * itself; {@code LEDGER} changes where balances live and can only be set globally.
+ */
+@Component
+public class WalletWriteStrategyResolver {
+
+    private static final Set<WalletWriteStrategy> ROW_STRATEGIES = EnumSet.of(
+            WalletWriteStrategy.OPTIMISTIC, WalletWriteStrategy.ATOMIC,
+            WalletWriteStrategy.PESSIMISTIC, WalletWriteStrategy.NOWAIT);
+
+    private final WalletWriteStrategy defaultStrategy;
+    private final Map<UUID, WalletWriteStrategy> overrides;
+
+    @Autowired
+    public WalletWriteStrategyResolver(@Value("${wallet.write-strategy:OPTIMISTIC}") WalletWriteStrategy defaultStrategy,
+                                       @Value("${wallet.write-strategy-overrides:}") String overrides) {
+        this.defaultStrategy = defaultStrategy;
+        this.overrides = parse(overrides);
+        if (!this.overrides.isEmpty() && !ROW_STRATEGIES.contains(defaultStrategy)) {
+            throw new IllegalArgumentException("Per-wallet write strategies cannot be combined with " + defaultStrategy);
+        }
+    }
+
+    public static WalletWriteStrategyResolver fixed(WalletWriteStrategy strategy) {
+        return new WalletWriteStrategyResolver(strategy, "");
+    }
+
+    public WalletWriteStrategy getDefaultStrategy() {
+        return defaultStrategy;
+    }
+
+    public WalletWriteStrategy resolve(UUID walletId) {
+        if (overrides.isEmpty()) {
+            return defaultStrategy;
+        }
+        return overrides.getOrDefault(walletId, defaultStrategy);
+    }
+
+    private static Map<UUID, WalletWriteStrategy> parse(String overrides) {
+        Map<UUID, WalletWriteStrategy> parsed = new HashMap<>();
+        for (String entry : overrides.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected walletId:STRATEGY, got: " + entry.trim());
+            }
+            WalletWriteStrategy strategy = WalletWriteStrategy.valueOf(parts[1].trim());
+            if (!ROW_STRATEGIES.contains(strategy)) {
+                throw new IllegalArgumentException(strategy + " cannot be set per wallet");
+            }
+            parsed.put(UUID.fromString(parts[0].trim()), strategy);
+        }
+        return Map.copyOf(parsed);
+    }
+}
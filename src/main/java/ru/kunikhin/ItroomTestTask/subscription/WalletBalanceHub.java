@@ -0,0 +1,198 @@
+package ru.kunikhin.ItroomTestTask.subscription;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * In-process fan-out of committed balances to Server-Sent Events subscribers.
+ * <p>
+ * {@link #publish} only records the newest balance per wallet in each interested
+ * subscription, so a subscriber's buffer never holds more than one entry per
+ * wallet it watches, however fast the wallet changes. Every flush interval the
+ * buffers are drained on a virtual thread per subscriber: a slow client delays
+ * only itself, and its updates keep coalescing meanwhile.
+ * <p>
+ * Only operations executed by this instance are published.
+ */
+@Component
+public class WalletBalanceHub implements DisposableBean {
+
+    private final ConcurrentMap<UUID, Set<WalletSubscription>> subscriptionsByWallet = new ConcurrentHashMap<>();
+    private final Set<WalletSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Executor senders;
+    private final boolean enabled;
+    private final int maxSubscribers;
+    private final int maxWallets;
+    private final Duration timeout;
+    private final long heartbeatNanos;
+    private final Counter coalesced;
+
+    @Autowired
+    public WalletBalanceHub(@Value("${wallet.subscriptions.max-subscribers:10000}") int maxSubscribers,
+                            @Value("${wallet.subscriptions.max-wallets:1000}") int maxWallets,
+                            @Value("${wallet.subscriptions.timeout:30m}") Duration timeout,
+                            @Value("${wallet.subscriptions.heartbeat:15s}") Duration heartbeat,
+                            MeterRegistry meterRegistry) {
+        this(Executors.newVirtualThreadPerTaskExecutor(), true, maxSubscribers, maxWallets, timeout, heartbeat, meterRegistry);
+    }
+
+    WalletBalanceHub(Executor senders, boolean enabled, int maxSubscribers, int maxWallets,
+                     Duration timeout, Duration heartbeat, MeterRegistry meterRegistry) {
+        this.senders = senders;
+        this.enabled = enabled;
+        this.maxSubscribers = maxSubscribers;
+        this.maxWallets = maxWallets;
+        this.timeout = timeout;
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.coalesced = Counter.builder("wallet.subscriptions.coalesced")
+                .description("Balance updates replaced by a newer one before they were sent")
+                .register(meterRegistry);
+        meterRegistry.gauge("wallet.subscriptions.active", subscriptions, Set::size);
+    }
+
+    public static WalletBalanceHub disabled() {
+        return new WalletBalanceHub(Runnable::run, false, 0, 0, Duration.ZERO, Duration.ZERO, new CompositeMeterRegistry());
+    }
+
+    public int getMaxWallets() {
+        return maxWallets;
+    }
+
+    /**
+     * Opens a subscription to {@code walletIds} whose first events are the balances
+     * returned by {@code currentBalances}. They are read only once the subscription
+     * is registered, so an operation committing meanwhile is not missed: whichever
+     * of the two balances is newer is kept. If reading them fails, the subscription
+     * is dropped and the exception propagates.
+     */
+    public SseEmitter subscribe(Collection<UUID> walletIds, Function<Collection<UUID>, Collection<Wallet>> currentBalances) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribe(emitter, walletIds, currentBalances);
+        return emitter;
+    }
+
+    void subscribe(SseEmitter emitter, Collection<UUID> walletIds, Function<Collection<UUID>, Collection<Wallet>> currentBalances) {
+        if (walletIds.isEmpty() || walletIds.size() > maxWallets) {
+            throw new IllegalArgumentException("Subscribe to 1 to " + maxWallets + " wallets");
+        }
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new WalletOperationRejectedException("Too many balance subscriptions");
+        }
+        WalletSubscription subscription = new WalletSubscription(emitter, System.nanoTime());
+        subscription.getWalletIds().addAll(walletIds);
+        subscriptions.add(subscription);
+        for (UUID walletId : walletIds) {
+            subscriptionsByWallet.computeIfAbsent(walletId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        }
+        try {
+            currentBalances.apply(walletIds).forEach(subscription::offer);
+        } catch (RuntimeException e) {
+            remove(subscription);
+            throw e;
+        }
+        emitter.onCompletion(() -> remove(subscription));
+        emitter.onTimeout(() -> remove(subscription));
+        emitter.onError(error -> remove(subscription));
+    }
+
+    /**
+     * Called with a wallet as written by an operation. Inside a transaction the
+     * balance is only published once it commits, so subscribers never see a
+     * balance that is rolled back later.
+     */
+    public void publish(Wallet wallet) {
+        if (!enabled || wallet == null || !subscriptionsByWallet.containsKey(wallet.getId())) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(wallet);
+                }
+            });
+            return;
+        }
+        offer(wallet);
+    }
+
+    private void offer(Wallet wallet) {
+        Set<WalletSubscription> interested = subscriptionsByWallet.get(wallet.getId());
+        if (interested == null) {
+            return;
+        }
+        for (WalletSubscription subscription : interested) {
+            if (subscription.offer(wallet)) {
+                coalesced.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.subscriptions.flush-interval-ms:250}")
+    public void flush() {
+        long now = System.nanoTime();
+        for (WalletSubscription subscription : subscriptions) {
+            if (subscription.needsSending(now, heartbeatNanos) && subscription.startSending()) {
+                senders.execute(() -> drain(subscription));
+            }
+        }
+    }
+
+    private void drain(WalletSubscription subscription) {
+        try {
+            subscription.drain();
+        } catch (Exception e) {
+            // The client went away; the emitter callbacks may not fire for a broken pipe.
+            remove(subscription);
+            subscription.getEmitter().completeWithError(e);
+        } finally {
+            subscription.finishSending();
+        }
+    }
+
+    private void remove(WalletSubscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        for (UUID walletId : subscription.getWalletIds()) {
+            subscriptionsByWallet.computeIfPresent(walletId, (id, interested) -> {
+                interested.remove(subscription);
+                return interested.isEmpty() ? null : interested;
+            });
+        }
+    }
+
+    int activeSubscriptions() {
+        return subscriptions.size();
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.forEach(subscription -> subscription.getEmitter().complete());
+        if (senders instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.kunikhin.ItroomTestTask.subscription;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One SSE client. {@code pending} holds at most one balance per watched wallet; a
+ * newer version replaces the buffered one instead of queueing behind it.
+ */
+final class WalletSubscription {
+
+    static final String EVENT_NAME = "balance";
+
+    private final SseEmitter emitter;
+    private final Set<UUID> walletIds = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<UUID, Wallet> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private volatile long lastSentNanos;
+
+    WalletSubscription(SseEmitter emitter, long nowNanos) {
+        this.emitter = emitter;
+        this.lastSentNanos = nowNanos;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    Set<UUID> getWalletIds() {
+        return walletIds;
+    }
+
+    /**
+     * @return {@code true} if an unsent balance of the same wallet was replaced
+     */
+    boolean offer(Wallet wallet) {
+        walletIds.add(wallet.getId());
+        boolean[] replaced = new boolean[1];
+        pending.merge(wallet.getId(), wallet, (current, fresh) -> {
+            replaced[0] = true;
+            return isOlder(fresh, current) ? current : fresh;
+        });
+        return replaced[0];
+    }
+
+    boolean needsSending(long nowNanos, long heartbeatNanos) {
+        return !pending.isEmpty() || nowNanos - lastSentNanos >= heartbeatNanos;
+    }
+
+    boolean startSending() {
+        return sending.compareAndSet(false, true);
+    }
+
+    void finishSending() {
+        sending.set(false);
+    }
+
+    void drain() throws IOException {
+        if (pending.isEmpty()) {
+            // Keeps proxies from closing an idle stream and detects clients that left.
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+        for (UUID walletId : pending.keySet()) {
+            Wallet wallet = pending.remove(walletId);
+            if (wallet != null) {
+                emitter.send(SseEmitter.event()
+                        .name(EVENT_NAME)
+                        .id(walletId + ":" + wallet.getVersion())
+                        .data(wallet, MediaType.APPLICATION_JSON));
+            }
+        }
+        lastSentNanos = System.nanoTime();
+    }
+
+    // Ledger and slot writes leave the version as is; those always count as newer.
+    private static boolean isOlder(Wallet fresh, Wallet current) {
+        return fresh.getVersion() != null && current.getVersion() != null && fresh.getVersion() < current.getVersion();
+    }
+}
@@ -0,0 +1,8 @@
+package ru.kunikhin.ItroomTestTask.util;
+
+public enum WalletExecutionMode {
+    DIRECT,
+    COMBINING,
+    SHARDED,
+    WRITE_BEHIND
+}
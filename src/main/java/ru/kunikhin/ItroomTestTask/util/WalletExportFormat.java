@@ -0,0 +1,66 @@
+package ru.kunikhin.ItroomTestTask.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Row formats of the wallet export. Every field is a UUID, a number or an ISO
+ * timestamp, so neither format needs quoting or escaping.
+ */
+public enum WalletExportFormat {
+
+    CSV("text/csv") {
+        @Override
+        public void writeHeader(Writer out) throws IOException {
+            out.write("id,amount,version,updated_at\n");
+        }
+
+        @Override
+        public void writeRow(Writer out, UUID id, BigDecimal amount, long version, LocalDateTime updatedAt) throws IOException {
+            out.write(id.toString());
+            out.write(',');
+            out.write(amount.toPlainString());
+            out.write(',');
+            out.write(Long.toString(version));
+            out.write(',');
+            out.write(updatedAt.toString());
+            out.write('\n');
+        }
+    },
+
+    NDJSON("application/x-ndjson") {
+        @Override
+        public void writeHeader(Writer out) {
+        }
+
+        @Override
+        public void writeRow(Writer out, UUID id, BigDecimal amount, long version, LocalDateTime updatedAt) throws IOException {
+            out.write("{\"id\":\"");
+            out.write(id.toString());
+            out.write("\",\"amount\":");
+            out.write(amount.toPlainString());
+            out.write(",\"version\":");
+            out.write(Long.toString(version));
+            out.write(",\"updatedAt\":\"");
+            out.write(updatedAt.toString());
+            out.write("\"}\n");
+        }
+    };
+
+    private final String contentType;
+
+    WalletExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public abstract void writeHeader(Writer out) throws IOException;
+
+    public abstract void writeRow(Writer out, UUID id, BigDecimal amount, long version, LocalDateTime updatedAt) throws IOException;
+}
@@ -0,0 +1,8 @@
+package ru.kunikhin.ItroomTestTask.util;
+
+public enum WalletOperationStatus {
+    SUCCESS,
+    INSUFFICIENT_FUNDS,
+    NOT_FOUND,
+    INVALID
+}
@@ -2,5 +2,7 @@ package ru.kunikhin.ItroomTestTask.util;
 
 public enum WalletOperationType {
     DEPOSIT,
-    WITHDRAW
+    WITHDRAW,
+    // Only through POST /api/v1/wallet/transfer, which names both wallets
+    TRANSFER
 }
@@ -0,0 +1,11 @@
+package ru.kunikhin.ItroomTestTask.util;
+
+public enum WalletWriteStrategy {
+    OPTIMISTIC,
+    ATOMIC,
+    LEDGER,
+    // SELECT ... FOR UPDATE, waiting up to wallet.lock-timeout for the row lock
+    PESSIMISTIC,
+    // SELECT ... FOR UPDATE NOWAIT, rejected at once when the row is locked
+    NOWAIT
+}
@@ -0,0 +1,32 @@
+package ru.kunikhin.ItroomTestTask.wal;
+
+import java.util.UUID;
+
+/**
+ * One logged balance change: {@code delta} is in {@link ru.kunikhin.ItroomTestTask.model.Money}
+ * units, negative for withdrawals.
+ */
+public final class WalRecord {
+
+    private final long lsn;
+    private final UUID walletId;
+    private final long delta;
+
+    public WalRecord(long lsn, UUID walletId, long delta) {
+        this.lsn = lsn;
+        this.walletId = walletId;
+        this.delta = delta;
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+}
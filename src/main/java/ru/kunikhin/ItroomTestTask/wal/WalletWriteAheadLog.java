@@ -0,0 +1,259 @@
+package ru.kunikhin.ItroomTestTask.wal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of balance changes in memory-mapped segment files.
+ *
+ * <p>Records have a fixed size: lsn, wallet id, delta and a CRC32C of those fields.
+ * LSNs are consecutive and start at 1, so an all-zero slot marks the end of a
+ * segment and a bad checksum marks a torn write. Appends only copy into the
+ * mapping; {@link #awaitDurable(long)} forces it to disk, and concurrent callers
+ * queue on one lock so that a single {@code force()} covers all of them
+ * (group commit). A full segment is forced before the next one is started, so
+ * durability always covers a prefix of the log.
+ */
+public class WalletWriteAheadLog implements AutoCloseable {
+
+    static final int RECORD_SIZE = 40;
+    private static final int CHECKSUMMED_SIZE = 32;
+    private static final String SEGMENT_PREFIX = "wallet-wal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final CRC32C crc = new CRC32C();
+
+    private Segment current;
+    private long appendedLsn;
+    private volatile long durableLsn;
+
+    public WalletWriteAheadLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.recordsPerSegment = segmentSize / RECORD_SIZE;
+        if (recordsPerSegment < 1) {
+            throw new IllegalArgumentException("Segment size must hold at least one record");
+        }
+    }
+
+    /**
+     * Reads every intact record left by a previous run, in LSN order, stopping at
+     * the first gap or torn record. Must be called before {@link #open(long)}.
+     */
+    public List<WalRecord> recover() {
+        List<WalRecord> records = new ArrayList<>();
+        long expected = -1;
+        for (Path path : listSegments()) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                for (int offset = 0; offset + RECORD_SIZE <= buffer.limit(); offset += RECORD_SIZE) {
+                    WalRecord record = read(buffer, offset);
+                    if (record == null || (expected != -1 && record.getLsn() != expected)) {
+                        return records;
+                    }
+                    records.add(record);
+                    expected = record.getLsn() + 1;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read write-ahead log segment " + path, e);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Deletes the segments of the previous run (the caller has applied what
+     * {@link #recover()} returned) and starts a new segment at {@code nextLsn}.
+     */
+    public synchronized void open(long nextLsn) {
+        try {
+            Files.createDirectories(directory);
+            for (Path path : listSegments()) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare write-ahead log directory " + directory, e);
+        }
+        appendedLsn = nextLsn - 1;
+        durableLsn = appendedLsn;
+        current = createSegment(nextLsn);
+    }
+
+    /**
+     * Returns the LSN of the new record; it is durable only after {@link #awaitDurable(long)}.
+     */
+    public synchronized long append(UUID walletId, long delta) {
+        if (current.count == recordsPerSegment) {
+            current.buffer.force();
+            current = createSegment(appendedLsn + 1);
+        }
+        long lsn = appendedLsn + 1;
+        MappedByteBuffer buffer = current.buffer;
+        int offset = current.count * RECORD_SIZE;
+        buffer.putLong(offset + 8, walletId.getMostSignificantBits());
+        buffer.putLong(offset + 16, walletId.getLeastSignificantBits());
+        buffer.putLong(offset + 24, delta);
+        buffer.putLong(offset, lsn);
+        crc.reset();
+        crc.update(buffer.slice(offset, CHECKSUMMED_SIZE));
+        buffer.putInt(offset + CHECKSUMMED_SIZE, (int) crc.getValue());
+        current.count++;
+        current.lastLsn = lsn;
+        appendedLsn = lsn;
+        return lsn;
+    }
+
+    public void awaitDurable(long lsn) {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durableLsn >= lsn) {
+                return;
+            }
+            long target;
+            MappedByteBuffer buffer;
+            synchronized (this) {
+                target = appendedLsn;
+                buffer = current.buffer;
+            }
+            buffer.force();
+            durableLsn = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public synchronized long getAppendedLsn() {
+        return appendedLsn;
+    }
+
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * Deletes completed segments whose records are all at or below {@code lsn}.
+     */
+    public synchronized void release(long lsn) {
+        while (segments.size() > 1 && segments.peekFirst().lastLsn <= lsn) {
+            Segment segment = segments.pollFirst();
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot delete write-ahead log segment " + segment.path, e);
+            }
+        }
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (current != null) {
+            current.buffer.force();
+            durableLsn = appendedLsn;
+        }
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+        segments.clear();
+        current = null;
+    }
+
+    private WalRecord read(ByteBuffer buffer, int offset) {
+        long lsn = buffer.getLong(offset);
+        if (lsn == 0) {
+            return null;
+        }
+        crc.reset();
+        crc.update(buffer.slice(offset, CHECKSUMMED_SIZE));
+        if (buffer.getInt(offset + CHECKSUMMED_SIZE) != (int) crc.getValue()) {
+            return null;
+        }
+        return new WalRecord(lsn,
+                new UUID(buffer.getLong(offset + 8), buffer.getLong(offset + 16)),
+                buffer.getLong(offset + 24));
+    }
+
+    private Segment createSegment(long firstLsn) {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        try {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    (long) recordsPerSegment * RECORD_SIZE);
+            // Persist the file size and its directory entry now, so later force() calls
+            // only have to write the mapped pages.
+            channel.force(true);
+            syncDirectory();
+            Segment segment = new Segment(path, channel, buffer);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create write-ahead log segment " + path, e);
+        }
+    }
+
+    private void syncDirectory() throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory for fsync (Windows cannot).
+            if (!System.getProperty("os.name").startsWith("Windows")) {
+                throw e;
+            }
+        }
+    }
+
+    private List<Path> listSegments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list write-ahead log directory " + directory, e);
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int count;
+        private long lastLsn;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The amount handling of one deposit request: parse the body, validate the amount
+ * and apply it to the balance. Run with {@code -Djmh.profilers=gc} and compare
+ * {@code gc.alloc.rate.norm} between the two methods.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AmountRequestBenchmark {
+
+    /**
+     * Request body as it was mapped before amounts became {@link Money}.
+     */
+    public static class BigDecimalOperation {
+        public UUID walletId;
+        public WalletOperationType operationType;
+        public BigDecimal amount;
+    }
+
+    private ObjectReader bigDecimalReader;
+    private ObjectReader moneyReader;
+    private byte[] body;
+    private BigDecimal bigDecimalBalance;
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        bigDecimalReader = objectMapper.readerFor(BigDecimalOperation.class);
+        moneyReader = objectMapper.readerFor(WalletOperationDto.class);
+        body = ("{\"walletId\":\"" + UUID.randomUUID() + "\",\"operationType\":\"DEPOSIT\",\"amount\":100.50}")
+                .getBytes(StandardCharsets.UTF_8);
+        bigDecimalBalance = new BigDecimal("12345.6700");
+        wallet = new Wallet(UUID.randomUUID(), bigDecimalBalance, 1L, null, null);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalRequest() throws IOException {
+        BigDecimalOperation operation = bigDecimalReader.readValue(body);
+        if (operation.amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        return bigDecimalBalance.add(operation.amount);
+    }
+
+    @Benchmark
+    public Money moneyRequest() throws IOException {
+        WalletOperationDto operation = moneyReader.readValue(body);
+        if (!operation.getAmount().isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        return wallet.getBalance().plus(operation.getAmount());
+    }
+}
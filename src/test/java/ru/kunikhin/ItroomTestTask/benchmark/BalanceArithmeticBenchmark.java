@@ -0,0 +1,78 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.kunikhin.ItroomTestTask.model.Money;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The balance checks and updates performed per operation, isolated from I/O.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BalanceArithmeticBenchmark {
+
+    private BigDecimal balance;
+    private BigDecimal amount;
+    private Money moneyBalance;
+    private Money moneyAmount;
+
+    @Setup
+    public void setUp() {
+        balance = new BigDecimal("12345.67");
+        amount = new BigDecimal("100.50");
+        moneyBalance = Money.of(balance);
+        moneyAmount = Money.of(amount);
+    }
+
+    @Benchmark
+    public BigDecimal deposit() {
+        return balance.add(amount);
+    }
+
+    @Benchmark
+    public BigDecimal withdraw() {
+        if (balance.compareTo(amount) < 0) {
+            throw new IllegalStateException("Insufficient funds");
+        }
+        return balance.subtract(amount);
+    }
+
+    @Benchmark
+    public boolean validateAmount() {
+        return amount.compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    @Benchmark
+    public Money moneyDeposit() {
+        return moneyBalance.plus(moneyAmount);
+    }
+
+    @Benchmark
+    public Money moneyWithdraw() {
+        if (moneyBalance.compareTo(moneyAmount) < 0) {
+            throw new IllegalStateException("Insufficient funds");
+        }
+        return moneyBalance.minus(moneyAmount);
+    }
+
+    @Benchmark
+    public boolean moneyValidateAmount() {
+        return moneyAmount.isPositive();
+    }
+}
@@ -0,0 +1,41 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks once per thread count, since JMH takes a single
+ * thread count per run. Arguments: include regex, comma-separated thread counts,
+ * the JSON result file (one file per thread count is written next to it) and an
+ * optional comma-separated list of JMH profilers such as {@code gc}.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName();
+        String threads = args.length > 1 ? args[1] : "1";
+        String result = args.length > 2 ? args[2] : "jmh-result.json";
+        String profilers = args.length > 3 ? args[3] : "";
+
+        for (String value : threads.split(",")) {
+            int threadCount = Integer.parseInt(value.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.replace(".json", "-t" + threadCount + ".json"));
+            for (String profiler : profilers.split(",")) {
+                if (!profiler.isBlank()) {
+                    options.addProfiler(profiler.trim());
+                }
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
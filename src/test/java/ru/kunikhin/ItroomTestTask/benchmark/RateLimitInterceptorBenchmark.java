@@ -0,0 +1,98 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.kunikhin.ItroomTestTask.exception.RateLimitExceededException;
+import ru.kunikhin.ItroomTestTask.interceptor.RateLimitInterceptor;
+import ru.kunikhin.ItroomTestTask.interceptor.WalletRateLimiter;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the CAS token-bucket limiter with the synchronized fixed-window one
+ * it replaced. {@code maxRequests} of 1000 rejects most calls on hot keys, the
+ * large value measures the admit path only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimitInterceptorBenchmark {
+
+    public enum Implementation {
+        LEGACY,
+        TOKEN_BUCKET
+    }
+
+    @Param({"LEGACY", "TOKEN_BUCKET"})
+    private Implementation implementation;
+
+    @Param({"1000", "1000000000"})
+    private int maxRequests;
+
+    @Param({"1", "1024", "65536"})
+    private int wallets;
+
+    @Param({"0.0", "1.2"})
+    private double skew;
+
+    private HandlerInterceptor interceptor;
+    private WalletKeys keys;
+    private String[] walletIds;
+    private Map<String, String>[] pathVariables;
+
+    @State(Scope.Thread)
+    public static class Exchange {
+        final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/wallets");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+    }
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        interceptor = switch (implementation) {
+            case LEGACY -> new LegacyRateLimitInterceptor(maxRequests, 1000);
+            case TOKEN_BUCKET -> new RateLimitInterceptor(
+                    new WalletRateLimiter(maxRequests, 1000, maxRequests, 1000, 60000, new SimpleMeterRegistry()));
+        };
+
+        walletIds = new String[wallets];
+        pathVariables = new Map[wallets];
+        for (int i = 0; i < wallets; i++) {
+            walletIds[i] = UUID.randomUUID().toString();
+            pathVariables[i] = Map.of("walletId", walletIds[i]);
+        }
+        keys = new WalletKeys(wallets, skew);
+    }
+
+    @Benchmark
+    public boolean preHandle(Exchange exchange) throws Exception {
+        int index = keys.nextIndex();
+        // Legacy reads the query parameter, the token bucket reads the resolved path variable.
+        exchange.request.setParameter("walletId", walletIds[index]);
+        exchange.request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, pathVariables[index]);
+        try {
+            return interceptor.preHandle(exchange.request, exchange.response, null);
+        } catch (RateLimitExceededException e) {
+            return false;
+        }
+    }
+}
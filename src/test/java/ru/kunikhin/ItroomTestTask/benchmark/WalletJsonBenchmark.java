@@ -0,0 +1,72 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalletJsonBenchmark {
+
+    private ObjectReader operationReader;
+    private ObjectWriter operationWriter;
+    private ObjectWriter walletWriter;
+    private byte[] operationJson;
+    private WalletOperationDto operation;
+    private Wallet wallet;
+
+    @Setup
+    public void setUp() {
+        // Same builder Spring MVC uses, so registered modules match the application.
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        operationReader = objectMapper.readerFor(WalletOperationDto.class);
+        operationWriter = objectMapper.writerFor(WalletOperationDto.class);
+        walletWriter = objectMapper.writerFor(Wallet.class);
+
+        UUID walletId = UUID.randomUUID();
+        operationJson = ("{\"walletId\":\"" + walletId + "\",\"operationType\":\"DEPOSIT\",\"amount\":100.50}")
+                .getBytes(StandardCharsets.UTF_8);
+        operation = new WalletOperationDto(walletId, WalletOperationType.DEPOSIT, new BigDecimal("100.50"));
+        wallet = new Wallet(walletId, new BigDecimal("12345.67"), 42L, LocalDateTime.now(), LocalDateTime.now());
+    }
+
+    @Benchmark
+    public WalletOperationDto readOperation() throws IOException {
+        return operationReader.readValue(operationJson);
+    }
+
+    @Benchmark
+    public byte[] writeOperation() throws IOException {
+        return operationWriter.writeValueAsBytes(operation);
+    }
+
+    @Benchmark
+    public byte[] writeWallet() throws IOException {
+        return walletWriter.writeValueAsBytes(wallet);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks key indexes from a Zipf distribution: skew 0 is uniform, larger values
+ * concentrate traffic on the first few keys the way hot wallets do in production.
+ */
+final class WalletKeys {
+
+    private final double[] cumulative;
+
+    WalletKeys(int count, double skew) {
+        cumulative = new double[count];
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    int nextIndex() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, cumulative.length - 1);
+    }
+}
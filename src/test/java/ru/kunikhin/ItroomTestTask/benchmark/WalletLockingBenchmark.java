@@ -0,0 +1,135 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kunikhin.ItroomTestTask.ItroomTestTaskApplication;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.service.WalletService;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sweeps the row-level write strategies over key skew ({@code wallets}, {@code skew})
+ * and concurrency ({@code -Djmh.threads}) to find where pessimistic locking starts to
+ * beat optimistic retries. The primary score counts every call; {@code succeeded}
+ * and {@code failed} split it into completed operations and ones that gave up
+ * (retries exhausted, lock not granted), so compare strategies on {@code succeeded}
+ * together with the sampled latency percentiles.
+ * <p>
+ * Runs on H2 in PostgreSQL mode like {@link WalletServiceBenchmark}; ATOMIC relies on
+ * PostgreSQL-only SQL. H2 ignores {@code wallet.lock-timeout} and waits for its own
+ * lock timeout instead. Set {@code BENCHMARK_DATASOURCE_URL} (and
+ * {@code BENCHMARK_DATASOURCE_USERNAME}/{@code _PASSWORD}) to run against PostgreSQL;
+ * environment variables, unlike {@code -D} properties, reach the forked JVM.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalletLockingBenchmark {
+
+    private static final Money INITIAL_BALANCE = Money.of(new BigDecimal("1000000000.00"));
+    private static final Money AMOUNT = Money.of(new BigDecimal("1.00"));
+
+    @Param({"OPTIMISTIC", "PESSIMISTIC", "NOWAIT"})
+    private String strategy;
+
+    @Param({"1", "16", "1024"})
+    private int wallets;
+
+    @Param({"0.0", "1.2"})
+    private double skew;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private WalletKeys keys;
+    private UUID[] walletIds;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long succeeded;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            succeeded = 0;
+            failed = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ItroomTestTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=" + env("BENCHMARK_DATASOURCE_URL",
+                                "jdbc:h2:mem:wallet-locking-benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1"),
+                        "--spring.datasource.username=" + env("BENCHMARK_DATASOURCE_USERNAME", "sa"),
+                        "--spring.datasource.password=" + env("BENCHMARK_DATASOURCE_PASSWORD", ""),
+                        "--wallet.write-strategy=" + strategy,
+                        // Measures the strategies themselves, not the fallback to slots.
+                        "--wallet.striping.conflicts-per-second=" + Integer.MAX_VALUE,
+                        "--wallet.cache.enabled=false",
+                        "--wallet.ledger.compaction.enabled=false",
+                        "--wallet.partitions.maintenance.enabled=false",
+                        "--wallet.idempotency.sweep.interval-ms=3600000",
+                        "--logging.level.root=WARN"
+                );
+        walletService = context.getBean(WalletService.class);
+
+        walletIds = new UUID[wallets];
+        for (int i = 0; i < wallets; i++) {
+            walletIds[i] = walletService.createWallet().getId();
+            walletService.executeOperation(walletIds[i], WalletOperationType.DEPOSIT, INITIAL_BALANCE);
+        }
+        keys = new WalletKeys(wallets, skew);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Benchmark
+    public Object executeOperation(Outcomes outcomes) {
+        UUID walletId = walletIds[keys.nextIndex()];
+        WalletOperationType operationType = ThreadLocalRandom.current().nextBoolean()
+                ? WalletOperationType.DEPOSIT
+                : WalletOperationType.WITHDRAW;
+        try {
+            Object wallet = walletService.executeOperation(walletId, operationType, AMOUNT);
+            outcomes.succeeded++;
+            return wallet;
+        } catch (RuntimeException e) {
+            outcomes.failed++;
+            return e;
+        }
+    }
+}
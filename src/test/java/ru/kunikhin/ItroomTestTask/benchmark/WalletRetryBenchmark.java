@@ -0,0 +1,139 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kunikhin.ItroomTestTask.ItroomTestTaskApplication;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.service.WalletService;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optimistic retries under contention on a deliberately small pool: many threads
+ * ({@code -Djmh.threads}) on a few wallets, with the conflict-rate adaptive backoff
+ * on and off ({@code adaptive}). Besides throughput and the sampled latency
+ * percentiles, {@code succeeded} and {@code failed} split the calls into completed
+ * operations and ones whose retries ran out, and {@code poolWaiters} adds up the
+ * threads waiting for a connection as seen by each call; divide it by the number
+ * of calls for the average queue in front of the pool.
+ * <p>
+ * Runs on H2 in PostgreSQL mode like {@link WalletLockingBenchmark}, and takes the
+ * same {@code BENCHMARK_DATASOURCE_*} environment variables to run against
+ * PostgreSQL, where version conflicts and backoff cost real round-trips.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalletRetryBenchmark {
+
+    private static final Money INITIAL_BALANCE = Money.of(new BigDecimal("1000000000.00"));
+    private static final Money AMOUNT = Money.of(new BigDecimal("1.00"));
+
+    @Param({"true", "false"})
+    private boolean adaptive;
+
+    @Param({"4"})
+    private int wallets;
+
+    @Param({"8"})
+    private int poolSize;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private HikariPoolMXBean pool;
+    private UUID[] walletIds;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long succeeded;
+        public long failed;
+        public long poolWaiters;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            succeeded = 0;
+            failed = 0;
+            poolWaiters = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ItroomTestTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=" + env("BENCHMARK_DATASOURCE_URL",
+                                "jdbc:h2:mem:wallet-retry-benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1"),
+                        "--spring.datasource.username=" + env("BENCHMARK_DATASOURCE_USERNAME", "sa"),
+                        "--spring.datasource.password=" + env("BENCHMARK_DATASOURCE_PASSWORD", ""),
+                        "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                        "--wallet.write-strategy=OPTIMISTIC",
+                        // The base delay stops growing with the conflict rate.
+                        "--retry.reference-conflicts-per-second=" + (adaptive ? 50 : Integer.MAX_VALUE),
+                        // Measures the retries themselves, not the fallback to slots.
+                        "--wallet.striping.conflicts-per-second=" + Integer.MAX_VALUE,
+                        "--wallet.cache.enabled=false",
+                        "--wallet.ledger.compaction.enabled=false",
+                        "--wallet.partitions.maintenance.enabled=false",
+                        "--wallet.idempotency.sweep.interval-ms=3600000",
+                        "--logging.level.root=WARN"
+                );
+        walletService = context.getBean(WalletService.class);
+        pool = context.getBeansOfType(HikariDataSource.class).values().iterator().next().getHikariPoolMXBean();
+
+        walletIds = new UUID[wallets];
+        for (int i = 0; i < wallets; i++) {
+            walletIds[i] = walletService.createWallet().getId();
+            walletService.executeOperation(walletIds[i], WalletOperationType.DEPOSIT, INITIAL_BALANCE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Benchmark
+    public Object executeOperation(Outcomes outcomes) {
+        UUID walletId = walletIds[ThreadLocalRandom.current().nextInt(wallets)];
+        outcomes.poolWaiters += pool.getThreadsAwaitingConnection();
+        try {
+            Object wallet = walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, AMOUNT);
+            outcomes.succeeded++;
+            return wallet;
+        } catch (RuntimeException e) {
+            outcomes.failed++;
+            return e;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.kunikhin.ItroomTestTask.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kunikhin.ItroomTestTask.ItroomTestTaskApplication;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.service.WalletService;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full service path (transaction, retry, JPA, connection pool) against an
+ * in-memory H2 database in PostgreSQL mode. Only the OPTIMISTIC write strategy
+ * runs here: ATOMIC and LEDGER rely on PostgreSQL-only SQL.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalletServiceBenchmark {
+
+    private static final Money INITIAL_BALANCE = Money.of(new BigDecimal("1000000000.00"));
+    private static final Money AMOUNT = Money.of(new BigDecimal("1.00"));
+
+    @Param({"1", "64", "4096"})
+    private int wallets;
+
+    @Param({"0.0", "1.2"})
+    private double skew;
+
+    private ConfigurableApplicationContext context;
+    private WalletService walletService;
+    private WalletKeys keys;
+    private UUID[] walletIds;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ItroomTestTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:wallet-benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--wallet.ledger.compaction.enabled=false",
+                        "--wallet.partitions.maintenance.enabled=false",
+                        "--wallet.idempotency.sweep.interval-ms=3600000",
+                        "--logging.level.root=WARN"
+                );
+        walletService = context.getBean(WalletService.class);
+
+        walletIds = new UUID[wallets];
+        for (int i = 0; i < wallets; i++) {
+            walletIds[i] = walletService.createWallet().getId();
+            walletService.executeOperation(walletIds[i], WalletOperationType.DEPOSIT, INITIAL_BALANCE);
+        }
+        keys = new WalletKeys(wallets, skew);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object executeOperation() {
+        UUID walletId = walletIds[keys.nextIndex()];
+        WalletOperationType operationType = ThreadLocalRandom.current().nextBoolean()
+                ? WalletOperationType.DEPOSIT
+                : WalletOperationType.WITHDRAW;
+        try {
+            return walletService.executeOperation(walletId, operationType, AMOUNT);
+        } catch (RuntimeException e) {
+            // Retry exhaustion under heavy contention is part of what is being measured.
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object getWallet() {
+        return walletService.getWallet(walletIds[keys.nextIndex()]);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.kunikhin.ItroomTestTask.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WalletBalanceCacheTest {
+
+    private final WalletBalanceCache cache = new WalletBalanceCache(true, 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @Test
+    void put_ShouldNotOverwriteNewerVersion() {
+        UUID walletId = UUID.randomUUID();
+
+        cache.put(new Wallet(walletId, new BigDecimal("20.00"), 2L, null, null));
+        cache.put(new Wallet(walletId, new BigDecimal("10.00"), 1L, null, null));
+
+        Wallet cached = cache.get(walletId).orElseThrow();
+        assertEquals(new BigDecimal("20.00"), cached.getAmount());
+        assertEquals(2L, cached.getVersion());
+    }
+
+    @Test
+    void put_ShouldReplaceOlderVersion() {
+        UUID walletId = UUID.randomUUID();
+
+        cache.put(new Wallet(walletId, new BigDecimal("10.00"), 1L, null, null));
+        cache.put(new Wallet(walletId, new BigDecimal("20.00"), 2L, null, null));
+
+        assertEquals(new BigDecimal("20.00"), cache.get(walletId).orElseThrow().getAmount());
+    }
+
+    @Test
+    void disabledCache_ShouldNeverReturnEntries() {
+        WalletBalanceCache disabled = WalletBalanceCache.disabled();
+        UUID walletId = UUID.randomUUID();
+
+        disabled.put(new Wallet(walletId, BigDecimal.TEN, 1L, null, null));
+
+        assertTrue(disabled.get(walletId).isEmpty());
+    }
+}
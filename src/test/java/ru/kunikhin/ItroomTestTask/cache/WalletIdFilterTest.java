@@ -0,0 +1,143 @@
+package ru.kunikhin.ItroomTestTask.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.kunikhin.ItroomTestTask.repository.WalletIdRepository;
+
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WalletIdFilterTest {
+
+    private final WalletIdRepository idRepository = mock(WalletIdRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WalletIdFilter filter = new WalletIdFilter(idRepository, true, true, 10_000, 0.01, 2,
+            Duration.ofMinutes(1), meterRegistry);
+
+    @Test
+    void mightExist_ShouldAllowEveryId_WhenNotLoaded() {
+        assertTrue(filter.mightExist(UUID.randomUUID()));
+    }
+
+    @Test
+    void load_ShouldStreamAllPages() throws Exception {
+        List<UUID> walletIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        doAnswer(invocation -> emit(invocation.getArgument(2), walletIds.subList(0, 2)))
+                .when(idRepository).findPage(isNull(), eq(2), any());
+        doAnswer(invocation -> emit(invocation.getArgument(2), walletIds.subList(2, 3)))
+                .when(idRepository).findPage(eq(walletIds.get(1)), eq(2), any());
+
+        filter.load();
+
+        assertTrue(filter.isLoaded());
+        walletIds.forEach(walletId -> assertTrue(filter.mightExist(walletId)));
+        verify(idRepository).findPage(eq(walletIds.get(1)), anyInt(), any());
+    }
+
+    @Test
+    void mightExist_ShouldRejectMostUnknownIds_WithinConfiguredRate() {
+        filter.load();
+        List<UUID> walletIds = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            UUID walletId = UUID.randomUUID();
+            walletIds.add(walletId);
+            filter.add(walletId);
+        }
+
+        walletIds.forEach(walletId -> assertTrue(filter.mightExist(walletId)));
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightExist(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+        assertEquals(100_000 - falsePositives, meterRegistry.get("wallet.id.filter.rejected").counter().count());
+        assertEquals(0.01, meterRegistry.get("wallet.id.filter.fpp").gauge().value(), 0.005);
+        assertEquals(10_000, meterRegistry.get("wallet.id.filter.ids").gauge().value(), 200);
+        // About 9.6 bits per id at 1%
+        assertEquals(12_000, meterRegistry.get("wallet.id.filter.size").gauge().value(), 200);
+    }
+
+    @Test
+    void refresh_ShouldAddWalletsCreatedElsewhere() throws Exception {
+        filter.load();
+        UUID walletId = UUID.randomUUID();
+        assertFalse(filter.mightExist(walletId));
+        doAnswer(invocation -> emit(invocation.getArgument(1), List.of(walletId)))
+                .when(idRepository).findCreatedSince(any(), any());
+
+        filter.refresh();
+
+        assertTrue(filter.mightExist(walletId));
+    }
+
+    @Test
+    void refresh_ShouldStartFromLoadStart_NotFromNewestLoadedWallet() throws Exception {
+        LocalDateTime beforeLoad = LocalDateTime.now();
+        doAnswer(invocation -> {
+            RowCallbackHandler rows = invocation.getArgument(2);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getObject("id", UUID.class)).thenReturn(UUID.randomUUID());
+            when(rs.getObject("created_at", LocalDateTime.class)).thenReturn(beforeLoad.plusHours(1));
+            rows.processRow(rs);
+            return null;
+        }).when(idRepository).findPage(isNull(), eq(2), any());
+
+        filter.load();
+        filter.refresh();
+
+        ArgumentCaptor<LocalDateTime> since = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(idRepository).findCreatedSince(since.capture(), any());
+        assertTrue(since.getValue().isBefore(beforeLoad));
+    }
+
+    @Test
+    void recordMissed_ShouldAddWallet() {
+        filter.load();
+        UUID walletId = UUID.randomUUID();
+
+        filter.recordMissed(walletId);
+
+        assertTrue(filter.mightExist(walletId));
+        assertEquals(1, meterRegistry.get("wallet.id.filter.missed").counter().count());
+    }
+
+    @Test
+    void disabledFilter_ShouldAllowEveryId() {
+        WalletIdFilter disabled = WalletIdFilter.disabled();
+
+        disabled.add(UUID.randomUUID());
+
+        assertTrue(disabled.mightExist(UUID.randomUUID()));
+    }
+
+    private static Object emit(RowCallbackHandler rows, List<UUID> walletIds) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        for (UUID walletId : walletIds) {
+            when(rs.getObject("id", UUID.class)).thenReturn(walletId);
+            when(rs.getObject("created_at", LocalDateTime.class)).thenReturn(LocalDateTime.now());
+            rows.processRow(rs);
+        }
+        return null;
+    }
+}
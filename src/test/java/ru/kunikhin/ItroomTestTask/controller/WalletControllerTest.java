@@ -10,25 +10,48 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.RateLimitExceededException;
 import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.interceptor.WalletRateLimiter;
 import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationResultDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletTransferDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletTransferResultDto;
 import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.service.IdempotencyService;
+import ru.kunikhin.ItroomTestTask.service.WalletBalanceLookupService;
+import ru.kunikhin.ItroomTestTask.service.WalletBatchService;
+import ru.kunikhin.ItroomTestTask.service.WalletCreationService;
 import ru.kunikhin.ItroomTestTask.service.WalletService;
+import ru.kunikhin.ItroomTestTask.service.WalletTransferService;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationStatus;
 import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
 
 import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -43,6 +66,24 @@ class WalletControllerTest {
     @MockitoBean
     private WalletService walletService;
 
+    @MockitoBean
+    private WalletBatchService walletBatchService;
+
+    @MockitoBean
+    private WalletCreationService walletCreationService;
+
+    @MockitoBean
+    private WalletTransferService walletTransferService;
+
+    @MockitoBean
+    private WalletBalanceLookupService balanceLookupService;
+
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private WalletRateLimiter walletRateLimiter;
+
     @Test
     void createWallet_ShouldReturnCreatedWallet() throws Exception {
         UUID walletId = UUID.randomUUID();
@@ -58,6 +99,121 @@ class WalletControllerTest {
                 .andExpect(jsonPath("$.amount").value(0));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void createWallets_ShouldStreamCreatedIdsAsNdjson() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        doAnswer(invocation -> {
+            Consumer<List<UUID>> createdIds = invocation.getArgument(1);
+            createdIds.accept(List.of(first));
+            createdIds.accept(List.of(second));
+            return null;
+        }).when(walletCreationService).createWallets(eq(2), any());
+
+        MvcResult result = mockMvc.perform(post("/api/v1/wallet/new/bulk").param("count", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("\"" + first + "\"\n\"" + second + "\"\n"));
+    }
+
+    @Test
+    void createWallets_ShouldReturnBadRequest_WhenCountOutOfRange() throws Exception {
+        doThrow(new IllegalArgumentException("Count must be between 1 and 1000000"))
+                .when(walletCreationService).validateCount(0);
+
+        mockMvc.perform(post("/api/v1/wallet/new/bulk").param("count", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void transfer_ShouldReturnBothWallets() throws Exception {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        WalletTransferDto request = new WalletTransferDto(from, to, new BigDecimal("25"));
+
+        when(walletTransferService.transfer(eq(from), eq(to), any())).thenReturn(new WalletTransferResultDto(
+                new Wallet(from, new BigDecimal("75"), 3L, null, null),
+                new Wallet(to, new BigDecimal("25"), 1L, null, null)));
+
+        mockMvc.perform(post("/api/v1/wallet/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.from.id").value(from.toString()))
+                .andExpect(jsonPath("$.from.amount").value(75))
+                .andExpect(jsonPath("$.to.id").value(to.toString()))
+                .andExpect(jsonPath("$.to.amount").value(25));
+    }
+
+    @Test
+    void transfer_ShouldReturnBadRequest_WhenInsufficientFunds() throws Exception {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        WalletTransferDto request = new WalletTransferDto(from, to, new BigDecimal("25"));
+
+        when(walletTransferService.transfer(eq(from), eq(to), any()))
+                .thenThrow(new InsufficientFundsException("Insufficient funds"));
+
+        mockMvc.perform(post("/api/v1/wallet/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Insufficient funds"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findBalances_ShouldStreamResultsAsNdjson() throws Exception {
+        UUID found = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        doAnswer(invocation -> {
+            Iterator<UUID> walletIds = invocation.getArgument(0);
+            Consumer<List<WalletOperationResultDto>> results = invocation.getArgument(1);
+            assertEquals(found, walletIds.next());
+            assertEquals(missing, walletIds.next());
+            results.accept(List.of(
+                    WalletOperationResultDto.success(found, new BigDecimal("10")),
+                    WalletOperationResultDto.failure(missing, WalletOperationStatus.NOT_FOUND, "Wallet not found")));
+            return null;
+        }).when(balanceLookupService).findBalances(any(), any());
+
+        MvcResult result = mockMvc.perform(post("/api/v1/wallets/balances")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("\"" + found + "\"\n\"" + missing + "\"\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"walletId\":\"" + found + "\",\"status\":\"SUCCESS\",\"amount\":10}\n"
+                        + "{\"walletId\":\"" + missing + "\",\"status\":\"NOT_FOUND\",\"message\":\"Wallet not found\"}\n"));
+    }
+
+    @Test
+    void subscribe_ShouldStartEventStream() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(balanceLookupService.findWallets(any()))
+                .thenReturn(Map.of(walletId, new Wallet(walletId, new BigDecimal("10"), 1L, null, null)));
+
+        mockMvc.perform(get("/api/v1/wallets/subscribe").param("walletId", walletId.toString()))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void subscribe_ShouldReturnNotFound_WhenWalletNotExists() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(balanceLookupService.findWallets(any())).thenReturn(Map.of());
+
+        mockMvc.perform(get("/api/v1/wallets/subscribe").param("walletId", walletId.toString()))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void getWalletBalance_ShouldReturnBalance() throws Exception {
         UUID walletId = UUID.randomUUID();
@@ -65,7 +221,7 @@ class WalletControllerTest {
         wallet.setId(walletId);
         wallet.setAmount(new BigDecimal("100.50"));
 
-        when(walletService.getWallet(walletId)).thenReturn(wallet);
+        when(walletService.getWallet(walletId, null)).thenReturn(wallet);
 
         mockMvc.perform(get("/api/v1/wallets/{walletId}", walletId))
                 .andExpect(status().isOk())
@@ -76,7 +232,7 @@ class WalletControllerTest {
     void getWalletBalance_ShouldReturnNotFound_WhenWalletNotExists() throws Exception {
         UUID walletId = UUID.randomUUID();
 
-        when(walletService.getWallet(walletId))
+        when(walletService.getWallet(walletId, null))
                 .thenThrow(new WalletNotFoundException("Wallet not found with id: " + walletId));
 
         mockMvc.perform(get("/api/v1/wallets/{walletId}", walletId))
@@ -201,4 +357,63 @@ class WalletControllerTest {
                 .andExpect(jsonPath("$.error").value("Not Found"))
                 .andExpect(jsonPath("$.message").value("Wallet not found with id: " + nonExistentWalletId));
     }
-}
\ No newline at end of file
+
+    @Test
+    void executeBatch_ShouldReturnPerItemResults() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        List<WalletOperationDto> request = List.of(
+                new WalletOperationDto(walletId, WalletOperationType.DEPOSIT, new BigDecimal("10")),
+                new WalletOperationDto(walletId, WalletOperationType.WITHDRAW, new BigDecimal("100"))
+        );
+
+        when(walletBatchService.executeBatch(any())).thenReturn(List.of(
+                WalletOperationResultDto.success(walletId, new BigDecimal("10")),
+                WalletOperationResultDto.failure(walletId, WalletOperationStatus.INSUFFICIENT_FUNDS, "Insufficient funds")
+        ));
+
+        mockMvc.perform(post("/api/v1/wallet/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("SUCCESS"))
+                .andExpect(jsonPath("$[0].amount").value(10))
+                .andExpect(jsonPath("$[1].status").value("INSUFFICIENT_FUNDS"));
+    }
+
+    @Test
+    void executeOperation_ShouldReturnStoredResponse_WhenIdempotencyKeyPresent() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        WalletOperationDto request = new WalletOperationDto(
+                walletId, WalletOperationType.DEPOSIT, new BigDecimal("1000")
+        );
+
+        when(idempotencyService.execute(eq("retry-42"), any(), any()))
+                .thenReturn("{\"id\":\"" + walletId + "\",\"amount\":1000}");
+
+        mockMvc.perform(patch("/api/v1/wallet")
+                        .header("Idempotency-Key", "retry-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(walletId.toString()))
+                .andExpect(jsonPath("$.amount").value(1000));
+    }
+
+    @Test
+    void executeOperation_ShouldReturnTooManyRequests_WhenWalletWriteBudgetExhausted() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        WalletOperationDto request = new WalletOperationDto(
+                walletId, WalletOperationType.DEPOSIT, new BigDecimal("1000")
+        );
+
+        doThrow(new RateLimitExceededException("Too many requests for wallet: " + walletId, 2))
+                .when(walletRateLimiter).acquire(walletId.toString(), true);
+
+        mockMvc.perform(patch("/api/v1/wallet")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(jsonPath("$.error").value("Too Many Requests"));
+    }
+}
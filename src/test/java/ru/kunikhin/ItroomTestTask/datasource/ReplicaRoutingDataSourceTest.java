@@ -0,0 +1,90 @@
+package ru.kunikhin.ItroomTestTask.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepositoryCustomImpl;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final ReplicaReadRouting routing = new ReplicaReadRouting(true);
+
+    @Test
+    void replicaRead_ShouldUseReplica_WhenLagIsWithinBound() {
+        ReplicaRoutingDataSource dataSource = routingDataSource("SELECT 0");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        assertEquals("REPLICA", routing.read(() -> jdbcTemplate.queryForObject("SELECT DATABASE()", String.class)));
+        assertEquals("PRIMARY", jdbcTemplate.queryForObject("SELECT DATABASE()", String.class));
+    }
+
+    @Test
+    void replicaRead_ShouldFallBackToPrimary_WhenReplicaLagsTooFar() {
+        ReplicaRoutingDataSource dataSource = routingDataSource("SELECT 5000");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        assertTrue(dataSource.getFreshReplicas().isEmpty());
+        assertEquals("PRIMARY", routing.read(() -> jdbcTemplate.queryForObject("SELECT DATABASE()", String.class)));
+    }
+
+    @Test
+    void replicaRead_ShouldFallBackToPrimary_WhenLagCheckFails() {
+        ReplicaRoutingDataSource dataSource = routingDataSource("SELECT pg_last_wal_replay_lsn()");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        assertEquals("PRIMARY", routing.read(() -> jdbcTemplate.queryForObject("SELECT DATABASE()", String.class)));
+    }
+
+    @Test
+    void findCommitted_ShouldReadPrimaryRow_AfterReplicaReturnedAnOlderOne() {
+        ReplicaRoutingDataSource dataSource = routingDataSource("SELECT 0");
+        UUID walletId = UUID.randomUUID();
+        // The replica has not replayed the second deposit yet.
+        createWallet("primary", walletId, "150.0000", 4);
+        createWallet("replica", walletId, "100.0000", 3);
+        WalletRepositoryCustomImpl repository = new WalletRepositoryCustomImpl(new NamedParameterJdbcTemplate(dataSource));
+
+        Wallet replica = routing.read(() -> repository.findCommitted(walletId)).orElseThrow();
+        Wallet primary = repository.findCommitted(walletId).orElseThrow();
+
+        assertEquals(3L, replica.getVersion());
+        assertEquals(4L, primary.getVersion());
+        assertEquals(new BigDecimal("150.0000"), primary.getAmount());
+    }
+
+    private static void createWallet(String database, UUID walletId, String amount, long version) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(h2(database));
+        jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS wallets (
+                    id UUID PRIMARY KEY, amount NUMERIC(19, 4), version BIGINT,
+                    created_at TIMESTAMP, updated_at TIMESTAMP, slot_count INT DEFAULT 0)
+                """);
+        jdbcTemplate.update("INSERT INTO wallets (id, amount, version, created_at, updated_at) "
+                + "VALUES (?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", walletId, new BigDecimal(amount), version);
+    }
+
+    private static ReplicaRoutingDataSource routingDataSource(String lagQuery) {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(
+                h2("primary"), List.of(h2("replica")), lagQuery, Duration.ofSeconds(1));
+        dataSource.afterPropertiesSet();
+        return dataSource;
+    }
+
+    private static DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
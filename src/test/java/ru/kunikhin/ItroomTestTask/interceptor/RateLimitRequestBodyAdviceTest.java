@@ -0,0 +1,38 @@
+package ru.kunikhin.ItroomTestTask.interceptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import ru.kunikhin.ItroomTestTask.exception.RateLimitExceededException;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimitRequestBodyAdviceTest {
+
+    private static final Type BATCH = new ParameterizedTypeReference<List<WalletOperationDto>>() {
+    }.getType();
+
+    private final RateLimitRequestBodyAdvice advice = new RateLimitRequestBodyAdvice(
+            new WalletRateLimiter(1000, 1000, 2, 1000, 60000, new SimpleMeterRegistry()));
+
+    @Test
+    void afterBodyRead_ShouldChargeEveryBatchOperation_AndRejectBatchOverBudget() {
+        UUID walletId = UUID.randomUUID();
+        List<WalletOperationDto> batch = List.of(deposit(walletId), deposit(walletId), deposit(walletId));
+
+        assertTrue(advice.supports(null, BATCH, null));
+        assertThrows(RateLimitExceededException.class, () -> advice.afterBodyRead(batch, null, null, BATCH, null));
+    }
+
+    private static WalletOperationDto deposit(UUID walletId) {
+        return new WalletOperationDto(walletId, WalletOperationType.DEPOSIT, BigDecimal.ONE);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.kunikhin.ItroomTestTask.interceptor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(10, 1000, 5000, clock::get);
+
+    @Test
+    void tryAcquire_ShouldAllowBurstUpToCapacity_ThenReject() {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("wallet"));
+        }
+
+        long waitNanos = limiter.tryAcquire("wallet");
+        assertTrue(waitNanos > 0);
+        assertTrue(waitNanos <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void tryAcquire_ShouldRefillGradually_WhenTimePasses() {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("wallet");
+        }
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+
+        assertEquals(0, limiter.tryAcquire("wallet"));
+        assertEquals(0, limiter.tryAcquire("wallet"));
+        assertTrue(limiter.tryAcquire("wallet") > 0);
+    }
+
+    @Test
+    void tryAcquire_ShouldKeepSeparateBuckets_PerKey() {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("hot");
+        }
+
+        assertTrue(limiter.tryAcquire("hot") > 0);
+        assertEquals(0, limiter.tryAcquire("cold"));
+    }
+
+    @Test
+    void release_ShouldReturnTokenWithoutExceedingCapacity() {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("wallet");
+        }
+
+        limiter.release("wallet");
+        assertEquals(0, limiter.tryAcquire("wallet"));
+        assertTrue(limiter.tryAcquire("wallet") > 0);
+
+        limiter.release("fresh");
+        limiter.tryAcquire("fresh");
+        limiter.release("fresh");
+        limiter.release("fresh");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("fresh"));
+        }
+        assertTrue(limiter.tryAcquire("fresh") > 0);
+    }
+
+    @Test
+    void evictIdle_ShouldDropOnlyBucketsFullForLongerThanIdleTimeout() {
+        limiter.tryAcquire("idle");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        limiter.tryAcquire("active");
+
+        assertEquals(1, limiter.evictIdle());
+        assertEquals(1, limiter.size());
+        assertEquals(0, limiter.tryAcquire("idle"));
+    }
+}
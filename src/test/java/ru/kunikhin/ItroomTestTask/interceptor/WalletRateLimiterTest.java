@@ -0,0 +1,28 @@
+package ru.kunikhin.ItroomTestTask.interceptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.kunikhin.ItroomTestTask.exception.RateLimitExceededException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WalletRateLimiterTest {
+
+    private final WalletRateLimiter rateLimiter = new WalletRateLimiter(1000, 1000, 2, 60000, 60000,
+            new SimpleMeterRegistry());
+
+    @Test
+    void acquireWrites_ShouldGiveBackEarlierTokens_WhenLaterWalletIsOverBudget() {
+        UUID cold = UUID.randomUUID();
+        UUID hot = UUID.randomUUID();
+        rateLimiter.acquireWrites(List.of(hot, hot));
+
+        assertThrows(RateLimitExceededException.class, () -> rateLimiter.acquireWrites(List.of(cold, cold, hot)));
+
+        assertDoesNotThrow(() -> rateLimiter.acquireWrites(List.of(cold, cold)));
+    }
+}
@@ -0,0 +1,76 @@
+package ru.kunikhin.ItroomTestTask.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RetryMetricsListenerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RetryTemplate retryTemplate;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new SimpleRetryPolicy(3));
+        retryTemplate.registerListener(new RetryMetricsListener(meterRegistry));
+    }
+
+    @Test
+    void listener_ShouldCountConflictsAndAttempts_WhenRetrySucceeds() {
+        AtomicInteger calls = new AtomicInteger();
+
+        retryTemplate.execute(context -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(Wallet.class, "id");
+            }
+            return "ok";
+        });
+
+        assertEquals(2.0, meterRegistry.get("wallet.retry.conflicts").counter().count());
+        assertEquals(1, meterRegistry.get("wallet.retry.attempts").summary().count());
+        assertEquals(3.0, meterRegistry.get("wallet.retry.attempts").summary().totalAmount());
+        assertEquals(0.0, meterRegistry.get("wallet.retry.exhausted").counter().count());
+    }
+
+    @Test
+    void listener_ShouldCountExhaustion_WhenEveryAttemptConflicts() {
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> retryTemplate.execute(context -> {
+            throw new ObjectOptimisticLockingFailureException(Wallet.class, "id");
+        }));
+
+        assertEquals(3.0, meterRegistry.get("wallet.retry.conflicts").counter().count());
+        assertEquals(1.0, meterRegistry.get("wallet.retry.exhausted").counter().count());
+        assertEquals(0, meterRegistry.get("wallet.retry.attempts").summary().count());
+    }
+
+    @Test
+    void listener_ShouldCountSerializationFailuresAndDeadlocks_AsConflicts() {
+        AtomicInteger calls = new AtomicInteger();
+
+        retryTemplate.execute(context -> {
+            switch (calls.incrementAndGet()) {
+                case 1 -> throw new PessimisticLockingFailureException("could not serialize access");
+                case 2 -> throw new CannotAcquireLockException("deadlock detected");
+                default -> {
+                    return "ok";
+                }
+            }
+        });
+
+        assertEquals(2.0, meterRegistry.get("wallet.retry.conflicts").counter().count());
+        assertEquals(3.0, meterRegistry.get("wallet.retry.attempts").summary().totalAmount());
+    }
+}
@@ -0,0 +1,28 @@
+package ru.kunikhin.ItroomTestTask.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WalletOperationMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WalletOperationMetrics metrics = new WalletOperationMetrics(meterRegistry);
+
+    @Test
+    void record_ShouldTagTimerByTypeAndOutcome() {
+        metrics.record(WalletOperationType.DEPOSIT, () -> "ok");
+        assertThrows(InsufficientFundsException.class, () -> metrics.record(WalletOperationType.WITHDRAW, () -> {
+            throw new InsufficientFundsException("Insufficient funds");
+        }));
+
+        assertEquals(1, meterRegistry.get("wallet.operation")
+                .tags("type", "DEPOSIT", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("wallet.operation")
+                .tags("type", "WITHDRAW", "outcome", "InsufficientFundsException").timer().count());
+    }
+}
@@ -0,0 +1,79 @@
+package ru.kunikhin.ItroomTestTask.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MoneyConverter converter = new MoneyConverter();
+
+    @Test
+    void arithmetic_ShouldKeepBigDecimalScale() {
+        Money balance = Money.of(new BigDecimal("10000.00"));
+
+        assertEquals(new BigDecimal("11000.00"), balance.plus(Money.of(new BigDecimal("1000"))).toBigDecimal());
+        assertEquals(new BigDecimal("9999.9950"), balance.minus(Money.of(new BigDecimal("0.0050"))).toBigDecimal());
+    }
+
+    @Test
+    void arithmetic_ShouldRejectOverflow() {
+        Money max = Money.ofUnits(Long.MAX_VALUE);
+
+        assertThrows(IllegalArgumentException.class, () -> max.plus(Money.ofUnits(1)));
+        assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1e20")));
+    }
+
+    @Test
+    void converter_ShouldRoundTripColumnValue() {
+        BigDecimal column = new BigDecimal("123456789012345.6789");
+
+        Money money = converter.convertToEntityAttribute(column);
+
+        assertEquals(1234567890123456789L, money.units());
+        assertEquals(column, converter.convertToDatabaseColumn(money));
+    }
+
+    @Test
+    void converter_ShouldReportStoredBalanceOutsideRange() {
+        BigDecimal column = new BigDecimal("999999999999999.9999");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> converter.convertToEntityAttribute(column));
+
+        assertTrue(e.getMessage().contains("999999999999999.9999"));
+        assertEquals(new BigDecimal("922337203685477.5807"), converter.convertToDatabaseColumn(Money.MAX));
+    }
+
+    @Test
+    void positiveAmount_ShouldAcceptOnlyAmountsAboveZero() {
+        PositiveAmountValidator validator = new PositiveAmountValidator();
+
+        assertTrue(validator.isValid(Money.ofUnits(1), null));
+        assertTrue(validator.isValid(null, null));
+        assertFalse(validator.isValid(Money.ZERO, null));
+        assertFalse(validator.isValid(Money.ofUnits(-1), null));
+    }
+
+    @Test
+    void json_ShouldParsePlainAndExponentNumbers() throws Exception {
+        assertEquals(Money.ofUnits(1_005_000), objectMapper.readValue("100.50", Money.class));
+        assertEquals(new BigDecimal("100.50"), objectMapper.readValue("100.50", Money.class).toBigDecimal());
+        assertEquals(Money.ofUnits(-10_000), objectMapper.readValue("-1", Money.class));
+        assertEquals(Money.ofUnits(15_000), objectMapper.readValue("1.5e0", Money.class));
+        assertEquals("100.50", objectMapper.writeValueAsString(Money.of(new BigDecimal("100.50"))));
+    }
+
+    @Test
+    void json_ShouldRejectMoreThanFourDecimalPlaces() {
+        assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("0.00001", Money.class));
+    }
+}
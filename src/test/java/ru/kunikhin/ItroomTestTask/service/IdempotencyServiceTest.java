@@ -0,0 +1,113 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.exception.IdempotencyKeyConflictException;
+import ru.kunikhin.ItroomTestTask.exception.IdempotencyKeyInProgressException;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.repository.IdempotencyKeyRepository;
+import ru.kunikhin.ItroomTestTask.repository.IdempotencyKeyRepository.StoredResponse;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private IdempotencyService idempotencyService;
+
+    private final WalletOperationDto request =
+            new WalletOperationDto(UUID.randomUUID(), WalletOperationType.DEPOSIT, new BigDecimal("10.00"));
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, TransactionOperations.withoutTransaction(),
+                new ObjectMapper(), Duration.ofHours(1), 100);
+    }
+
+    @Test
+    void execute_ShouldRunOperationOnce_WhenKeyIsReplayed() {
+        AtomicInteger executions = new AtomicInteger();
+        when(idempotencyKeyRepository.claim(eq("key-1"), anyString(), any())).thenReturn(true);
+
+        String first = idempotencyService.execute("key-1", request, () -> Map.of("count", executions.incrementAndGet()));
+        String second = idempotencyService.execute("key-1", request, () -> Map.of("count", executions.incrementAndGet()));
+
+        assertEquals("{\"count\":1}", first);
+        assertEquals(first, second);
+        assertEquals(1, executions.get());
+        verify(idempotencyKeyRepository, times(1)).complete("key-1", "{\"count\":1}");
+    }
+
+    @Test
+    void execute_ShouldReturnStoredResponse_WhenKeyAlreadyClaimedInDatabase() {
+        String fingerprint = request.getWalletId() + ":DEPOSIT:10";
+        when(idempotencyKeyRepository.claim(eq("key-2"), anyString(), any())).thenReturn(false);
+        when(idempotencyKeyRepository.find("key-2")).thenReturn(Optional.of(new StoredResponse(fingerprint, "{\"stored\":true}")));
+
+        String response = idempotencyService.execute("key-2", request, () -> {
+            throw new AssertionError("Operation must not run for a replayed key");
+        });
+
+        assertEquals("{\"stored\":true}", response);
+    }
+
+    @Test
+    void execute_ShouldRejectKeyReuseWithDifferentRequest() {
+        when(idempotencyKeyRepository.claim(eq("key-3"), anyString(), any())).thenReturn(true);
+        idempotencyService.execute("key-3", request, () -> Map.of("ok", true));
+
+        WalletOperationDto otherRequest =
+                new WalletOperationDto(request.getWalletId(), WalletOperationType.WITHDRAW, new BigDecimal("10.00"));
+
+        assertThrows(IdempotencyKeyConflictException.class, () ->
+                idempotencyService.execute("key-3", otherRequest, () -> Map.of("ok", true)));
+    }
+
+    @Test
+    void execute_ShouldReleaseKey_WhenOperationFails() {
+        when(idempotencyKeyRepository.claim(eq("key-4"), anyString(), any())).thenReturn(true);
+
+        assertThrows(InsufficientFundsException.class, () -> idempotencyService.execute("key-4", request, () -> {
+            throw new InsufficientFundsException("Insufficient funds");
+        }));
+
+        verify(idempotencyKeyRepository).release("key-4");
+        verify(idempotencyKeyRepository, never()).complete(eq("key-4"), anyString());
+    }
+
+    @Test
+    void execute_ShouldReject_WhenSameKeyIsStillRunning() {
+        String fingerprint = request.getWalletId() + ":DEPOSIT:10";
+        when(idempotencyKeyRepository.claim(eq("key-5"), anyString(), any())).thenReturn(false);
+        when(idempotencyKeyRepository.find("key-5")).thenReturn(Optional.of(new StoredResponse(fingerprint, null)));
+
+        assertThrows(IdempotencyKeyInProgressException.class, () -> idempotencyService.execute("key-5", request, () -> {
+            throw new AssertionError("Operation must not run while the key is claimed");
+        }));
+    }
+}
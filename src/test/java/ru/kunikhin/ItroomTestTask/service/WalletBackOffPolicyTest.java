@@ -0,0 +1,91 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.BackOffContext;
+import org.springframework.retry.context.RetryContextSupport;
+import ru.kunikhin.ItroomTestTask.metrics.RetryMetricsListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WalletBackOffPolicyTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final WalletConflictTracker conflictTracker = new WalletConflictTracker(1000, clock::get);
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @Test
+    void backOff_ShouldSleepUpToExponentialCeiling_WhenWalletIsQuiet() {
+        WalletBackOffPolicy policy = policy(() -> 1.0);
+        RetryContext context = contextFor(UUID.randomUUID());
+
+        BackOffContext backOffContext = policy.start(context);
+        for (int i = 0; i < 5; i++) {
+            policy.backOff(backOffContext);
+        }
+
+        assertEquals(List.of(10L, 20L, 40L, 80L, 100L), sleeps);
+    }
+
+    @Test
+    void backOff_ShouldDrawFullJitterBelowCeiling() {
+        WalletBackOffPolicy policy = policy(() -> 0.25);
+
+        policy.backOff(policy.start(contextFor(UUID.randomUUID())));
+        BackOffContext backOffContext = policy.start(contextFor(UUID.randomUUID()));
+        policy.backOff(backOffContext);
+        policy.backOff(backOffContext);
+
+        assertEquals(List.of(3L, 3L, 5L), sleeps);
+    }
+
+    @Test
+    void backOff_ShouldNotSleep_WhenContextDisablesBackOff() {
+        WalletBackOffPolicy policy = policy(() -> 1.0);
+        RetryContext context = contextFor(UUID.randomUUID());
+        context.setAttribute(WalletBackOffPolicy.NO_BACKOFF, true);
+
+        BackOffContext backOffContext = policy.start(context);
+        policy.backOff(backOffContext);
+        policy.backOff(backOffContext);
+
+        assertEquals(List.of(), sleeps);
+    }
+
+    @Test
+    void ceiling_ShouldGrowWithConflictRateOfWallet() {
+        WalletBackOffPolicy policy = policy(() -> 1.0);
+        UUID hot = UUID.randomUUID();
+        UUID quiet = UUID.randomUUID();
+        for (int i = 0; i < 20; i++) {
+            conflictTracker.recordConflict(hot);
+        }
+
+        assertEquals(10, policy.ceiling(quiet, 1));
+        assertEquals(10, policy.ceiling(null, 1));
+        assertEquals(30, policy.ceiling(hot, 1));
+        assertEquals(60, policy.ceiling(hot, 2));
+
+        // The rate of the window that just ended still counts, the one before that no longer does.
+        clock.addAndGet(1_500_000_000L);
+        assertEquals(30, policy.ceiling(hot, 1));
+        clock.addAndGet(1_000_000_000L);
+        assertEquals(10, policy.ceiling(hot, 1));
+    }
+
+    private WalletBackOffPolicy policy(DoubleSupplier random) {
+        return new WalletBackOffPolicy(conflictTracker, 10, 2.0, 100, 10, sleeps::add, random);
+    }
+
+    private static RetryContext contextFor(UUID walletId) {
+        RetryContext context = new RetryContextSupport(null);
+        context.setAttribute(RetryMetricsListener.WALLET_ID, walletId);
+        return context;
+    }
+}
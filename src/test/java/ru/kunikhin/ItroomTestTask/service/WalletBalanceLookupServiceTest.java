@@ -0,0 +1,84 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationResultDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletBalanceLookupRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletBalanceLookupServiceTest {
+
+    @Mock
+    private WalletBalanceLookupRepository lookupRepository;
+
+    private WalletBalanceLookupService lookupService;
+
+    @BeforeEach
+    void setUp() {
+        lookupService = new WalletBalanceLookupService(lookupRepository, 2, 4);
+    }
+
+    @Test
+    void findBalances_ShouldResolveInChunksAndReportUnknownIdsInline() {
+        UUID first = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        Map<UUID, Wallet> stored = Map.of(
+                first, new Wallet(first, new BigDecimal("10.00"), 1L, null, null),
+                third, new Wallet(third, new BigDecimal("30.00"), 1L, null, null));
+        when(lookupRepository.findBalances(any(), anyBoolean())).thenAnswer(invocation -> {
+            Map<UUID, Wallet> found = new HashMap<>();
+            for (UUID walletId : invocation.<Collection<UUID>>getArgument(0)) {
+                if (stored.containsKey(walletId)) {
+                    found.put(walletId, stored.get(walletId));
+                }
+            }
+            return found;
+        });
+
+        List<List<WalletOperationResultDto>> chunks = new ArrayList<>();
+        lookupService.findBalances(List.of(first, missing, third).iterator(), chunk -> chunks.add(List.copyOf(chunk)));
+
+        assertEquals(2, chunks.size());
+        verify(lookupRepository, times(2)).findBalances(any(), anyBoolean());
+        List<WalletOperationResultDto> results = chunks.stream().flatMap(List::stream).toList();
+        assertEquals(List.of(first, missing, third), results.stream().map(WalletOperationResultDto::getWalletId).toList());
+        assertEquals(WalletOperationStatus.SUCCESS, results.get(0).getStatus());
+        assertEquals(new BigDecimal("10.00"), results.get(0).getAmount());
+        assertEquals(WalletOperationStatus.NOT_FOUND, results.get(1).getStatus());
+        assertEquals(new BigDecimal("30.00"), results.get(2).getAmount());
+    }
+
+    @Test
+    void findBalances_ShouldStopAfterDeliveredChunks_WhenLimitExceeded() {
+        when(lookupRepository.findBalances(any(), anyBoolean())).thenReturn(Map.of());
+        List<UUID> walletIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                UUID.randomUUID(), UUID.randomUUID());
+        List<WalletOperationResultDto> delivered = new ArrayList<>();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> lookupService.findBalances(walletIds.iterator(), delivered::addAll));
+        assertEquals(4, delivered.size());
+    }
+}
@@ -0,0 +1,182 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.retry.policy.NeverRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletOperationResultDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletUpdateResult;
+import ru.kunikhin.ItroomTestTask.subscription.WalletBalanceHub;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationStatus;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletBatchServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    private WalletBatchService walletBatchService;
+
+    @BeforeEach
+    void setUp() {
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new NeverRetryPolicy());
+
+        walletBatchService = new WalletBatchService(walletRepository, retryTemplate, TransactionOperations.withoutTransaction(),
+                WalletBalanceCache.disabled(), 10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void executeBatch_ShouldReturnPerItemResultsAndWriteEachWalletOnce() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        Wallet firstWallet = new Wallet(first, new BigDecimal("100.00"), 0L, null, null);
+        Wallet secondWallet = new Wallet(second, new BigDecimal("5.00"), 0L, null, null);
+
+        when(walletRepository.findAllById(any())).thenReturn(List.of(firstWallet, secondWallet));
+
+        List<WalletOperationResultDto> results = walletBatchService.executeBatch(List.of(
+                new WalletOperationDto(first, WalletOperationType.DEPOSIT, new BigDecimal("50.00")),
+                new WalletOperationDto(second, WalletOperationType.WITHDRAW, new BigDecimal("10.00")),
+                new WalletOperationDto(missing, WalletOperationType.DEPOSIT, new BigDecimal("1.00")),
+                new WalletOperationDto(first, WalletOperationType.WITHDRAW, new BigDecimal("120.00")),
+                new WalletOperationDto(first, WalletOperationType.DEPOSIT, new BigDecimal("-1.00"))
+        ));
+
+        assertEquals(WalletOperationStatus.SUCCESS, results.get(0).getStatus());
+        assertEquals(new BigDecimal("150.00"), results.get(0).getAmount());
+        assertEquals(WalletOperationStatus.INSUFFICIENT_FUNDS, results.get(1).getStatus());
+        assertEquals(WalletOperationStatus.NOT_FOUND, results.get(2).getStatus());
+        assertEquals(WalletOperationStatus.SUCCESS, results.get(3).getStatus());
+        assertEquals(new BigDecimal("30.00"), results.get(3).getAmount());
+        assertEquals(WalletOperationStatus.INVALID, results.get(4).getStatus());
+
+        ArgumentCaptor<Iterable<Wallet>> saved = ArgumentCaptor.forClass(Iterable.class);
+        verify(walletRepository, times(1)).saveAll(saved.capture());
+        assertEquals(List.of(firstWallet), saved.getValue());
+        assertEquals(new BigDecimal("30.00"), firstWallet.getAmount());
+        assertEquals(new BigDecimal("5.00"), secondWallet.getAmount());
+    }
+
+    @Test
+    void executeBatch_ShouldRejectOversizedBatch() {
+        List<WalletOperationDto> operations = Collections.nCopies(11,
+                new WalletOperationDto(UUID.randomUUID(), WalletOperationType.DEPOSIT, BigDecimal.ONE));
+
+        assertThrows(IllegalArgumentException.class, () -> walletBatchService.executeBatch(operations));
+    }
+
+    @Test
+    void executeBatch_ShouldAppendToLedger_WhenWriteStrategyIsLedger() {
+        WalletLedgerService ledgerService = mock(WalletLedgerService.class);
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new NeverRetryPolicy());
+        WalletBatchService ledgerBatchService = new WalletBatchService(walletRepository, retryTemplate,
+                TransactionOperations.withoutTransaction(), WalletBalanceCache.disabled(), null, WalletBalanceHub.disabled(),
+                ledgerService, WalletWriteStrategyResolver.fixed(WalletWriteStrategy.LEDGER), WalletStripingService.disabled(),
+                Duration.ofSeconds(1), 10);
+        UUID walletId = UUID.randomUUID();
+        when(ledgerService.append(walletId, WalletOperationType.DEPOSIT, new BigDecimal("5.00")))
+                .thenReturn(new Wallet(walletId, new BigDecimal("15.00"), 0L, null, null));
+        when(ledgerService.append(walletId, WalletOperationType.WITHDRAW, new BigDecimal("20.00")))
+                .thenThrow(new InsufficientFundsException("Insufficient funds"));
+
+        List<WalletOperationResultDto> results = ledgerBatchService.executeBatch(List.of(
+                new WalletOperationDto(walletId, WalletOperationType.DEPOSIT, new BigDecimal("5.00")),
+                new WalletOperationDto(walletId, WalletOperationType.WITHDRAW, new BigDecimal("20.00"))
+        ));
+
+        assertEquals(WalletOperationStatus.SUCCESS, results.get(0).getStatus());
+        assertEquals(new BigDecimal("15.00"), results.get(0).getAmount());
+        assertEquals(WalletOperationStatus.INSUFFICIENT_FUNDS, results.get(1).getStatus());
+        verify(walletRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void executeBatch_ShouldWriteEachWalletWithItsOwnStrategy() {
+        UUID atomic = UUID.randomUUID();
+        UUID locked = UUID.randomUUID();
+        WalletBatchService strategyBatchService = batchService(
+                new WalletWriteStrategyResolver(WalletWriteStrategy.OPTIMISTIC, atomic + ":ATOMIC," + locked + ":NOWAIT"),
+                WalletStripingService.disabled());
+        when(walletRepository.applyDelta(eq(atomic), argThat(delta -> delta.compareTo(new BigDecimal("-5")) == 0)))
+                .thenReturn(WalletUpdateResult.updated(new Wallet(atomic, new BigDecimal("15.00"), 3L, null, null)));
+        when(walletRepository.findByIdForUpdate(locked, Duration.ZERO))
+                .thenReturn(Optional.of(new Wallet(locked, new BigDecimal("100.00"), 7L, null, null)));
+        when(walletRepository.updateIfVersion(argThat(wallet -> wallet.getId().equals(locked) && wallet.getVersion() == 7L),
+                argThat(amount -> amount.compareTo(new BigDecimal("130")) == 0)))
+                .thenAnswer(invocation -> Optional.of(new Wallet(locked, invocation.<BigDecimal>getArgument(1), 8L, null, null)));
+
+        List<WalletOperationResultDto> results = strategyBatchService.executeBatch(List.of(
+                new WalletOperationDto(atomic, WalletOperationType.WITHDRAW, new BigDecimal("5.00")),
+                new WalletOperationDto(locked, WalletOperationType.DEPOSIT, new BigDecimal("10.00")),
+                new WalletOperationDto(locked, WalletOperationType.DEPOSIT, new BigDecimal("20.00"))
+        ));
+
+        assertEquals(new BigDecimal("15.00"), results.get(0).getAmount());
+        assertEquals(0, new BigDecimal("130").compareTo(results.get(2).getAmount()));
+        verify(walletRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void executeBatch_ShouldGoThroughSlots_WhenWalletIsStriped() {
+        WalletStripingService stripingService = mock(WalletStripingService.class);
+        WalletBatchService stripedBatchService = batchService(
+                WalletWriteStrategyResolver.fixed(WalletWriteStrategy.OPTIMISTIC), stripingService);
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, new BigDecimal("1.00"), 0L, null, null);
+        wallet.setSlotCount(4);
+        when(walletRepository.findAllById(any())).thenReturn(List.of(wallet));
+        when(stripingService.recognise(wallet)).thenReturn(true);
+        when(stripingService.execute(eq(walletId), eq(WalletOperationType.WITHDRAW), any()))
+                .thenReturn(new Wallet(walletId, new BigDecimal("40.00"), 0L, null, null));
+
+        List<WalletOperationResultDto> results = stripedBatchService.executeBatch(List.of(
+                new WalletOperationDto(walletId, WalletOperationType.WITHDRAW, new BigDecimal("10.00"))
+        ));
+
+        assertEquals(WalletOperationStatus.SUCCESS, results.get(0).getStatus());
+        assertEquals(new BigDecimal("40.00"), results.get(0).getAmount());
+        verify(walletRepository, never()).saveAll(argThat(wallets -> wallets.iterator().hasNext()));
+    }
+
+    private WalletBatchService batchService(WalletWriteStrategyResolver writeStrategies, WalletStripingService stripingService) {
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new NeverRetryPolicy());
+        return new WalletBatchService(walletRepository, retryTemplate, TransactionOperations.withoutTransaction(),
+                WalletBalanceCache.disabled(), null, WalletBalanceHub.disabled(), null, writeStrategies, stripingService,
+                Duration.ofSeconds(1), 10);
+    }
+}
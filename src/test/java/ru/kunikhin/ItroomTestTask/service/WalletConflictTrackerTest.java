@@ -0,0 +1,40 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WalletConflictTrackerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final WalletConflictTracker tracker = new WalletConflictTracker(3, clock::get);
+
+    @Test
+    void takeHot_ShouldReportWalletOnce_WhenThresholdReachedWithinWindow() {
+        UUID walletId = UUID.randomUUID();
+
+        tracker.recordConflict(walletId);
+        tracker.recordConflict(walletId);
+        assertFalse(tracker.takeHot(walletId));
+
+        tracker.recordConflict(walletId);
+        assertTrue(tracker.takeHot(walletId));
+        assertFalse(tracker.takeHot(walletId));
+    }
+
+    @Test
+    void takeHot_ShouldIgnoreConflictsSpreadOverWindows() {
+        UUID walletId = UUID.randomUUID();
+
+        for (int i = 0; i < 6; i++) {
+            tracker.recordConflict(walletId);
+            clock.addAndGet(600_000_000L);
+        }
+
+        assertFalse(tracker.takeHot(walletId));
+    }
+}
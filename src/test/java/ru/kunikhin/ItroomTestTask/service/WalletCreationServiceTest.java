@@ -0,0 +1,68 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.repository.WalletBulkInsertRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class WalletCreationServiceTest {
+
+    @Mock
+    private WalletBulkInsertRepository bulkInsertRepository;
+
+    private WalletCreationService walletCreationService;
+
+    @BeforeEach
+    void setUp() {
+        walletCreationService = new WalletCreationService(bulkInsertRepository,
+                TransactionOperations.withoutTransaction(), 100, 4);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createWallets_ShouldInsertInChunksAndReportEveryId() {
+        List<UUID> reported = new ArrayList<>();
+
+        walletCreationService.createWallets(10, reported::addAll);
+
+        ArgumentCaptor<List<UUID>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(bulkInsertRepository, times(3)).insert(chunks.capture());
+        assertEquals(List.of(4, 4, 2), chunks.getAllValues().stream().map(List::size).toList());
+        assertEquals(chunks.getAllValues().stream().flatMap(List::stream).toList(), reported);
+        assertEquals(10, new HashSet<>(reported).size());
+    }
+
+    @Test
+    void createWallets_ShouldNotReportChunk_WhenInsertFails() {
+        List<UUID> reported = new ArrayList<>();
+        doThrow(new IllegalStateException("db down")).doNothing().when(bulkInsertRepository).insert(any());
+
+        assertThrows(IllegalStateException.class, () -> walletCreationService.createWallets(10, reported::addAll));
+        assertEquals(0, reported.size());
+    }
+
+    @Test
+    void createWallets_ShouldReject_WhenCountOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> walletCreationService.createWallets(0, ids -> { }));
+        assertThrows(IllegalArgumentException.class, () -> walletCreationService.createWallets(101, ids -> { }));
+        verifyNoInteractions(bulkInsertRepository);
+    }
+}
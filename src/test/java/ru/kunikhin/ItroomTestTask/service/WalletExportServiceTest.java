@@ -0,0 +1,128 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.repository.WalletExportRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+import ru.kunikhin.ItroomTestTask.util.WalletExportFormat;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletExportServiceTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+
+    @Mock
+    private WalletExportRepository exportRepository;
+
+    private final List<UUID> walletIds = new ArrayList<>();
+
+    private WalletExportService exportService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            walletIds.add(UUID.randomUUID());
+        }
+        walletIds.sort(null);
+        exportService = new WalletExportService(exportRepository, TransactionOperations.withoutTransaction(), 2);
+
+        doAnswer(invocation -> {
+            UUID after = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            RowCallbackHandler rows = invocation.getArgument(3);
+            int sent = 0;
+            for (UUID walletId : walletIds) {
+                if ((after == null || walletId.compareTo(after) > 0) && sent++ < limit) {
+                    rows.processRow(row(walletId));
+                }
+            }
+            return null;
+        }).when(exportRepository).findPage(any(), anyInt(), anyBoolean(), any());
+    }
+
+    @Test
+    void export_ShouldWriteAllWalletsPageByPage() throws Exception {
+        StringWriter out = new StringWriter();
+        List<UUID> pageEnds = new ArrayList<>();
+
+        long exported = exportService.export(null, WalletExportFormat.CSV, out, pageEnds::add);
+
+        assertEquals(3, exported);
+        assertEquals("id,amount,version,updated_at\n"
+                + walletIds.get(0) + ",10.0000,1,2024-01-02T03:04:05\n"
+                + walletIds.get(1) + ",10.0000,1,2024-01-02T03:04:05\n"
+                + walletIds.get(2) + ",10.0000,1,2024-01-02T03:04:05\n", out.toString());
+        assertEquals(List.of(walletIds.get(1), walletIds.get(2)), pageEnds);
+        verify(exportRepository).findPage(isNull(), eq(2), eq(false), any());
+        verify(exportRepository).findPage(eq(walletIds.get(1)), eq(2), eq(false), any());
+    }
+
+    @Test
+    void export_ShouldResumeAfterLastExportedIdWithoutHeader() throws Exception {
+        StringWriter out = new StringWriter();
+
+        long exported = exportService.export(walletIds.get(0), WalletExportFormat.NDJSON, out, lastId -> { });
+
+        assertEquals(2, exported);
+        assertEquals("{\"id\":\"" + walletIds.get(1) + "\",\"amount\":10.0000,\"version\":1,\"updatedAt\":\"2024-01-02T03:04:05\"}\n"
+                + "{\"id\":\"" + walletIds.get(2) + "\",\"amount\":10.0000,\"version\":1,\"updatedAt\":\"2024-01-02T03:04:05\"}\n",
+                out.toString());
+        // A full last page needs one more, empty page to know the table has ended.
+        verify(exportRepository, times(2)).findPage(any(), anyInt(), anyBoolean(), any());
+    }
+
+    @Test
+    void export_ShouldReadAllPagesInOneSnapshotTransaction_WhenSnapshotRequested() throws Exception {
+        TransactionOperations pages = mock(TransactionOperations.class);
+        TransactionOperations snapshot = mock(TransactionOperations.class);
+        when(snapshot.execute(any())).thenAnswer(invocation ->
+                TransactionOperations.withoutTransaction().execute(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            TransactionOperations.withoutTransaction().executeWithoutResult(invocation.getArgument(0));
+            return null;
+        }).when(pages).executeWithoutResult(any());
+        WalletExportService snapshotExport = new WalletExportService(exportRepository, pages, snapshot, null,
+                WalletWriteStrategy.OPTIMISTIC, WalletExecutionMode.DIRECT, 2);
+
+        long exported = snapshotExport.export(null, WalletExportFormat.CSV, true, new StringWriter(), lastId -> { });
+
+        assertEquals(3, exported);
+        verify(snapshot).execute(any());
+        verify(pages, times(2)).executeWithoutResult(any());
+    }
+
+    private static ResultSet row(UUID walletId) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id", UUID.class)).thenReturn(walletId);
+        when(rs.getBigDecimal("amount")).thenReturn(new BigDecimal("10.0000"));
+        when(rs.getLong("version")).thenReturn(1L);
+        when(rs.getObject("updated_at", LocalDateTime.class)).thenReturn(UPDATED_AT);
+        return rs;
+    }
+}
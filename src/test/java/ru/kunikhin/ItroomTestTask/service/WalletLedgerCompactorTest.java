@@ -0,0 +1,34 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.repository.WalletLedgerRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletPartitionRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class WalletLedgerCompactorTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withBean(WalletLedgerRepository.class, () -> mock(WalletLedgerRepository.class))
+            .withBean(WalletPartitionRepository.class, () -> mock(WalletPartitionRepository.class))
+            .withBean(TransactionOperations.class, TransactionOperations::withoutTransaction)
+            .withUserConfiguration(WalletLedgerCompactor.class);
+
+    @Test
+    void compactor_ShouldNotStart_WhenWriteStrategyIsNotLedger() {
+        contextRunner.run(context -> assertThat(context).doesNotHaveBean(WalletLedgerCompactor.class));
+        contextRunner.withPropertyValues("wallet.write-strategy=ATOMIC")
+                .run(context -> assertThat(context).doesNotHaveBean(WalletLedgerCompactor.class));
+    }
+
+    @Test
+    void compactor_ShouldStart_WhenWriteStrategyIsLedger() {
+        contextRunner.withPropertyValues("wallet.write-strategy=LEDGER")
+                .run(context -> assertThat(context).hasSingleBean(WalletLedgerCompactor.class));
+        contextRunner.withPropertyValues("wallet.write-strategy=LEDGER", "wallet.ledger.compaction.enabled=false")
+                .run(context -> assertThat(context).doesNotHaveBean(WalletLedgerCompactor.class));
+    }
+}
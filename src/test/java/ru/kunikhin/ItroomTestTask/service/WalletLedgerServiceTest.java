@@ -0,0 +1,106 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletLedgerRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletLedgerServiceTest {
+
+    @Mock
+    private WalletLedgerRepository ledgerRepository;
+
+    private WalletLedgerService ledgerService;
+
+    @BeforeEach
+    void setUp() {
+        ledgerService = new WalletLedgerService(ledgerRepository);
+    }
+
+    @Test
+    void append_ShouldInsertDepositWithoutLocking() {
+        UUID walletId = UUID.randomUUID();
+        Wallet appended = new Wallet(walletId, new BigDecimal("110.00"), 0L, null, null);
+
+        when(ledgerRepository.append(walletId, WalletOperationType.DEPOSIT, new BigDecimal("10.00"))).thenReturn(appended);
+
+        Wallet result = ledgerService.append(walletId, WalletOperationType.DEPOSIT, new BigDecimal("10.00"));
+
+        assertEquals(new BigDecimal("110.00"), result.getAmount());
+        verify(ledgerRepository, never()).lockForWithdrawal(any());
+    }
+
+    @Test
+    void append_ShouldThrowNotFound_WhenDepositViolatesForeignKey() {
+        UUID walletId = UUID.randomUUID();
+
+        when(ledgerRepository.append(walletId, WalletOperationType.DEPOSIT, BigDecimal.ONE))
+                .thenThrow(new DataIntegrityViolationException("fk_wallet_operations_wallet"));
+
+        assertThrows(WalletNotFoundException.class, () ->
+                ledgerService.append(walletId, WalletOperationType.DEPOSIT, BigDecimal.ONE));
+    }
+
+    @Test
+    void append_ShouldCheckBalanceAfterLocking_WhenWithdrawing() {
+        UUID walletId = UUID.randomUUID();
+        Wallet current = new Wallet(walletId, new BigDecimal("100.00"), 0L, null, null);
+        Wallet appended = new Wallet(walletId, new BigDecimal("60.00"), 0L, null, null);
+
+        when(ledgerRepository.lockForWithdrawal(walletId)).thenReturn(true);
+        when(ledgerRepository.findWithBalance(walletId)).thenReturn(Optional.of(current));
+        when(ledgerRepository.append(walletId, WalletOperationType.WITHDRAW, new BigDecimal("-40.00"))).thenReturn(appended);
+
+        Wallet result = ledgerService.append(walletId, WalletOperationType.WITHDRAW, new BigDecimal("40.00"));
+
+        assertEquals(new BigDecimal("60.00"), result.getAmount());
+        InOrder order = inOrder(ledgerRepository);
+        order.verify(ledgerRepository).lockForWithdrawal(walletId);
+        order.verify(ledgerRepository).findWithBalance(walletId);
+        order.verify(ledgerRepository).append(walletId, WalletOperationType.WITHDRAW, new BigDecimal("-40.00"));
+    }
+
+    @Test
+    void append_ShouldThrowInsufficientFunds_WhenLedgerBalanceTooLow() {
+        UUID walletId = UUID.randomUUID();
+
+        when(ledgerRepository.lockForWithdrawal(walletId)).thenReturn(true);
+        when(ledgerRepository.findWithBalance(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, new BigDecimal("5.00"), 0L, null, null)));
+
+        assertThrows(InsufficientFundsException.class, () ->
+                ledgerService.append(walletId, WalletOperationType.WITHDRAW, new BigDecimal("10.00")));
+        verify(ledgerRepository, never()).append(any(), any(), any());
+    }
+
+    @Test
+    void append_ShouldThrowNotFound_WhenWithdrawingFromMissingWallet() {
+        UUID walletId = UUID.randomUUID();
+
+        when(ledgerRepository.lockForWithdrawal(walletId)).thenReturn(false);
+
+        assertThrows(WalletNotFoundException.class, () ->
+                ledgerService.append(walletId, WalletOperationType.WITHDRAW, BigDecimal.ONE));
+    }
+}
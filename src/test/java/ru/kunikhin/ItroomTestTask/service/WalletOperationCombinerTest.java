@@ -0,0 +1,157 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.retry.policy.NeverRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletOperationCombinerTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletStripingService stripingService;
+
+    private WalletOperationCombiner combiner;
+
+    @BeforeEach
+    void setUp() {
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new NeverRetryPolicy());
+
+        combiner = new WalletOperationCombiner(walletRepository, retryTemplate, TransactionOperations.withoutTransaction(),
+                WalletBalanceCache.disabled(), stripingService, 256);
+    }
+
+    @Test
+    void execute_ShouldReturnOwnResultingBalance() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, new BigDecimal("100.00"), 0L, null, null);
+
+        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Wallet result = combiner.execute(walletId, WalletOperationType.WITHDRAW, new BigDecimal("40.00"));
+
+        assertEquals(new BigDecimal("60.00"), result.getAmount());
+    }
+
+    @Test
+    void execute_ShouldWithdrawThroughSlots_WhenWalletIsStripedElsewhere() {
+        UUID walletId = UUID.randomUUID();
+        // Most of the balance sits in the slots, not in wallets.amount.
+        Wallet wallet = new Wallet(walletId, new BigDecimal("10.00"), 0L, null, null);
+        wallet.setSlotCount(4);
+        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+        when(stripingService.recognise(wallet)).thenReturn(true);
+        when(stripingService.execute(walletId, WalletOperationType.WITHDRAW, new BigDecimal("25.00")))
+                .thenReturn(new Wallet(walletId, new BigDecimal("5.00"), 0L, null, null));
+
+        Wallet result = combiner.execute(walletId, WalletOperationType.WITHDRAW, new BigDecimal("25.00"));
+
+        assertEquals(new BigDecimal("5.00"), result.getAmount());
+        verify(walletRepository, never()).save(any());
+    }
+
+    @Test
+    void execute_ShouldRejectOnlyOverdrawingWithdrawal() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, new BigDecimal("10.00"), 0L, null, null);
+
+        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+
+        assertThrows(InsufficientFundsException.class, () ->
+                combiner.execute(walletId, WalletOperationType.WITHDRAW, new BigDecimal("15.00")));
+        assertEquals(new BigDecimal("10.00"), wallet.getAmount());
+    }
+
+    @Test
+    void execute_ShouldThrowNotFound_WhenWalletMissing() {
+        UUID walletId = UUID.randomUUID();
+
+        when(walletRepository.findById(walletId)).thenReturn(Optional.empty());
+
+        assertThrows(WalletNotFoundException.class, () ->
+                combiner.execute(walletId, WalletOperationType.DEPOSIT, BigDecimal.ONE));
+    }
+
+    @Test
+    void submit_ShouldCommitConcurrentOperationsInFewerTransactions() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        AtomicReference<BigDecimal> balance = new AtomicReference<>(BigDecimal.ZERO);
+        AtomicInteger commits = new AtomicInteger();
+        CountDownLatch firstCommitStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstCommit = new CountDownLatch(1);
+
+        lenient().when(walletRepository.findById(walletId)).thenAnswer(invocation ->
+                Optional.of(new Wallet(walletId, balance.get(), (long) commits.get(), null, null)));
+        when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> {
+            if (commits.getAndIncrement() == 0) {
+                firstCommitStarted.countDown();
+                releaseFirstCommit.await();
+            }
+            Wallet saved = invocation.getArgument(0);
+            balance.set(saved.getAmount());
+            return saved;
+        });
+
+        int operations = 50;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Wallet> leader = executor.submit(() ->
+                    combiner.execute(walletId, WalletOperationType.DEPOSIT, BigDecimal.ONE));
+            firstCommitStarted.await();
+
+            // Everything submitted while the leader is busy must end up in one group.
+            List<CompletableFuture<Wallet>> followers = new ArrayList<>();
+            for (int i = 1; i < operations; i++) {
+                followers.add(combiner.submit(walletId, WalletOperationType.DEPOSIT, BigDecimal.ONE));
+            }
+            releaseFirstCommit.countDown();
+
+            leader.get();
+            for (CompletableFuture<Wallet> follower : followers) {
+                follower.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(new BigDecimal(operations), balance.get());
+        assertTrue(commits.get() < operations);
+    }
+}
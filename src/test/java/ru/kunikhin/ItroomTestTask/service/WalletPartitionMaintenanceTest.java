@@ -0,0 +1,47 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.kunikhin.ItroomTestTask.repository.WalletPartitionRepository;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletPartitionMaintenanceTest {
+
+    @Mock
+    private WalletPartitionRepository partitionRepository;
+
+    private WalletPartitionMaintenance maintenance;
+
+    @BeforeEach
+    void setUp() {
+        maintenance = new WalletPartitionMaintenance(partitionRepository, 10000, 0.05);
+    }
+
+    @Test
+    void vacuum_ShouldVacuumCandidatePartition() {
+        when(partitionRepository.findVacuumCandidate(10000, 0.05)).thenReturn(Optional.of("wallets_p03"));
+
+        maintenance.vacuum();
+
+        verify(partitionRepository).vacuumAnalyze("wallets_p03");
+    }
+
+    @Test
+    void vacuum_ShouldDoNothing_WhenNoPartitionIsBloated() {
+        when(partitionRepository.findVacuumCandidate(10000, 0.05)).thenReturn(Optional.empty());
+
+        maintenance.vacuum();
+
+        verify(partitionRepository, never()).vacuumAnalyze(any());
+    }
+}
@@ -0,0 +1,147 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.support.RetryTemplate;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletUpdateResult;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+
+/**
+ * Runs the same burst of deposits against one wallet through both write strategies.
+ * The repository mock emulates the row: the optimistic path fails on a stale version
+ * just like Hibernate would, the atomic path serializes like a row lock. The first
+ * read of every thread waits until all threads have read the row, so the burst
+ * always starts with all of them holding the same version.
+ */
+@ExtendWith(MockitoExtension.class)
+class WalletServiceContentionTest {
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 50;
+    private static final int TOTAL_OPERATIONS = THREADS * OPERATIONS_PER_THREAD;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    private final UUID walletId = UUID.randomUUID();
+    private final AtomicReference<Wallet> row = new AtomicReference<>();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final CountDownLatch firstReads = new CountDownLatch(THREADS);
+    private final ThreadLocal<Boolean> hasRead = ThreadLocal.withInitial(() -> false);
+
+    private final RetryTemplate retryTemplate = RetryTemplate.builder()
+            .infiniteRetry()
+            .retryOn(OptimisticLockingFailureException.class)
+            .noBackoff()
+            .build();
+
+    @Test
+    void optimisticStrategy_ShouldNeedExtraRoundTrips_UnderContention() throws Exception {
+        stubRow();
+        WalletService walletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.OPTIMISTIC);
+
+        runConcurrently(walletService);
+
+        // All but one of the first writes hit a stale version, so optimistic needs
+        // strictly more round-trips than the exactly TOTAL_OPERATIONS of atomic.
+        assertEquals(new BigDecimal(TOTAL_OPERATIONS), row.get().getAmount());
+        assertTrue(conflicts.get() >= THREADS - 1);
+        assertEquals(TOTAL_OPERATIONS + conflicts.get(), roundTrips.get());
+        assertTrue(roundTrips.get() > TOTAL_OPERATIONS);
+    }
+
+    @Test
+    void atomicStrategy_ShouldUseExactlyOneRoundTripPerOperation_UnderContention() throws Exception {
+        stubRow();
+        WalletService walletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.ATOMIC);
+
+        runConcurrently(walletService);
+
+        assertEquals(new BigDecimal(TOTAL_OPERATIONS), row.get().getAmount());
+        assertEquals(TOTAL_OPERATIONS, roundTrips.get());
+        assertEquals(0, conflicts.get());
+    }
+
+    private void stubRow() {
+        row.set(new Wallet(walletId, BigDecimal.ZERO, 0L, null, null));
+
+        lenient().when(walletRepository.findById(walletId)).thenAnswer(invocation -> {
+            Wallet current = row.get();
+            if (!hasRead.get()) {
+                hasRead.set(true);
+                firstReads.countDown();
+                firstReads.await();
+            }
+            return Optional.of(new Wallet(walletId, current.getAmount(), current.getVersion(), null, null));
+        });
+
+        lenient().when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            Wallet candidate = invocation.getArgument(0);
+            Wallet current = row.get();
+            Wallet next = new Wallet(walletId, candidate.getAmount(), current.getVersion() + 1, null, null);
+            if (!candidate.getVersion().equals(current.getVersion()) || !row.compareAndSet(current, next)) {
+                conflicts.incrementAndGet();
+                throw new OptimisticLockingFailureException("Stale wallet version");
+            }
+            return next;
+        });
+
+        lenient().when(walletRepository.applyDelta(eq(walletId), any(BigDecimal.class))).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            BigDecimal delta = invocation.getArgument(1);
+            Wallet next = row.updateAndGet(current ->
+                    new Wallet(walletId, current.getAmount().add(delta), current.getVersion() + 1, null, null));
+            return WalletUpdateResult.updated(next);
+        });
+    }
+
+    private void runConcurrently(WalletService walletService) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                        walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, Money.of(BigDecimal.ONE));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
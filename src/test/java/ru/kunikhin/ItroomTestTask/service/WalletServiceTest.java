@@ -6,28 +6,53 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.BackOffContext;
+import org.springframework.retry.backoff.BackOffPolicy;
 import org.springframework.retry.policy.NeverRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.cache.WalletIdFilter;
+import ru.kunikhin.ItroomTestTask.datasource.ReplicaReadRouting;
 import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
 import ru.kunikhin.ItroomTestTask.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.metrics.WalletOperationMetrics;
+import ru.kunikhin.ItroomTestTask.model.Money;
 import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
 import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletUpdateResult;
+import ru.kunikhin.ItroomTestTask.subscription.WalletBalanceHub;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
 import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 
 @ExtendWith(MockitoExtension.class)
 class WalletServiceTest {
@@ -86,6 +111,71 @@ class WalletServiceTest {
         assertThrows(WalletNotFoundException.class, () -> walletService.getWallet(walletId));
     }
 
+    @Test
+    void getWallet_ShouldNotQueryRepository_WhenIdFilterRejectsId() {
+        WalletIdFilter idFilter = mock(WalletIdFilter.class);
+        WalletService filteredWalletService = new WalletService(walletRepository, retryTemplate,
+                TransactionOperations.withoutTransaction(), null, null, WalletBalanceCache.disabled(), null,
+                WalletOperationMetrics.noop(), ReplicaReadRouting.disabled(), WalletStripingService.disabled(), null,
+                WalletBalanceHub.disabled(), idFilter,
+                WalletWriteStrategyResolver.fixed(WalletWriteStrategy.OPTIMISTIC), Duration.ofSeconds(1), WalletExecutionMode.DIRECT);
+        UUID walletId = UUID.randomUUID();
+        when(idFilter.mightExist(walletId)).thenReturn(false);
+
+        assertThrows(WalletNotFoundException.class, () -> filteredWalletService.getWallet(walletId));
+
+        verify(walletRepository, never()).findById(any());
+        verify(idFilter, never()).recordFalsePositive();
+    }
+
+    @Test
+    void getWallet_ShouldFindWalletInRepository_WhenIdFilterMissIsVerified() {
+        WalletIdFilter idFilter = mock(WalletIdFilter.class);
+        WalletService filteredWalletService = new WalletService(walletRepository, retryTemplate,
+                TransactionOperations.withoutTransaction(), null, null, WalletBalanceCache.disabled(), null,
+                WalletOperationMetrics.noop(), ReplicaReadRouting.disabled(), WalletStripingService.disabled(), null,
+                WalletBalanceHub.disabled(), idFilter,
+                WalletWriteStrategyResolver.fixed(WalletWriteStrategy.OPTIMISTIC), Duration.ofSeconds(1), WalletExecutionMode.DIRECT);
+        UUID walletId = UUID.randomUUID();
+        when(idFilter.mightExist(walletId)).thenReturn(false);
+        when(idFilter.verifiesMisses()).thenReturn(true);
+        when(walletRepository.findById(walletId)).thenReturn(Optional.of(new Wallet(walletId, BigDecimal.TEN, 1L, null, null)));
+
+        assertEquals(walletId, filteredWalletService.getWallet(walletId).getId());
+
+        verify(idFilter).recordMissed(walletId);
+        verify(idFilter, never()).recordFalsePositive();
+    }
+
+    @Test
+    void constructor_ShouldRejectLedger_WhenOperationsAreCombined() {
+        assertThrows(IllegalArgumentException.class, () -> new WalletService(walletRepository, retryTemplate,
+                TransactionOperations.withoutTransaction(), null, null, WalletBalanceCache.disabled(), null,
+                WalletOperationMetrics.noop(), ReplicaReadRouting.disabled(), WalletStripingService.disabled(), null,
+                WalletBalanceHub.disabled(), WalletIdFilter.disabled(),
+                WalletWriteStrategyResolver.fixed(WalletWriteStrategy.LEDGER), Duration.ofSeconds(1), WalletExecutionMode.COMBINING));
+    }
+
+    @Test
+    void getWallet_ShouldReadPrimary_WhenReplicaIsOlderThanRequestedVersion() {
+        UUID walletId = UUID.randomUUID();
+        Wallet stale = new Wallet(walletId, new BigDecimal("100.00"), 3L, null, null);
+        Wallet fresh = new Wallet(walletId, new BigDecimal("150.00"), 4L, null, null);
+        WalletService replicaWalletService = new WalletService(walletRepository, retryTemplate,
+                TransactionOperations.withoutTransaction(), null, null, WalletBalanceCache.disabled(), null,
+                WalletOperationMetrics.noop(), new ReplicaReadRouting(true), WalletStripingService.disabled(), null,
+                WalletBalanceHub.disabled(), WalletIdFilter.disabled(),
+                WalletWriteStrategyResolver.fixed(WalletWriteStrategy.OPTIMISTIC), Duration.ofSeconds(1), WalletExecutionMode.DIRECT);
+
+        when(walletRepository.findCommitted(walletId)).thenReturn(Optional.of(stale), Optional.of(fresh));
+
+        Wallet result = replicaWalletService.getWallet(walletId, 4L);
+
+        assertEquals(new BigDecimal("150.00"), result.getAmount());
+        verify(walletRepository, times(2)).findCommitted(walletId);
+        verify(walletRepository, never()).findById(any());
+    }
+
     @Test
     void executeOperation_ShouldDepositAmount() {
         UUID walletId = UUID.randomUUID();
@@ -96,7 +186,7 @@ class WalletServiceTest {
         when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
         when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        Wallet result = walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, new BigDecimal("1000.00"));
+        Wallet result = walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("1000.00")));
 
         assertNotNull(result);
         assertEquals(new BigDecimal("11000.00"), result.getAmount());
@@ -113,7 +203,7 @@ class WalletServiceTest {
         when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
         when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        Wallet result = walletService.executeOperation(walletId, WalletOperationType.WITHDRAW, new BigDecimal("1000.00"));
+        Wallet result = walletService.executeOperation(walletId, WalletOperationType.WITHDRAW, Money.of(new BigDecimal("1000.00")));
 
         assertNotNull(result);
         assertEquals(new BigDecimal("9000.00"), result.getAmount());
@@ -130,7 +220,7 @@ class WalletServiceTest {
         when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
 
         assertThrows(InsufficientFundsException.class, () ->
-                walletService.executeOperation(walletId, WalletOperationType.WITHDRAW, new BigDecimal("15000.00")));
+                walletService.executeOperation(walletId, WalletOperationType.WITHDRAW, Money.of(new BigDecimal("15000.00"))));
 
         verify(walletRepository, never()).save(any());
     }
@@ -145,7 +235,7 @@ class WalletServiceTest {
         when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
 
         assertThrows(IllegalArgumentException.class, () ->
-                walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, new BigDecimal("-10.00")));
+                walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("-10.00"))));
 
         verify(walletRepository, never()).save(any());
     }
@@ -183,11 +273,163 @@ class WalletServiceTest {
         Wallet result = walletServiceWithRetry.executeOperation(
                 walletId,
                 WalletOperationType.DEPOSIT,
-                depositAmount
+                Money.of(depositAmount)
         );
 
         assertNotNull(result);
         assertEquals(expectedAmount, result.getAmount());
         verify(walletRepository, times(3)).save(any(Wallet.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void executeOperation_ShouldRunEachAttemptInNewTransaction_WhenVersionConflicts() {
+        AtomicInteger transactions = new AtomicInteger();
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        List<Boolean> backOffsInTransaction = new ArrayList<>();
+        TransactionOperations transactionOperations = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                transactions.incrementAndGet();
+                inTransaction.set(true);
+                try {
+                    return action.doInTransaction(new SimpleTransactionStatus());
+                } finally {
+                    inTransaction.set(false);
+                }
+            }
+        };
+        RetryTemplate retryTemplate = RetryTemplate.builder()
+                .maxAttempts(3)
+                .retryOn(OptimisticLockingFailureException.class)
+                .customBackoff(new BackOffPolicy() {
+                    @Override
+                    public BackOffContext start(RetryContext context) {
+                        return null;
+                    }
+
+                    @Override
+                    public void backOff(BackOffContext backOffContext) {
+                        backOffsInTransaction.add(inTransaction.get());
+                    }
+                })
+                .build();
+        WalletService walletServiceWithRetry = new WalletService(walletRepository, retryTemplate,
+                transactionOperations, null, null, WalletBalanceCache.disabled(), null,
+                WalletOperationMetrics.noop(), ReplicaReadRouting.disabled(), WalletStripingService.disabled(), null,
+                WalletBalanceHub.disabled(), WalletIdFilter.disabled(), WalletWriteStrategyResolver.fixed(WalletWriteStrategy.OPTIMISTIC), Duration.ofSeconds(1), WalletExecutionMode.DIRECT);
+
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findById(walletId)).thenAnswer(invocation ->
+                Optional.of(new Wallet(walletId, new BigDecimal("100.00"), 1L, null, null)));
+        when(walletRepository.save(any(Wallet.class)))
+                .thenThrow(new OptimisticLockingFailureException("First fail"))
+                .thenThrow(new OptimisticLockingFailureException("Second fail"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        walletServiceWithRetry.executeOperation(walletId, WalletOperationType.DEPOSIT, Money.of(BigDecimal.TEN));
+
+        assertEquals(3, transactions.get());
+        assertEquals(List.of(false, false), backOffsInTransaction);
+    }
+
+    @Test
+    void executeOperation_ShouldLockRowBeforeReading_WhenPessimisticStrategy() {
+        WalletService pessimisticWalletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.PESSIMISTIC);
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findByIdForUpdate(walletId, Duration.ofSeconds(1)))
+                .thenReturn(Optional.of(new Wallet(walletId, new BigDecimal("100.00"), 4L, null, null)));
+        when(walletRepository.updateIfVersion(argThat(wallet -> wallet.getVersion() == 4L),
+                argThat(amount -> amount.compareTo(new BigDecimal("70")) == 0)))
+                .thenAnswer(invocation -> Optional.of(new Wallet(walletId, invocation.<BigDecimal>getArgument(1), 5L, null, null)));
+
+        Wallet result = pessimisticWalletService.executeOperation(
+                walletId, WalletOperationType.WITHDRAW, Money.of(new BigDecimal("30.00")));
+
+        assertEquals(0, new BigDecimal("70.00").compareTo(result.getAmount()));
+        assertEquals(5L, result.getVersion());
+        verify(walletRepository, never()).findById(any());
+        verify(walletRepository, never()).save(any());
+    }
+
+    @Test
+    void executeOperation_ShouldFail_WhenLockedRowWasNotWritten() {
+        WalletService pessimisticWalletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.PESSIMISTIC);
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findByIdForUpdate(walletId, Duration.ofSeconds(1)))
+                .thenReturn(Optional.of(new Wallet(walletId, new BigDecimal("100.00"), 4L, null, null)));
+        when(walletRepository.updateIfVersion(any(), any())).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class, () -> pessimisticWalletService.executeOperation(
+                walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("30.00"))));
+    }
+
+    @Test
+    void executeOperation_ShouldRejectWithoutRetry_WhenNowaitLockIsTaken() {
+        RetryTemplate retryTemplate = RetryTemplate.builder().maxAttempts(3).build();
+        WalletService nowaitWalletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.NOWAIT);
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findByIdForUpdate(walletId, Duration.ZERO))
+                .thenThrow(new CannotAcquireLockException("could not obtain lock on row"));
+
+        assertThrows(WalletOperationRejectedException.class, () ->
+                nowaitWalletService.executeOperation(walletId, WalletOperationType.DEPOSIT, Money.of(BigDecimal.TEN)));
+        verify(walletRepository, times(1)).findByIdForUpdate(walletId, Duration.ZERO);
+        verify(walletRepository, never()).updateIfVersion(any(), any());
+    }
+
+    @Test
+    void executeOperation_ShouldApplyDeltaInSingleStatement_WhenAtomicStrategy() {
+        WalletService atomicWalletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.ATOMIC);
+
+        UUID walletId = UUID.randomUUID();
+        Wallet updated = new Wallet(walletId, new BigDecimal("9000.00"), 1L, null, null);
+
+        when(walletRepository.applyDelta(walletId, new BigDecimal("-1000.00")))
+                .thenReturn(WalletUpdateResult.updated(updated));
+
+        Wallet result = atomicWalletService.executeOperation(walletId, WalletOperationType.WITHDRAW, Money.of(new BigDecimal("1000.00")));
+
+        assertEquals(new BigDecimal("9000.00"), result.getAmount());
+        verify(walletRepository, never()).findById(any());
+        verify(walletRepository, never()).save(any());
+    }
+
+    @Test
+    void executeOperation_ShouldBypassCombiner_WhenWalletIsNotWrittenOptimistically() {
+        WalletOperationCombiner combiner = mock(WalletOperationCombiner.class);
+        WalletService combiningWalletService = new WalletService(walletRepository, retryTemplate,
+                TransactionOperations.withoutTransaction(), combiner, null, WalletBalanceCache.disabled(), null,
+                WalletOperationMetrics.noop(), ReplicaReadRouting.disabled(), WalletStripingService.disabled(), null,
+                WalletBalanceHub.disabled(), WalletIdFilter.disabled(),
+                WalletWriteStrategyResolver.fixed(WalletWriteStrategy.ATOMIC), Duration.ofSeconds(1), WalletExecutionMode.COMBINING);
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.applyDelta(walletId, new BigDecimal("10.00")))
+                .thenReturn(WalletUpdateResult.updated(new Wallet(walletId, new BigDecimal("10.00"), 1L, null, null)));
+
+        combiningWalletService.executeOperation(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("10.00")));
+
+        verify(combiner, never()).execute(any(), any(), any());
+    }
+
+    @Test
+    void executeOperation_ShouldThrowNotFound_WhenAtomicStrategyAndWalletMissing() {
+        WalletService atomicWalletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.ATOMIC);
+        UUID walletId = UUID.randomUUID();
+
+        when(walletRepository.applyDelta(walletId, new BigDecimal("10.00"))).thenReturn(WalletUpdateResult.notFound());
+
+        assertThrows(WalletNotFoundException.class, () ->
+                atomicWalletService.executeOperation(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("10.00"))));
+    }
+
+    @Test
+    void executeOperation_ShouldThrowInsufficientFunds_WhenAtomicStrategyAndBalanceTooLow() {
+        WalletService atomicWalletService = new WalletService(walletRepository, retryTemplate, WalletWriteStrategy.ATOMIC);
+        UUID walletId = UUID.randomUUID();
+
+        when(walletRepository.applyDelta(walletId, new BigDecimal("-10.00"))).thenReturn(WalletUpdateResult.insufficientFunds());
+
+        assertThrows(InsufficientFundsException.class, () ->
+                atomicWalletService.executeOperation(walletId, WalletOperationType.WITHDRAW, Money.of(new BigDecimal("10.00"))));
+    }
+}
@@ -0,0 +1,151 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WalletShardExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WalletShardExecutor shardExecutor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        shardExecutor.shutdown();
+    }
+
+    @Test
+    void execute_ShouldRunOperationsOfOneWalletOnOneThreadWithoutOverlap() throws Exception {
+        shardExecutor = new WalletShardExecutor(WalletExecutionMode.SHARDED, 4, 1000, Duration.ofSeconds(5), meterRegistry);
+        UUID walletId = UUID.randomUUID();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(callers.submit(() -> shardExecutor.execute(walletId, () -> {
+                    threads.add(Thread.currentThread().getName());
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    running.decrementAndGet();
+                    return null;
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(1, threads.size());
+        assertEquals(1, maxRunning.get());
+        assertEquals(0.0, meterRegistry.get("wallet.shard.queue.depth").tag("shard", "0").gauge().value());
+    }
+
+    @Test
+    void execute_ShouldPropagateOperationException() {
+        shardExecutor = new WalletShardExecutor(WalletExecutionMode.SHARDED, 2, 10, Duration.ofSeconds(5), meterRegistry);
+
+        assertThrows(InsufficientFundsException.class, () -> shardExecutor.execute(UUID.randomUUID(), () -> {
+            throw new InsufficientFundsException("Insufficient funds");
+        }));
+    }
+
+    @Test
+    void execute_ShouldRejectOperation_WhenShardDoesNotAnswerInTime() throws Exception {
+        shardExecutor = new WalletShardExecutor(WalletExecutionMode.SHARDED, 1, 10, Duration.ofMillis(50), meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            caller.submit(() -> shardExecutor.execute(UUID.randomUUID(), () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            started.await();
+
+            assertThrows(WalletOperationRejectedException.class, () ->
+                    shardExecutor.execute(UUID.randomUUID(), () -> "late"));
+        } finally {
+            release.countDown();
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_ShouldReturnResult_WhenOperationIsAlreadyRunningAtTimeout() throws Exception {
+        shardExecutor = new WalletShardExecutor(WalletExecutionMode.SHARDED, 1, 10, Duration.ofMillis(50), meterRegistry);
+        AtomicInteger executions = new AtomicInteger();
+
+        String result = shardExecutor.execute(UUID.randomUUID(), () -> {
+            executions.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "committed";
+        });
+
+        assertEquals("committed", result);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldNeverRunOperation_WhenRejectedAfterTimeout() throws Exception {
+        shardExecutor = new WalletShardExecutor(WalletExecutionMode.SHARDED, 1, 10, Duration.ofMillis(50), meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger lateExecutions = new AtomicInteger();
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> blocker = caller.submit(() -> shardExecutor.execute(UUID.randomUUID(), () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }));
+            started.await();
+
+            assertThrows(WalletOperationRejectedException.class, () ->
+                    shardExecutor.execute(UUID.randomUUID(), lateExecutions::incrementAndGet));
+            release.countDown();
+            blocker.get();
+            shardExecutor.execute(UUID.randomUUID(), () -> null);
+        } finally {
+            release.countDown();
+            caller.shutdownNow();
+        }
+
+        assertEquals(0, lateExecutions.get());
+    }
+}
@@ -0,0 +1,96 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletSlotRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletStripingServiceTest {
+
+    @Mock
+    private WalletSlotRepository slotRepository;
+
+    private WalletConflictTracker conflictTracker;
+    private WalletStripingService stripingService;
+
+    @BeforeEach
+    void setUp() {
+        conflictTracker = new WalletConflictTracker(1);
+        stripingService = new WalletStripingService(slotRepository, conflictTracker,
+                TransactionOperations.withoutTransaction(), 4);
+    }
+
+    @Test
+    void execute_ShouldWithdrawFromSingleSlot_WhenOneCoversAmount() {
+        UUID walletId = UUID.randomUUID();
+        when(slotRepository.withdrawFromSlot(walletId, BigDecimal.TEN)).thenReturn(true);
+        when(slotRepository.findWithBalance(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, new BigDecimal("90.00"), 1L, null, null)));
+
+        Wallet result = stripingService.execute(walletId, WalletOperationType.WITHDRAW, BigDecimal.TEN);
+
+        assertEquals(new BigDecimal("90.00"), result.getAmount());
+        verify(slotRepository, never()).lockForConsolidation(any());
+    }
+
+    @Test
+    void execute_ShouldConsolidate_WhenNoSlotCoversAmount() {
+        UUID walletId = UUID.randomUUID();
+        when(slotRepository.withdrawFromSlot(walletId, BigDecimal.TEN)).thenReturn(false);
+        when(slotRepository.lockForConsolidation(walletId)).thenReturn(Optional.of(new BigDecimal("25")));
+        when(slotRepository.findWithBalance(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, new BigDecimal("15"), 2L, null, null)));
+
+        stripingService.execute(walletId, WalletOperationType.WITHDRAW, BigDecimal.TEN);
+
+        verify(slotRepository).consolidate(walletId, new BigDecimal("15"));
+    }
+
+    @Test
+    void execute_ShouldThrowInsufficientFunds_WhenTotalIsTooLow() {
+        UUID walletId = UUID.randomUUID();
+        when(slotRepository.withdrawFromSlot(walletId, BigDecimal.TEN)).thenReturn(false);
+        when(slotRepository.lockForConsolidation(walletId)).thenReturn(Optional.of(BigDecimal.ONE));
+
+        assertThrows(InsufficientFundsException.class,
+                () -> stripingService.execute(walletId, WalletOperationType.WITHDRAW, BigDecimal.TEN));
+        verify(slotRepository, never()).consolidate(any(), any());
+    }
+
+    @Test
+    void promoteIfHot_ShouldStripeWallet_WhenTrackerFlaggedIt() {
+        UUID walletId = UUID.randomUUID();
+        when(slotRepository.stripe(walletId, 4)).thenReturn(true);
+
+        stripingService.promoteIfHot(walletId);
+        assertFalse(stripingService.isStriped(walletId));
+
+        conflictTracker.recordConflict(walletId);
+        stripingService.promoteIfHot(walletId);
+
+        assertTrue(stripingService.isStriped(walletId));
+        verify(slotRepository).stripe(eq(walletId), anyInt());
+    }
+}
@@ -0,0 +1,262 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.cache.WalletBalanceCache;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.metrics.WalletOperationMetrics;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.dto.WalletTransferResultDto;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletUpdateResult;
+import ru.kunikhin.ItroomTestTask.subscription.WalletBalanceHub;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Hammers cross-transfers between a few wallets. The repository mock emulates the
+ * rows: a write takes the row lock and holds it until the transaction ends, and a
+ * lock that cannot be taken within the timeout counts as a deadlock. Uncommitted
+ * writes are discarded on rollback, so a failed transfer leaves no trace.
+ */
+@ExtendWith(MockitoExtension.class)
+class WalletTransferServiceTest {
+
+    private static final int WALLETS = 4;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 200;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000");
+    private static final long LOCK_TIMEOUT_MS = 2000;
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    private final List<UUID> walletIds = new ArrayList<>();
+    private final Map<UUID, Wallet> rows = new ConcurrentHashMap<>();
+    private final Map<UUID, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+    private final ThreadLocal<Map<UUID, Wallet>> pendingWrites = new ThreadLocal<>();
+
+    private final RetryTemplate retryTemplate = RetryTemplate.builder()
+            .infiniteRetry()
+            .retryOn(OptimisticLockingFailureException.class)
+            .noBackoff()
+            .build();
+
+    private final TransactionOperations transactionOperations = new TransactionOperations() {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            Map<UUID, Wallet> writes = new LinkedHashMap<>();
+            pendingWrites.set(writes);
+            try {
+                T result = action.doInTransaction(new SimpleTransactionStatus());
+                rows.putAll(writes);
+                return result;
+            } finally {
+                pendingWrites.remove();
+                writes.keySet().forEach(walletId -> rowLocks.get(walletId).unlock());
+            }
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < WALLETS; i++) {
+            UUID walletId = UUID.randomUUID();
+            walletIds.add(walletId);
+            rows.put(walletId, new Wallet(walletId, INITIAL_BALANCE, 0L, null, null));
+            rowLocks.put(walletId, new ReentrantLock());
+        }
+
+        lenient().when(walletRepository.findById(any())).thenAnswer(invocation ->
+                Optional.ofNullable(rows.get(invocation.<UUID>getArgument(0))).map(WalletTransferServiceTest::copy));
+        lenient().when(walletRepository.updateIfVersion(any(), any())).thenAnswer(invocation -> {
+            Wallet expected = invocation.getArgument(0);
+            Wallet row = lockRow(expected.getId());
+            if (!row.getVersion().equals(expected.getVersion())) {
+                return Optional.empty();
+            }
+            Wallet updated = new Wallet(row.getId(), invocation.<BigDecimal>getArgument(1), row.getVersion() + 1, null, null);
+            write(updated);
+            return Optional.of(copy(updated));
+        });
+        lenient().when(walletRepository.findByIdForUpdate(any(), any())).thenAnswer(invocation ->
+                Optional.of(copy(lockRow(invocation.getArgument(0)))));
+        lenient().when(walletRepository.applyDelta(any(), any())).thenAnswer(invocation -> {
+            Wallet row = lockRow(invocation.getArgument(0));
+            BigDecimal amount = row.getAmount().add(invocation.<BigDecimal>getArgument(1));
+            if (amount.signum() < 0) {
+                return WalletUpdateResult.insufficientFunds();
+            }
+            Wallet updated = new Wallet(row.getId(), amount, row.getVersion() + 1, null, null);
+            write(updated);
+            return WalletUpdateResult.updated(copy(updated));
+        });
+    }
+
+    @Test
+    void optimisticStrategy_ShouldConserveTotalBalance_UnderCrossTransfers() throws Exception {
+        hammer(new WalletTransferService(walletRepository, retryTemplate, transactionOperations, WalletWriteStrategy.OPTIMISTIC));
+    }
+
+    @Test
+    void atomicStrategy_ShouldConserveTotalBalance_UnderCrossTransfers() throws Exception {
+        hammer(new WalletTransferService(walletRepository, retryTemplate, transactionOperations, WalletWriteStrategy.ATOMIC));
+    }
+
+    @Test
+    void pessimisticStrategy_ShouldConserveTotalBalance_UnderCrossTransfers() throws Exception {
+        hammer(new WalletTransferService(walletRepository, retryTemplate, transactionOperations, WalletWriteStrategy.PESSIMISTIC));
+    }
+
+    @Test
+    void transfer_ShouldRejectWithoutWriting_WhenNowaitSideIsLocked() {
+        UUID from = walletIds.get(0);
+        UUID to = walletIds.get(1);
+        WalletTransferService transferService = new WalletTransferService(walletRepository, retryTemplate, transactionOperations,
+                WalletBalanceCache.disabled(), null, WalletOperationMetrics.noop(), WalletStripingService.disabled(),
+                WalletBalanceHub.disabled(), new WalletWriteStrategyResolver(WalletWriteStrategy.OPTIMISTIC, to + ":NOWAIT"),
+                Duration.ofSeconds(1), WalletExecutionMode.DIRECT);
+        doThrow(new CannotAcquireLockException("could not obtain lock on row"))
+                .when(walletRepository).findByIdForUpdate(to, Duration.ZERO);
+
+        assertThrows(WalletOperationRejectedException.class,
+                () -> transferService.transfer(from, to, Money.of(BigDecimal.ONE)));
+        verify(walletRepository, never()).updateIfVersion(any(), any());
+        verify(walletRepository, never()).applyDelta(any(), any());
+    }
+
+    @Test
+    void transfer_ShouldRollBackCredit_WhenDebitFails() {
+        WalletTransferService transferService =
+                new WalletTransferService(walletRepository, retryTemplate, transactionOperations, WalletWriteStrategy.ATOMIC);
+        // The credited wallet sorts first, so its row is written before the debit fails.
+        UUID to = walletIds.stream().min(UUID::compareTo).orElseThrow();
+        UUID from = walletIds.stream().max(UUID::compareTo).orElseThrow();
+
+        assertThrows(InsufficientFundsException.class,
+                () -> transferService.transfer(from, to, Money.of(new BigDecimal("1000.01"))));
+
+        assertEquals(0, INITIAL_BALANCE.compareTo(rows.get(to).getAmount()));
+        assertEquals(0, INITIAL_BALANCE.compareTo(rows.get(from).getAmount()));
+    }
+
+    @Test
+    void transfer_ShouldReject_WhenSourceAndTargetAreTheSame() {
+        WalletTransferService transferService =
+                new WalletTransferService(walletRepository, retryTemplate, transactionOperations, WalletWriteStrategy.OPTIMISTIC);
+        UUID walletId = walletIds.get(0);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.transfer(walletId, walletId, Money.of(BigDecimal.ONE)));
+        verify(walletRepository, never()).findById(any());
+    }
+
+    private void hammer(WalletTransferService transferService) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                int completed = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    UUID from = walletIds.get(random.nextInt(WALLETS));
+                    UUID to = walletIds.get(random.nextInt(WALLETS));
+                    if (from.equals(to)) {
+                        continue;
+                    }
+                    Money amount = Money.of(BigDecimal.valueOf(random.nextInt(1, 5000), 2));
+                    try {
+                        WalletTransferResultDto result = transferService.transfer(from, to, amount);
+                        assertEquals(from, result.getFrom().getId());
+                        assertEquals(to, result.getTo().getId());
+                        completed++;
+                    } catch (InsufficientFundsException e) {
+                        // expected once a wallet runs dry
+                    }
+                }
+                return completed;
+            }));
+        }
+        start.countDown();
+
+        int completed = 0;
+        for (Future<Integer> future : futures) {
+            completed += future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        Map<UUID, Long> versions = new HashMap<>();
+        long versionSum = 0;
+        for (UUID walletId : walletIds) {
+            Wallet row = rows.get(walletId);
+            assertTrue(row.getAmount().signum() >= 0);
+            total = total.add(row.getAmount());
+            versions.put(walletId, row.getVersion());
+            versionSum += row.getVersion();
+        }
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(WALLETS)).compareTo(total));
+        // Every committed transfer bumped exactly two versions.
+        assertEquals(2L * completed, versionSum, versions::toString);
+        assertTrue(completed > 0);
+    }
+
+    private Wallet lockRow(UUID walletId) throws InterruptedException {
+        Map<UUID, Wallet> writes = pendingWrites.get();
+        if (!writes.containsKey(walletId)) {
+            if (!rowLocks.get(walletId).tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new AssertionError("Deadlock waiting for wallet " + walletId);
+            }
+            writes.put(walletId, rows.get(walletId));
+        }
+        return writes.get(walletId);
+    }
+
+    private void write(Wallet wallet) {
+        pendingWrites.get().put(wallet.getId(), wallet);
+    }
+
+    private static Wallet copy(Wallet wallet) {
+        return new Wallet(wallet.getId(), wallet.getBalance(), wallet.getVersion(), null, null);
+    }
+}
@@ -0,0 +1,184 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.kunikhin.ItroomTestTask.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.model.Money;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.repository.WalletWriteBehindRepository;
+import ru.kunikhin.ItroomTestTask.util.WalletExecutionMode;
+import ru.kunikhin.ItroomTestTask.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletWriteBehindServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private WalletWriteBehindRepository writeBehindRepository;
+
+    @TempDir
+    Path directory;
+
+    private WalletWriteBehindService service;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void execute_ShouldRejectOverdraftAgainstInMemoryBalance() {
+        UUID walletId = UUID.randomUUID();
+        when(writeBehindRepository.findCheckpoint("node")).thenReturn(0L);
+        when(walletRepository.findById(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, new BigDecimal("100"), 0L, null, null)));
+        service = start();
+
+        service.execute(walletId, WalletOperationType.WITHDRAW, Money.of(new BigDecimal("60")));
+
+        assertThrows(InsufficientFundsException.class,
+                () -> service.execute(walletId, WalletOperationType.WITHDRAW, Money.of(new BigDecimal("60"))));
+        assertEquals(new BigDecimal("40.0000"), service.getWallet(walletId).getAmount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_ShouldApplyAccumulatedDeltasWithCheckpoint() {
+        UUID walletId = UUID.randomUUID();
+        when(writeBehindRepository.findCheckpoint("node")).thenReturn(0L);
+        when(walletRepository.findById(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, BigDecimal.ZERO, 0L, null, null)));
+        service = start();
+
+        service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("10")));
+        service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("5")));
+        service.flush();
+
+        ArgumentCaptor<SortedMap<UUID, long[]>> deltas = ArgumentCaptor.forClass(SortedMap.class);
+        verify(writeBehindRepository).apply(deltas.capture(), eq("node"), eq(2L));
+        assertArrayEquals(new long[]{150_000L, 2}, deltas.getValue().get(walletId));
+    }
+
+    @Test
+    void flush_ShouldNotReapplyDeltas_WhenFailedCommitWasApplied() {
+        UUID walletId = UUID.randomUUID();
+        when(writeBehindRepository.findCheckpoint("node")).thenReturn(0L, 1L);
+        when(walletRepository.findById(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, BigDecimal.ZERO, 0L, null, null)));
+        service = start();
+        doThrow(new TransientDataAccessResourceException("connection lost on commit"))
+                .when(writeBehindRepository).apply(any(), eq("node"), eq(1L));
+
+        service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("10")));
+        service.flush();
+        service.flush();
+
+        verify(writeBehindRepository, times(1)).apply(any(), any(), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_ShouldRequeueDeltas_WhenFailedCommitWasNotApplied() {
+        UUID walletId = UUID.randomUUID();
+        when(writeBehindRepository.findCheckpoint("node")).thenReturn(0L);
+        when(walletRepository.findById(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, BigDecimal.ZERO, 0L, null, null)));
+        service = start();
+        doThrow(new TransientDataAccessResourceException("connection lost"))
+                .doNothing()
+                .when(writeBehindRepository).apply(any(), eq("node"), anyLong());
+
+        service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("10")));
+        assertThrows(TransientDataAccessResourceException.class, () -> service.flush());
+        service.flush();
+
+        ArgumentCaptor<SortedMap<UUID, long[]>> deltas = ArgumentCaptor.forClass(SortedMap.class);
+        verify(writeBehindRepository, times(2)).apply(deltas.capture(), eq("node"), eq(1L));
+        assertArrayEquals(new long[]{100_000L, 1}, deltas.getValue().get(walletId));
+    }
+
+    @Test
+    void flush_ShouldEvictWallets_WhenNothingWasPendingForAWholeInterval() {
+        UUID walletId = UUID.randomUUID();
+        when(writeBehindRepository.findCheckpoint("node")).thenReturn(0L);
+        when(walletRepository.findById(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, BigDecimal.ZERO, 0L, null, null)))
+                .thenReturn(Optional.of(new Wallet(walletId, new BigDecimal("10.0000"), 1L, null, null)));
+        UUID otherWalletId = UUID.randomUUID();
+        when(walletRepository.findById(otherWalletId))
+                .thenReturn(Optional.of(new Wallet(otherWalletId, BigDecimal.ZERO, 0L, null, null)));
+        service = start();
+
+        service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("10")));
+        service.flush();
+        service.execute(otherWalletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("1")));
+        service.flush();
+
+        assertEquals(new BigDecimal("10.0000"), service.getWallet(walletId).getAmount());
+        verify(walletRepository, times(2)).findById(walletId);
+        Wallet wallet = service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("5")));
+        assertEquals(new BigDecimal("15.0000"), wallet.getAmount());
+        assertEquals(2L, wallet.getVersion());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void start_ShouldReplayRecordsAboveCheckpoint() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(writeBehindRepository.findCheckpoint("node")).thenReturn(0L, 1L);
+        when(walletRepository.findById(walletId))
+                .thenReturn(Optional.of(new Wallet(walletId, BigDecimal.ZERO, 0L, null, null)));
+        service = start();
+        service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("1")));
+        service.execute(walletId, WalletOperationType.DEPOSIT, Money.of(new BigDecimal("2")));
+        // Simulate a crash: the log stays on disk, nothing was flushed.
+        service = null;
+
+        WalletWriteBehindService restarted = start();
+        try {
+            ArgumentCaptor<SortedMap<UUID, long[]>> deltas = ArgumentCaptor.forClass(SortedMap.class);
+            verify(writeBehindRepository).apply(deltas.capture(), eq("node"), eq(2L));
+            assertArrayEquals(new long[]{20_000L, 1}, deltas.getValue().get(walletId));
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    private WalletWriteBehindService start() {
+        WalletWriteBehindService started = new WalletWriteBehindService(WalletExecutionMode.WRITE_BEHIND,
+                walletRepository, writeBehindRepository, TransactionOperations.withoutTransaction(),
+                directory, 1, "node", 60_000, new SimpleMeterRegistry());
+        started.start();
+        return started;
+    }
+}
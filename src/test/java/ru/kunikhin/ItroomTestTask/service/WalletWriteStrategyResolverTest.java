@@ -0,0 +1,36 @@
+package ru.kunikhin.ItroomTestTask.service;
+
+import org.junit.jupiter.api.Test;
+import ru.kunikhin.ItroomTestTask.util.WalletWriteStrategy;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WalletWriteStrategyResolverTest {
+
+    @Test
+    void resolve_ShouldPreferOverride_WhenWalletIsListed() {
+        UUID hot = UUID.randomUUID();
+        UUID busy = UUID.randomUUID();
+        WalletWriteStrategyResolver resolver = new WalletWriteStrategyResolver(WalletWriteStrategy.OPTIMISTIC,
+                hot + ":PESSIMISTIC, " + busy + ":NOWAIT");
+
+        assertEquals(WalletWriteStrategy.PESSIMISTIC, resolver.resolve(hot));
+        assertEquals(WalletWriteStrategy.NOWAIT, resolver.resolve(busy));
+        assertEquals(WalletWriteStrategy.OPTIMISTIC, resolver.resolve(UUID.randomUUID()));
+    }
+
+    @Test
+    void constructor_ShouldReject_WhenLedgerIsInvolved() {
+        UUID walletId = UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class, () ->
+                new WalletWriteStrategyResolver(WalletWriteStrategy.OPTIMISTIC, walletId + ":LEDGER"));
+        assertThrows(IllegalArgumentException.class, () ->
+                new WalletWriteStrategyResolver(WalletWriteStrategy.LEDGER, walletId + ":PESSIMISTIC"));
+        assertThrows(IllegalArgumentException.class, () ->
+                new WalletWriteStrategyResolver(WalletWriteStrategy.OPTIMISTIC, walletId.toString()));
+    }
+}
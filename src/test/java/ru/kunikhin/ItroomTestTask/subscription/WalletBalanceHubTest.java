@@ -0,0 +1,141 @@
+package ru.kunikhin.ItroomTestTask.subscription;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.kunikhin.ItroomTestTask.exception.WalletOperationRejectedException;
+import ru.kunikhin.ItroomTestTask.model.entity.Wallet;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WalletBalanceHubTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UUID walletId = UUID.randomUUID();
+
+    private WalletBalanceHub hub;
+
+    @BeforeEach
+    void setUp() {
+        hub = new WalletBalanceHub(Runnable::run, true, 2, 10, Duration.ofMinutes(1), Duration.ofHours(1), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void flush_ShouldSendOnlyNewestBalance_WhenWalletChangedSeveralTimes() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        hub.subscribe(emitter, List.of(walletId), ids -> List.of(wallet(1L, "10")));
+
+        hub.publish(wallet(3L, "30"));
+        hub.publish(wallet(2L, "20"));
+        hub.flush();
+
+        assertEquals(List.of(3L), emitter.versions());
+        assertEquals(2.0, meterRegistry.counter("wallet.subscriptions.coalesced").count());
+    }
+
+    @Test
+    void subscribe_ShouldDeliverChange_CommittedWhileStartingBalancesAreRead() {
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        hub.subscribe(emitter, List.of(walletId), ids -> {
+            hub.publish(wallet(2L, "20"));
+            return List.of(wallet(1L, "10"));
+        });
+        hub.flush();
+
+        assertEquals(List.of(2L), emitter.versions());
+    }
+
+    @Test
+    void subscribe_ShouldDropSubscription_WhenStartingBalancesCannotBeRead() {
+        assertThrows(IllegalStateException.class, () -> hub.subscribe(new RecordingEmitter(), List.of(walletId), ids -> {
+            throw new IllegalStateException("lookup failed");
+        }));
+
+        assertEquals(0, hub.activeSubscriptions());
+    }
+
+    @Test
+    void publish_ShouldWaitForCommit_WhenTransactionIsActive() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        hub.subscribe(emitter, List.of(walletId), ids -> List.of(wallet(1L, "10")));
+        hub.flush();
+
+        TransactionSynchronizationManager.initSynchronization();
+        hub.publish(wallet(2L, "20"));
+        hub.flush();
+        assertEquals(List.of(1L), emitter.versions());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        hub.flush();
+        assertEquals(List.of(1L, 2L), emitter.versions());
+    }
+
+    @Test
+    void flush_ShouldDropSubscription_WhenClientIsGone() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.broken = true;
+        hub.subscribe(emitter, List.of(walletId), ids -> List.of(wallet(1L, "10")));
+
+        hub.flush();
+        hub.publish(wallet(2L, "20"));
+
+        assertEquals(0, hub.activeSubscriptions());
+    }
+
+    @Test
+    void subscribe_ShouldReject_WhenSubscriberLimitReached() {
+        hub.subscribe(new RecordingEmitter(), List.of(walletId), ids -> List.of(wallet(1L, "10")));
+        hub.subscribe(new RecordingEmitter(), List.of(walletId), ids -> List.of(wallet(1L, "10")));
+
+        assertThrows(WalletOperationRejectedException.class,
+                () -> hub.subscribe(new RecordingEmitter(), List.of(walletId), ids -> List.of(wallet(1L, "10"))));
+        assertTrue(hub.activeSubscriptions() <= 2);
+    }
+
+    private Wallet wallet(long version, String amount) {
+        return new Wallet(walletId, new BigDecimal(amount), version, null, null);
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<Wallet> sent = new ArrayList<>();
+        private boolean broken;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(Wallet.class::isInstance)
+                    .map(Wallet.class::cast)
+                    .forEach(sent::add);
+        }
+
+        List<Long> versions() {
+            return sent.stream().map(Wallet::getVersion).toList();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.kunikhin.ItroomTestTask.wal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WalletWriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recover_ShouldReturnRecordsOfPreviousRunAcrossSegments() throws IOException {
+        UUID walletId = UUID.randomUUID();
+        try (WalletWriteAheadLog log = new WalletWriteAheadLog(directory, 2 * WalletWriteAheadLog.RECORD_SIZE)) {
+            log.open(1);
+            for (int i = 1; i <= 5; i++) {
+                log.awaitDurable(log.append(walletId, i * 100L));
+            }
+        }
+
+        List<WalRecord> records = new WalletWriteAheadLog(directory, 2 * WalletWriteAheadLog.RECORD_SIZE).recover();
+
+        assertEquals(5, records.size());
+        assertEquals(5, records.get(4).getLsn());
+        assertEquals(walletId, records.get(4).getWalletId());
+        assertEquals(500L, records.get(4).getDelta());
+    }
+
+    @Test
+    void recover_ShouldStopAtTornRecord() throws IOException {
+        try (WalletWriteAheadLog log = new WalletWriteAheadLog(directory, 1024)) {
+            log.open(1);
+            for (int i = 0; i < 3; i++) {
+                log.append(UUID.randomUUID(), 1);
+            }
+        }
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), WalletWriteAheadLog.RECORD_SIZE + 30);
+        }
+
+        List<WalRecord> records = new WalletWriteAheadLog(directory, 1024).recover();
+
+        assertEquals(1, records.size());
+    }
+
+    @Test
+    void release_ShouldDeleteSegmentsBelowLsn() throws IOException {
+        try (WalletWriteAheadLog log = new WalletWriteAheadLog(directory, 2 * WalletWriteAheadLog.RECORD_SIZE)) {
+            log.open(1);
+            for (int i = 0; i < 5; i++) {
+                log.append(UUID.randomUUID(), 1);
+            }
+            assertEquals(3, log.segmentCount());
+
+            log.release(4);
+
+            assertEquals(1, log.segmentCount());
+            assertTrue(log.recover().stream().allMatch(record -> record.getLsn() == 5));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.kunikhin.ItroomTestTask.reactive.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.config.EnableR2dbcAuditing;
+
+@Configuration
+@EnableR2dbcAuditing
+public class R2dbcConfig {
+}
@@ -0,0 +1,37 @@
+package ru.kunikhin.ItroomTestTask.reactive.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.time.Duration;
+
+@Configuration
+public class RetryConfig {
+
+    @Value("${retry.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${retry.initial-interval-ms}")
+    private long initialIntervalMs;
+
+    @Value("${retry.max-interval-ms}")
+    private long maxIntervalMs;
+
+    /**
+     * Reactive counterpart of the servlet RetryTemplate: exponential backoff
+     * (factor 2) scheduled on a timer instead of sleeping the calling thread.
+     * Only version conflicts are retried; the original error is rethrown once
+     * attempts run out.
+     */
+    @Bean
+    public RetryBackoffSpec walletRetrySpec() {
+        return Retry.backoff(maxAttempts - 1, Duration.ofMillis(initialIntervalMs))
+                .maxBackoff(Duration.ofMillis(maxIntervalMs))
+                .filter(OptimisticLockingFailureException.class::isInstance)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+}
@@ -0,0 +1,47 @@
+package ru.kunikhin.ItroomTestTask.reactive.controller;
+
+import jakarta.validation.Valid;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import ru.kunikhin.ItroomTestTask.reactive.model.dto.WalletOperationDto;
+import ru.kunikhin.ItroomTestTask.reactive.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.reactive.service.WalletService;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1")
+public class WalletController {
+
+    private final WalletService walletService;
+
+    public WalletController(WalletService walletService) {
+        this.walletService = walletService;
+    }
+
+    @GetMapping("/wallets/{walletId}")
+    public Mono<BigDecimal> getWalletBalance(@PathVariable UUID walletId) {
+        return walletService.getWallet(walletId).map(Wallet::getAmount);
+    }
+
+    @PostMapping("/wallet/new")
+    public Mono<Wallet> createWallet() {
+        return walletService.createWallet();
+    }
+
+    @PatchMapping("/wallet")
+    public Mono<Wallet> executeOperation(@Valid @RequestBody WalletOperationDto request) {
+        return walletService.executeOperation(
+                request.getWalletId(),
+                request.getOperationType(),
+                request.getAmount()
+        );
+    }
+}
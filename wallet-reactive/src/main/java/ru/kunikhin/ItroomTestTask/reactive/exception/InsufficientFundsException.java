@@ -0,0 +1,7 @@
+package ru.kunikhin.ItroomTestTask.reactive.exception;
+
+public class InsufficientFundsException extends RuntimeException {
+    public InsufficientFundsException(String message) {
+        super(message);
+    }
+}
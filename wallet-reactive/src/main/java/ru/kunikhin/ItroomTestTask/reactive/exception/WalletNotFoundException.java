@@ -0,0 +1,7 @@
+package ru.kunikhin.ItroomTestTask.reactive.exception;
+
+public class WalletNotFoundException extends RuntimeException {
+    public WalletNotFoundException(String message) {
+        super(message);
+    }
+}
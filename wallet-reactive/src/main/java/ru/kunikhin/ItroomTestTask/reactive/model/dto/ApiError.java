@@ -0,0 +1,133 @@
+package ru.kunikhin.ItroomTestTask.reactive.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ApiError {
+
+    private int status;
+    private String error;
+    private String message;
+    private String path;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime timestamp;
+
+    private List<ValidationError> validationErrors;
+
+    public ApiError() {
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public ApiError(int status, String error, String message, String path) {
+        this();
+        this.status = status;
+        this.error = error;
+        this.message = message;
+        this.path = path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public List<ValidationError> getValidationErrors() {
+        return validationErrors;
+    }
+
+    public void setValidationErrors(List<ValidationError> validationErrors) {
+        this.validationErrors = validationErrors;
+    }
+
+    public static class ValidationError {
+        private String field;
+        private String message;
+        private Object rejectedValue;
+
+        public ValidationError(String field, String message, Object rejectedValue) {
+            this.field = field;
+            this.message = message;
+            this.rejectedValue = rejectedValue;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public void setField(String field) {
+            this.field = field;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+
+        public Object getRejectedValue() {
+            return rejectedValue;
+        }
+
+        public void setRejectedValue(Object rejectedValue) {
+            this.rejectedValue = rejectedValue;
+        }
+
+        @Override
+        public final boolean equals(Object o) {
+            if (!(o instanceof ValidationError that)) return false;
+
+            return getField().equals(that.getField()) && getMessage().equals(that.getMessage()) && Objects.equals(getRejectedValue(), that.getRejectedValue());
+        }
+
+        @Override
+        public int hashCode() {
+            int result = getField().hashCode();
+            result = 31 * result + getMessage().hashCode();
+            result = 31 * result + Objects.hashCode(getRejectedValue());
+            return result;
+        }
+    }
+}
\ No newline at end of file
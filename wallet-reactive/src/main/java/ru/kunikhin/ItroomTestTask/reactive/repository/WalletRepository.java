@@ -0,0 +1,11 @@
+package ru.kunikhin.ItroomTestTask.reactive.repository;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import ru.kunikhin.ItroomTestTask.reactive.model.entity.Wallet;
+
+import java.util.UUID;
+
+@Repository
+public interface WalletRepository extends ReactiveCrudRepository<Wallet, UUID> {
+}
@@ -0,0 +1,80 @@
+package ru.kunikhin.ItroomTestTask.reactive.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.RetryBackoffSpec;
+import ru.kunikhin.ItroomTestTask.reactive.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.reactive.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.reactive.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.reactive.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.reactive.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Service
+public class WalletService {
+
+    private final WalletRepository walletRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final RetryBackoffSpec retrySpec;
+
+    public WalletService(WalletRepository walletRepository,
+                         TransactionalOperator transactionalOperator,
+                         RetryBackoffSpec retrySpec) {
+        this.walletRepository = walletRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.retrySpec = retrySpec;
+    }
+
+    public Mono<Wallet> getWallet(UUID walletId) {
+        return findWallet(walletId);
+    }
+
+    public Mono<Wallet> createWallet() {
+        Wallet wallet = new Wallet();
+        wallet.setId(UUID.randomUUID());
+        return walletRepository.save(wallet);
+    }
+
+    /**
+     * Same read-modify-write as the servlet service, guarded by the version column.
+     * Every retry re-subscribes to a fresh transaction, so no connection is held
+     * while waiting for the next attempt.
+     */
+    public Mono<Wallet> executeOperation(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
+        return Mono.defer(() -> doExecuteOperation(walletId, operationType, amount))
+                .as(transactionalOperator::transactional)
+                .retryWhen(retrySpec);
+    }
+
+    private Mono<Wallet> findWallet(UUID walletId) {
+        return walletRepository.findById(walletId)
+                .switchIfEmpty(Mono.error(() -> new WalletNotFoundException("Wallet not found with id: " + walletId)));
+    }
+
+    private Mono<Wallet> doExecuteOperation(UUID walletId, WalletOperationType operationType, BigDecimal amount) {
+        return findWallet(walletId).flatMap(wallet -> {
+            if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+                return Mono.error(new IllegalArgumentException("Amount must be positive"));
+            }
+
+            switch (operationType) {
+                case DEPOSIT:
+                    wallet.setAmount(wallet.getAmount().add(amount));
+                    break;
+                case WITHDRAW:
+                    if (wallet.getAmount().compareTo(amount) < 0) {
+                        return Mono.error(new InsufficientFundsException("Insufficient funds"));
+                    }
+                    wallet.setAmount(wallet.getAmount().subtract(amount));
+                    break;
+                default:
+                    return Mono.error(new IllegalArgumentException("Unknown operation type: " + operationType));
+            }
+
+            return walletRepository.save(wallet);
+        });
+    }
+}
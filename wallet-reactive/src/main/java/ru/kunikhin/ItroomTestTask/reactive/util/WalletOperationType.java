@@ -0,0 +1,6 @@
+package ru.kunikhin.ItroomTestTask.reactive.util;
+
+public enum WalletOperationType {
+    DEPOSIT,
+    WITHDRAW
+}
@@ -0,0 +1,98 @@
+package ru.kunikhin.ItroomTestTask.reactive.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.retry.Retry;
+import ru.kunikhin.ItroomTestTask.reactive.exception.InsufficientFundsException;
+import ru.kunikhin.ItroomTestTask.reactive.exception.WalletNotFoundException;
+import ru.kunikhin.ItroomTestTask.reactive.model.entity.Wallet;
+import ru.kunikhin.ItroomTestTask.reactive.repository.WalletRepository;
+import ru.kunikhin.ItroomTestTask.reactive.util.WalletOperationType;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletServiceTest {
+
+    @Mock
+    private WalletRepository walletRepository;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private WalletService walletService;
+
+    private UUID walletId;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        walletService = new WalletService(
+                walletRepository,
+                transactionalOperator,
+                Retry.backoff(2, Duration.ofMillis(1))
+                        .filter(OptimisticLockingFailureException.class::isInstance)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure())
+        );
+        walletId = UUID.randomUUID();
+    }
+
+    @Test
+    void executeOperation_ShouldDeposit_WhenWalletExists() {
+        when(walletRepository.findById(walletId)).thenReturn(Mono.just(new Wallet(walletId, new BigDecimal("100.00"))));
+        when(walletRepository.save(any(Wallet.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, new BigDecimal("50.00")))
+                .expectNextMatches(wallet -> wallet.getAmount().compareTo(new BigDecimal("150.00")) == 0)
+                .verifyComplete();
+    }
+
+    @Test
+    void executeOperation_ShouldFail_WhenInsufficientFunds() {
+        when(walletRepository.findById(walletId)).thenReturn(Mono.just(new Wallet(walletId, new BigDecimal("10.00"))));
+
+        StepVerifier.create(walletService.executeOperation(walletId, WalletOperationType.WITHDRAW, new BigDecimal("50.00")))
+                .expectError(InsufficientFundsException.class)
+                .verify();
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+
+    @Test
+    void executeOperation_ShouldFail_WhenWalletNotFound() {
+        when(walletRepository.findById(walletId)).thenReturn(Mono.empty());
+
+        StepVerifier.create(walletService.executeOperation(walletId, WalletOperationType.DEPOSIT, BigDecimal.ONE))
+                .expectError(WalletNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void executeOperation_ShouldRetryInFreshTransaction_WhenVersionConflict() {
+        when(walletRepository.findById(walletId))
+                .thenAnswer(invocation -> Mono.just(new Wallet(walletId, new BigDecimal("100.00"))));
+        when(walletRepository.save(any(Wallet.class)))
+                .thenReturn(Mono.error(new OptimisticLockingFailureException("conflict")))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(walletService.executeOperation(walletId, WalletOperationType.WITHDRAW, new BigDecimal("30.00")))
+                .expectNextMatches(wallet -> wallet.getAmount().compareTo(new BigDecimal("70.00")) == 0)
+                .verifyComplete();
+        verify(walletRepository, times(2)).findById(walletId);
+    }
+}